@@ -0,0 +1,361 @@
+import java.util.Arrays;
+
+/**
+ * A calendar queue (R. Brown, "Calendar Queues", CACM 1988): events are hashed by
+ * time into an array of buckets, each covering an interval of the given width, and
+ * the buckets are scanned like the days of a calendar, a year being one pass over
+ * all of them. When most events are close to the current time, as in
+ * ParticleSimulator, adding and removing the earliest event take O(1) amortized
+ * time instead of the O(log n) of a heap.
+ *
+ * The number of buckets doubles or halves as the queue grows or shrinks, and the
+ * bucket width is re-estimated from the spacing of the earliest events each time,
+ * as well as whenever scans start passing over too many empty buckets.
+ *
+ * Each bucket is a doubly linked list, sorted by time, threaded through int arrays
+ * indexed by event handle.
+ */
+class CalendarQueue implements EventQueue {
+	// Initial number of buckets, and the smallest number the queue shrinks to.
+	private static final int MIN_BUCKETS = 16;
+
+	// Initial capacity for the handle arrays.
+	private static final int INITIAL_CAPACITY = 128;
+
+	// The number of earliest events whose spacing sets the bucket width.
+	private static final int SAMPLE_SIZE = 25;
+
+	// The first event in each bucket, or -1.
+	private int[] _buckets;
+
+	// The width of a bucket.
+	private double _width;
+
+	// The time, the events before and after in its bucket, and the "virtual bucket"
+	// (time divided by the width) of the event with each handle.
+	private double[] _times;
+	private int[] _next, _prev;
+	private long[] _virtualBuckets;
+
+	// Whether each handle is in the queue.
+	private boolean[] _queued;
+
+	// The virtual bucket the scan is at; its bucket is this modulo the number of buckets.
+	private long _current;
+
+	// The number of events in the queue.
+	private int _numElements;
+
+	// The number of removals and of buckets passed over by scans since the width was
+	// last estimated.
+	private long _removals;
+	private long _bucketsScanned;
+
+	/**
+	 * Initialize an empty queue with the given starting bucket width.
+	 *
+	 * @param width the width of a bucket, in units of time.
+	 */
+	public CalendarQueue(double width) {
+		if (!(width > 0) || Double.isInfinite(width)) {
+			throw new IllegalArgumentException("The bucket width must be positive: " + width);
+		}
+		_width = width;
+		_buckets = new int[MIN_BUCKETS];
+		Arrays.fill(_buckets, -1);
+		_times = new double[INITIAL_CAPACITY];
+		_next = new int[INITIAL_CAPACITY];
+		_prev = new int[INITIAL_CAPACITY];
+		_virtualBuckets = new long[INITIAL_CAPACITY];
+		_queued = new boolean[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Initialize an empty queue with a bucket width of 1.
+	 */
+	public CalendarQueue() {
+		this(1);
+	}
+
+	/**
+	 * Adds an event to the queue.
+	 *
+	 * @param handle the handle of an event that is not in the queue.
+	 * @param time   the time of the event.
+	 */
+	public void add(int handle, double time) {
+		if (contains(handle)) {
+			throw new IllegalArgumentException("Event " + handle + " is already in the queue");
+		}
+		ensureCapacity(handle);
+		_times[handle] = time;
+		insert(handle);
+		_numElements++;
+
+		// Use more buckets when they hold two events on average.
+		if (_numElements > 2 * _buckets.length) {
+			resize(_buckets.length * 2);
+		}
+	}
+
+	/**
+	 * Remove and return the earliest event of the queue.
+	 *
+	 * @return the handle of the earliest event, or -1 if the queue is empty.
+	 */
+	public int removeFirst() {
+		// If queue is empty return -1.
+		if (_numElements == 0) {
+			return -1;
+		}
+
+		// Scan one year of buckets from the current one, for an event that falls in
+		// the current year.
+		int first = -1;
+		int scanned = 0;
+		for (; scanned < _buckets.length; scanned++, _current++) {
+			int head = _buckets[bucketOf(_current)];
+			if (head != -1 && _virtualBuckets[head] <= _current) {
+				first = head;
+				break;
+			}
+		}
+		_bucketsScanned += scanned;
+
+		// Every event is at least a year away, so jump straight to the earliest one.
+		if (first == -1) {
+			first = earliestHead();
+			_current = _virtualBuckets[first];
+		}
+
+		unlink(first);
+		_numElements--;
+		_removals++;
+
+		// Use fewer buckets when they hold less than half an event on average, and
+		// re-estimate the width when scans pass over many empty buckets.
+		if (_numElements < _buckets.length / 2 && _buckets.length > MIN_BUCKETS) {
+			resize(_buckets.length / 2);
+		} else if (_bucketsScanned > 8 * _removals + _buckets.length) {
+			resize(_buckets.length);
+		}
+		return first;
+	}
+
+	/**
+	 * Remove an event from the queue.
+	 *
+	 * @param handle the handle of an event in the queue.
+	 */
+	public void remove(int handle) {
+		if (!contains(handle)) {
+			throw new IllegalArgumentException("Event " + handle + " is not in the queue");
+		}
+		unlink(handle);
+		_numElements--;
+	}
+
+	/**
+	 * Change the time of an event in the queue.
+	 *
+	 * @param handle the handle of an event in the queue.
+	 * @param time   the new time of the event.
+	 */
+	public void update(int handle, double time) {
+		if (!contains(handle)) {
+			throw new IllegalArgumentException("Event " + handle + " is not in the queue");
+		}
+		unlink(handle);
+		_times[handle] = time;
+		insert(handle);
+	}
+
+	/**
+	 * Find whether an event is in the queue.
+	 *
+	 * @param handle the handle of an event.
+	 * @return true if it is in the queue.
+	 */
+	public boolean contains(int handle) {
+		return handle >= 0 && handle < _queued.length && _queued[handle];
+	}
+
+	/**
+	 * Find the current size of the queue.
+	 *
+	 * @return the size of the queue.
+	 */
+	public int size() {
+		return _numElements;
+	}
+
+	/**
+	 * Returns the current width of a bucket.
+	 *
+	 * @return the bucket width.
+	 */
+	public double getWidth() {
+		return _width;
+	}
+
+	/**
+	 * Returns the current number of buckets.
+	 *
+	 * @return the number of buckets.
+	 */
+	public int getNumBuckets() {
+		return _buckets.length;
+	}
+
+	/**
+	 * Find the bucket of a virtual bucket.
+	 *
+	 * @param virtualBucket the time divided by the width.
+	 * @return the index of the bucket.
+	 */
+	private int bucketOf(long virtualBucket) {
+		return (int) Math.floorMod(virtualBucket, (long) _buckets.length);
+	}
+
+	/**
+	 * Put an event into its bucket, after any events with the same or an earlier
+	 * time, and move the scan back if the event is before it.
+	 *
+	 * @param handle the handle of the event, whose time is set.
+	 */
+	private void insert(int handle) {
+		double time = _times[handle];
+		long virtualBucket = (long) Math.floor(time / _width);
+		_virtualBuckets[handle] = virtualBucket;
+		_queued[handle] = true;
+
+		int bucket = bucketOf(virtualBucket);
+		int before = -1;
+		int after = _buckets[bucket];
+		while (after != -1 && _times[after] <= time) {
+			before = after;
+			after = _next[after];
+		}
+		_prev[handle] = before;
+		_next[handle] = after;
+		if (before == -1) {
+			_buckets[bucket] = handle;
+		} else {
+			_next[before] = handle;
+		}
+		if (after != -1) {
+			_prev[after] = handle;
+		}
+
+		if (_numElements == 0 || virtualBucket < _current) {
+			_current = virtualBucket;
+		}
+	}
+
+	/**
+	 * Take an event out of its bucket.
+	 *
+	 * @param handle the handle of the event.
+	 */
+	private void unlink(int handle) {
+		if (_prev[handle] != -1) {
+			_next[_prev[handle]] = _next[handle];
+		} else {
+			_buckets[bucketOf(_virtualBuckets[handle])] = _next[handle];
+		}
+		if (_next[handle] != -1) {
+			_prev[_next[handle]] = _prev[handle];
+		}
+		_queued[handle] = false;
+	}
+
+	/**
+	 * Find the earliest event, which is the first event of one of the buckets.
+	 *
+	 * @return the handle of the earliest event.
+	 */
+	private int earliestHead() {
+		int earliest = -1;
+		for (int head : _buckets) {
+			if (head != -1 && (earliest == -1 || _times[head] < _times[earliest])) {
+				earliest = head;
+			}
+		}
+		return earliest;
+	}
+
+	/**
+	 * Rebuild the queue with a new number of buckets and a width estimated from the
+	 * average spacing of the earliest events, leaving out unusually large gaps.
+	 *
+	 * @param numBuckets the new number of buckets.
+	 */
+	private void resize(int numBuckets) {
+		// Take every event out of the old buckets.
+		int[] handles = new int[_numElements];
+		int count = 0;
+		for (int head : _buckets) {
+			for (int handle = head; handle != -1; handle = _next[handle]) {
+				handles[count++] = handle;
+			}
+		}
+
+		// Find the earliest times, with a small insertion sort.
+		double[] sample = new double[Math.min(SAMPLE_SIZE, count)];
+		int sampled = 0;
+		for (int i = 0; i < count; i++) {
+			double time = _times[handles[i]];
+			if (sampled < sample.length || time < sample[sampled - 1]) {
+				int j = sampled < sample.length ? sampled++ : sampled - 1;
+				while (j > 0 && sample[j - 1] > time) {
+					sample[j] = sample[j - 1];
+					j--;
+				}
+				sample[j] = time;
+			}
+		}
+		if (sampled > 1) {
+			double average = (sample[sampled - 1] - sample[0]) / (sampled - 1);
+			double total = 0;
+			int gaps = 0;
+			for (int i = 1; i < sampled; i++) {
+				double gap = sample[i] - sample[i - 1];
+				if (gap <= 2 * average) {
+					total += gap;
+					gaps++;
+				}
+			}
+			double width = gaps > 0 ? 3 * total / gaps : 0;
+			if (width > 0 && Double.isFinite(width)) {
+				_width = width;
+			}
+		}
+
+		// Put the events into the new buckets.
+		_buckets = new int[numBuckets];
+		Arrays.fill(_buckets, -1);
+		_numElements = 0;
+		for (int i = 0; i < count; i++) {
+			insert(handles[i]);
+			_numElements++;
+		}
+		_removals = 0;
+		_bucketsScanned = 0;
+	}
+
+	/**
+	 * Grow the handle arrays so that they can hold the given handle.
+	 *
+	 * @param handle the handle.
+	 */
+	private void ensureCapacity(int handle) {
+		if (handle >= _times.length) {
+			int newLength = Math.max(_times.length * 2, handle + 1);
+			_times = Arrays.copyOf(_times, newLength);
+			_next = Arrays.copyOf(_next, newLength);
+			_prev = Arrays.copyOf(_prev, newLength);
+			_virtualBuckets = Arrays.copyOf(_virtualBuckets, newLength);
+			_queued = Arrays.copyOf(_queued, newLength);
+		}
+	}
+}
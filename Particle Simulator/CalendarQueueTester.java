@@ -0,0 +1,42 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+public class CalendarQueueTester extends EventQueueTester {
+	@Override
+	EventQueue newQueue() {
+		return new CalendarQueue();
+	}
+
+	@Test
+	public void testFarApart() {
+		// Events far more than a year of buckets apart, and before the current one.
+		final CalendarQueue queue = new CalendarQueue(0.001);
+		queue.add(0, 1e6);
+		queue.add(1, 5.0);
+		queue.add(2, 1e3);
+		assertEquals(1, queue.removeFirst());
+		queue.add(3, 1.0);
+		assertEquals(3, queue.removeFirst());
+		assertEquals(2, queue.removeFirst());
+		assertEquals(0, queue.removeFirst());
+		assertEquals(-1, queue.removeFirst());
+	}
+
+	@Test
+	public void testResize() {
+		final CalendarQueue queue = new CalendarQueue();
+		for (int i = 0; i < 1000; i++) {
+			queue.add(i, i * 0.01);
+		}
+		assertTrue(queue.getNumBuckets() >= 500);
+		for (int i = 0; i < 990; i++) {
+			assertEquals(i, queue.removeFirst());
+		}
+		assertTrue(queue.getNumBuckets() <= 32);
+	}
+
+	@Test
+	public void testBadArguments() {
+		assertThrows(IllegalArgumentException.class, () -> new CalendarQueue(0));
+	}
+}
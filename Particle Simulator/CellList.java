@@ -0,0 +1,281 @@
+/**
+ * A uniform grid over the box in which every particle is filed under the cell its
+ * center is in. Cells are at least one particle diameter wide, so two particles can
+ * only touch if they are in the same or in neighbouring cells, and collision tests
+ * only need to look at the 3x3 block of cells around a particle.
+ *
+ * The simulator keeps the grid exact by scheduling an event for every time a
+ * particle crosses into another cell (see getCrossingTime); the cell of a particle
+ * only changes through move, never by looking at its position, so rounding errors
+ * near a cell boundary cannot make it jump back and forth.
+ *
+ * Each cell is a doubly linked list threaded through int arrays.
+ */
+public class CellList {
+	// The largest number of cells along one side of the box.
+	private static final int MAX_CELLS_PER_SIDE = 2048;
+
+	// The number of cells along each side of the box, and their width.
+	private final int _cellsPerSide;
+	private final double _cellSize;
+
+	// The first particle in each cell, or -1 if the cell is empty.
+	private final int[] _head;
+
+	// The particles before and after each particle in its cell, or -1.
+	private final int[] _next, _prev;
+
+	// The cell of each particle, as x and y cell coordinates.
+	private final int[] _cellX, _cellY;
+
+	/**
+	 * Files every particle of the store under the cell its center is in.
+	 *
+	 * @param store the particles.
+	 * @param width the width of the box.
+	 */
+	public CellList(ParticleStore store, int width) {
+		double maxRadius = 0;
+		for (int i = 0; i < store.size(); i++) {
+			maxRadius = Math.max(maxRadius, store._radius[i]);
+		}
+		_cellsPerSide = maxRadius > 0
+				? (int) Math.max(1, Math.min(MAX_CELLS_PER_SIDE, Math.floor(width / (2 * maxRadius))))
+				: 1;
+		_cellSize = (double) width / _cellsPerSide;
+
+		_head = new int[_cellsPerSide * _cellsPerSide];
+		java.util.Arrays.fill(_head, -1);
+		_next = new int[store.size()];
+		_prev = new int[store.size()];
+		_cellX = new int[store.size()];
+		_cellY = new int[store.size()];
+		for (int i = 0; i < store.size(); i++) {
+			_cellX[i] = clamp((int) Math.floor(store._x[i] / _cellSize));
+			_cellY[i] = clamp((int) Math.floor(store._y[i] / _cellSize));
+			link(i);
+		}
+	}
+
+	/**
+	 * Reads a grid written to a checkpoint by writeTo. The particles come back in
+	 * the same order within their cells, so they are tested in the same order.
+	 *
+	 * @param in the checkpoint, at the state of the grid.
+	 */
+	CellList(Checkpoint in) {
+		_cellsPerSide = in.getInt();
+		_cellSize = in.getDouble();
+		_head = in.getInts(_cellsPerSide * _cellsPerSide);
+		final int n = in.getInt();
+		_next = in.getInts(n);
+		_prev = in.getInts(n);
+		_cellX = in.getInts(n);
+		_cellY = in.getInts(n);
+	}
+
+	/**
+	 * Puts the grid into a checkpoint.
+	 *
+	 * @param out the checkpoint.
+	 */
+	void writeTo(Checkpoint out) {
+		out.putInt(_cellsPerSide);
+		out.putDouble(_cellSize);
+		out.putInts(_head, _head.length);
+		out.putInt(_next.length);
+		out.putInts(_next, _next.length);
+		out.putInts(_prev, _prev.length);
+		out.putInts(_cellX, _cellX.length);
+		out.putInts(_cellY, _cellY.length);
+	}
+
+	/**
+	 * Returns the number of cells along each side of the box.
+	 *
+	 * @return the number of cells per side.
+	 */
+	public int getCellsPerSide() {
+		return _cellsPerSide;
+	}
+
+	/**
+	 * Returns the width of a cell.
+	 *
+	 * @return the cell size.
+	 */
+	public double getCellSize() {
+		return _cellSize;
+	}
+
+	/**
+	 * Returns the x coordinate of the cell of a particle.
+	 *
+	 * @param i the id of the particle.
+	 * @return the column of its cell.
+	 */
+	public int getCellX(int i) {
+		return _cellX[i];
+	}
+
+	/**
+	 * Returns the y coordinate of the cell of a particle.
+	 *
+	 * @param i the id of the particle.
+	 * @return the row of its cell.
+	 */
+	public int getCellY(int i) {
+		return _cellY[i];
+	}
+
+	/**
+	 * Returns the first particle in a cell; the others follow through next.
+	 *
+	 * @param cellX the column of the cell, which may be outside the grid.
+	 * @param cellY the row of the cell, which may be outside the grid.
+	 * @return the id of the first particle, or -1 if there is none.
+	 */
+	public int first(int cellX, int cellY) {
+		if (cellX < 0 || cellY < 0 || cellX >= _cellsPerSide || cellY >= _cellsPerSide) {
+			return -1;
+		}
+		return _head[cellY * _cellsPerSide + cellX];
+	}
+
+	/**
+	 * Returns the particle after the given one in its cell.
+	 *
+	 * @param i the id of the particle.
+	 * @return the id of the next particle, or -1 if there is none.
+	 */
+	public int next(int i) {
+		return _next[i];
+	}
+
+	/**
+	 * Moves a particle into another cell.
+	 *
+	 * @param i     the id of the particle.
+	 * @param cellX the column of the new cell.
+	 * @param cellY the row of the new cell.
+	 */
+	public void move(int i, int cellX, int cellY) {
+		unlink(i);
+		_cellX[i] = clamp(cellX);
+		_cellY[i] = clamp(cellY);
+		link(i);
+	}
+
+	/**
+	 * Takes a particle out of the grid, so that it is in no cell until it is
+	 * inserted again.
+	 *
+	 * @param i the id of a particle in the grid.
+	 */
+	public void remove(int i) {
+		unlink(i);
+	}
+
+	/**
+	 * Files a particle that is in no cell under the given cell.
+	 *
+	 * @param i     the id of a particle not in the grid.
+	 * @param cellX the column of the cell.
+	 * @param cellY the row of the cell.
+	 */
+	public void insert(int i, int cellX, int cellY) {
+		_cellX[i] = clamp(cellX);
+		_cellY[i] = clamp(cellY);
+		link(i);
+	}
+
+	/**
+	 * Computes the time until a particle leaves its cell through one of the inner
+	 * boundaries of the grid; a particle never leaves the grid itself, because it
+	 * bounces off the walls first.
+	 *
+	 * @param store the particles.
+	 * @param i     the id of the particle.
+	 * @param now   the time the result is relative to.
+	 * @return the time after now when the particle crosses, or infinity if it never does.
+	 */
+	public double getCrossingTime(ParticleStore store, int i, double now) {
+		return Math.min(crossingTime(store.getX(i, now), store._vx[i], _cellX[i]),
+				crossingTime(store.getY(i, now), store._vy[i], _cellY[i]));
+	}
+
+	/**
+	 * Computes which cell a particle crosses into after getCrossingTime, and moves it there.
+	 *
+	 * @param store the particles.
+	 * @param i     the id of the particle.
+	 * @param now   a time no later than the crossing.
+	 */
+	public void cross(ParticleStore store, int i, double now) {
+		final double tx = crossingTime(store.getX(i, now), store._vx[i], _cellX[i]);
+		final double ty = crossingTime(store.getY(i, now), store._vy[i], _cellY[i]);
+		if (tx <= ty) {
+			move(i, _cellX[i] + (store._vx[i] > 0 ? 1 : -1), _cellY[i]);
+		} else {
+			move(i, _cellX[i], _cellY[i] + (store._vy[i] > 0 ? 1 : -1));
+		}
+	}
+
+	/**
+	 * Computes the time until a coordinate leaves its cell along one axis.
+	 *
+	 * @param position the coordinate.
+	 * @param velocity the velocity along the axis.
+	 * @param cell     the cell coordinate along the axis.
+	 * @return the time until the crossing, never negative, or infinity if there is none.
+	 */
+	private double crossingTime(double position, double velocity, int cell) {
+		if (velocity > 0 && cell < _cellsPerSide - 1) {
+			return Math.max(0, ((cell + 1) * _cellSize - position) / velocity);
+		} else if (velocity < 0 && cell > 0) {
+			return Math.max(0, (cell * _cellSize - position) / velocity);
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Keeps a cell coordinate inside the grid.
+	 *
+	 * @param cell the cell coordinate.
+	 * @return the nearest coordinate inside the grid.
+	 */
+	private int clamp(int cell) {
+		return Math.max(0, Math.min(_cellsPerSide - 1, cell));
+	}
+
+	/**
+	 * Adds a particle to the front of the list of its cell.
+	 *
+	 * @param i the id of the particle.
+	 */
+	private void link(int i) {
+		final int cell = _cellY[i] * _cellsPerSide + _cellX[i];
+		_prev[i] = -1;
+		_next[i] = _head[cell];
+		if (_head[cell] != -1) {
+			_prev[_head[cell]] = i;
+		}
+		_head[cell] = i;
+	}
+
+	/**
+	 * Removes a particle from the list of its cell.
+	 *
+	 * @param i the id of the particle.
+	 */
+	private void unlink(int i) {
+		if (_prev[i] != -1) {
+			_next[_prev[i]] = _next[i];
+		} else {
+			_head[_cellY[i] * _cellsPerSide + _cellX[i]] = _next[i];
+		}
+		if (_next[i] != -1) {
+			_prev[_next[i]] = _prev[i];
+		}
+	}
+}
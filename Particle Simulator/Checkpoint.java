@@ -0,0 +1,356 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+
+/**
+ * A binary snapshot of a simulation in progress, from which it can be resumed with
+ * bit-identical results. The parts of the simulation put their state into the
+ * snapshot in a fixed order and read it back in the same order; numbers are stored
+ * as their raw bits, so nothing is lost.
+ *
+ * A checkpoint file is a header (a magic number and the version of the layout),
+ * the state, and a CRC-32 of everything before it, so a file cut short by a crash
+ * is rejected rather than resumed. Files are written with a FileChannel to a
+ * temporary file next to the target, forced to disk and then moved over the
+ * target, so the previous checkpoint stays intact until the new one is complete.
+ *
+ * Taking a snapshot only copies arrays into a buffer; writing it happens on a
+ * background thread, so the simulation goes on while the file is written. The
+ * buffer is reused for the next snapshot once the write has finished.
+ */
+class Checkpoint {
+	// Marks a checkpoint file ("PSCP"), and the version of its layout.
+	private static final int MAGIC = 0x50534350;
+	private static final int VERSION = 2;
+
+	// The size of the header and of the checksum.
+	private static final int HEADER_BYTES = 8;
+	private static final int CHECKSUM_BYTES = 8;
+
+	// Initial capacity for the buffer.
+	private static final int INITIAL_CAPACITY = 4096;
+
+	// The state, from the start of the header; while writing, up to the position.
+	private ByteBuffer _buffer;
+
+	// The thread that writes snapshots, made on the first write, and the write in
+	// progress or last finished.
+	private ExecutorService _writer;
+	private Future<?> _write;
+
+	/**
+	 * Creates an empty snapshot to put state into.
+	 */
+	Checkpoint() {
+		_buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+		clear();
+	}
+
+	/**
+	 * Wraps the contents of a checkpoint file, positioned after the header.
+	 *
+	 * @param buffer the state, without the checksum.
+	 */
+	private Checkpoint(ByteBuffer buffer) {
+		_buffer = buffer;
+	}
+
+	/**
+	 * Empties the snapshot, so that new state can be put into it. The last write
+	 * must have finished.
+	 */
+	void clear() {
+		_buffer.clear();
+		_buffer.putInt(MAGIC);
+		_buffer.putInt(VERSION);
+	}
+
+	/**
+	 * Reads a checkpoint file.
+	 *
+	 * @param file the file written by write or writeAsync.
+	 * @return the checkpoint, ready to get state from.
+	 * @throws IOException if the file cannot be read or is not a whole checkpoint.
+	 */
+	static Checkpoint read(File file) throws IOException {
+		final ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			final long size = channel.size();
+			if (size < HEADER_BYTES + CHECKSUM_BYTES || size > Integer.MAX_VALUE) {
+				throw new IOException(file + " is not a checkpoint");
+			}
+			buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) {
+					throw new EOFException(file + " ends early");
+				}
+			}
+		}
+		buffer.flip();
+		final int length = buffer.limit() - CHECKSUM_BYTES;
+		final CRC32 crc = new CRC32();
+		crc.update(buffer.duplicate().limit(length));
+		if (crc.getValue() != buffer.getLong(length)) {
+			throw new IOException(file + " is damaged or incomplete");
+		}
+		buffer.limit(length);
+		if (buffer.getInt() != MAGIC) {
+			throw new IOException(file + " is not a checkpoint");
+		}
+		final int version = buffer.getInt();
+		if (version != VERSION) {
+			throw new IOException(file + " has version " + version + " rather than " + VERSION);
+		}
+		return new Checkpoint(buffer);
+	}
+
+	/**
+	 * Writes the snapshot to a file on this thread.
+	 *
+	 * @param file the file to write; it is replaced only once the new one is complete.
+	 */
+	void write(File file) throws IOException {
+		final ByteBuffer data = _buffer.duplicate().flip();
+		final CRC32 crc = new CRC32();
+		crc.update(data.duplicate());
+		final ByteBuffer checksum = ByteBuffer.allocate(CHECKSUM_BYTES).putLong(crc.getValue()).flip();
+
+		final Path target = file.toPath();
+		final Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			final ByteBuffer[] buffers = { data, checksum };
+			while (checksum.hasRemaining()) {
+				channel.write(buffers);
+			}
+			channel.force(true);
+		}
+		Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Starts writing the snapshot to a file on a background thread. The snapshot
+	 * must not be changed until isBusy returns false.
+	 *
+	 * @param file the file to write; it is replaced only once the new one is complete.
+	 */
+	void writeAsync(File file) {
+		if (_writer == null) {
+			_writer = Executors.newSingleThreadExecutor(runnable -> {
+				final Thread thread = new Thread(runnable, "Checkpoint writer");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		_write = _writer.submit(() -> {
+			write(file);
+			return null;
+		});
+	}
+
+	/**
+	 * Returns whether a write started by writeAsync is still going on. A write that
+	 * failed is reported here, once it is over.
+	 *
+	 * @return true if the snapshot is still being written.
+	 * @throws UncheckedIOException if the last write failed.
+	 */
+	boolean isBusy() {
+		if (_write == null) {
+			return false;
+		}
+		if (!_write.isDone()) {
+			return true;
+		}
+		finish();
+		return false;
+	}
+
+	/**
+	 * Waits for the last write started by writeAsync and stops the writing thread.
+	 *
+	 * @throws UncheckedIOException if the last write failed.
+	 */
+	void close() {
+		if (_write != null) {
+			finish();
+		}
+		if (_writer != null) {
+			_writer.shutdown();
+			_writer = null;
+		}
+	}
+
+	/**
+	 * Waits for the last write and reports how it ended.
+	 */
+	private void finish() {
+		final Future<?> write = _write;
+		_write = null;
+		try {
+			boolean interrupted = false;
+			while (true) {
+				try {
+					write.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			throw cause instanceof IOException ? new UncheckedIOException((IOException) cause)
+					: new UncheckedIOException(new IOException(cause));
+		}
+	}
+
+	/**
+	 * Returns the number of bytes of state in the snapshot.
+	 *
+	 * @return the size of the snapshot, without the checksum.
+	 */
+	int size() {
+		return _buffer.position();
+	}
+
+	/**
+	 * Makes room for the given number of bytes after the position.
+	 *
+	 * @param bytes the number of bytes about to be put.
+	 */
+	private void ensureCapacity(int bytes) {
+		if (_buffer.remaining() < bytes) {
+			final ByteBuffer larger = ByteBuffer
+					.allocate(Math.max(_buffer.capacity() * 2, _buffer.position() + bytes));
+			_buffer.flip();
+			larger.put(_buffer);
+			_buffer = larger;
+		}
+	}
+
+	void putInt(int value) {
+		ensureCapacity(Integer.BYTES);
+		_buffer.putInt(value);
+	}
+
+	void putLong(long value) {
+		ensureCapacity(Long.BYTES);
+		_buffer.putLong(value);
+	}
+
+	void putDouble(double value) {
+		ensureCapacity(Double.BYTES);
+		_buffer.putDouble(value);
+	}
+
+	void putBoolean(boolean value) {
+		ensureCapacity(1);
+		_buffer.put((byte) (value ? 1 : 0));
+	}
+
+	/**
+	 * Puts the first elements of an array.
+	 *
+	 * @param values the array.
+	 * @param count  the number of elements to put.
+	 */
+	void putInts(int[] values, int count) {
+		ensureCapacity(count * Integer.BYTES);
+		_buffer.asIntBuffer().put(values, 0, count);
+		_buffer.position(_buffer.position() + count * Integer.BYTES);
+	}
+
+	/**
+	 * Puts the first elements of an array.
+	 *
+	 * @param values the array.
+	 * @param count  the number of elements to put.
+	 */
+	void putDoubles(double[] values, int count) {
+		ensureCapacity(count * Double.BYTES);
+		_buffer.asDoubleBuffer().put(values, 0, count);
+		_buffer.position(_buffer.position() + count * Double.BYTES);
+	}
+
+	/**
+	 * Puts a string as its length and its UTF-8 bytes.
+	 *
+	 * @param value the string.
+	 */
+	void putString(String value) {
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		putInt(bytes.length);
+		ensureCapacity(bytes.length);
+		_buffer.put(bytes);
+	}
+
+	int getInt() {
+		return _buffer.getInt();
+	}
+
+	long getLong() {
+		return _buffer.getLong();
+	}
+
+	double getDouble() {
+		return _buffer.getDouble();
+	}
+
+	boolean getBoolean() {
+		return _buffer.get() != 0;
+	}
+
+	/**
+	 * Gets elements put by putInts.
+	 *
+	 * @param count the number of elements.
+	 * @return a new array of them.
+	 */
+	int[] getInts(int count) {
+		final int[] values = new int[count];
+		_buffer.asIntBuffer().get(values);
+		_buffer.position(_buffer.position() + count * Integer.BYTES);
+		return values;
+	}
+
+	/**
+	 * Gets elements put by putDoubles into the start of an array.
+	 *
+	 * @param values the array.
+	 * @param count  the number of elements.
+	 */
+	void getDoubles(double[] values, int count) {
+		_buffer.asDoubleBuffer().get(values, 0, count);
+		_buffer.position(_buffer.position() + count * Double.BYTES);
+	}
+
+	/**
+	 * Gets elements put by putDoubles.
+	 *
+	 * @param count the number of elements.
+	 * @return a new array of them.
+	 */
+	double[] getDoubles(int count) {
+		final double[] values = new double[count];
+		getDoubles(values, count);
+		return values;
+	}
+
+	/**
+	 * Gets a string put by putString.
+	 *
+	 * @return the string.
+	 */
+	String getString() {
+		final byte[] bytes = new byte[getInt()];
+		_buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
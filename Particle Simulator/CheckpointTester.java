@@ -0,0 +1,88 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class CheckpointTester {
+	/**
+	 * Returns a temporary file name for a checkpoint.
+	 */
+	private File checkpointFile() throws IOException {
+		final File file = File.createTempFile("simulation", ".checkpoint");
+		file.delete();
+		file.deleteOnExit();
+		return file;
+	}
+
+	@Test
+	public void testResumeIsIdentical() throws IOException {
+		final File file = ParticleFiles.randomParticles(300, 100, 0);
+		for (boolean lazy : new boolean[] { true, false }) {
+			final ParticleSimulator plain = new ParticleSimulator(file.getPath(), lazy);
+			final String expected = ParticleFiles.simulate(plain, false);
+
+			// With a checkpoint every 1000 events, the file holds one of the last ones.
+			final File checkpoint = checkpointFile();
+			final ParticleSimulator checkpointed = new ParticleSimulator(file.getPath(), lazy);
+			checkpointed.setCheckpoints(checkpoint, 1000, 0);
+			assertEquals(expected, ParticleFiles.simulate(checkpointed, false));
+			assertTrue(checkpoint.exists());
+
+			final ParticleSimulator resumed = ParticleSimulator.resume(checkpoint);
+			assertTrue(resumed.getEventsProcessed() > 0);
+			assertTrue(resumed.getEventsProcessed() < plain.getEventsProcessed());
+			assertEquals(expected, ParticleFiles.simulate(resumed, false));
+			assertEquals(plain.getEventsProcessed(), resumed.getEventsProcessed());
+			assertEquals(plain.getCollisions(), resumed.getCollisions());
+		}
+	}
+
+	@Test
+	public void testResumeTwice() throws IOException {
+		// A resumed simulation can write checkpoints of its own.
+		final File file = ParticleFiles.randomParticles(200, 100, 1);
+		final ParticleSimulator plain = new ParticleSimulator(file.getPath(), true);
+		final String expected = ParticleFiles.simulate(plain, false);
+
+		// A single checkpoint two thirds of the way through, so that the resumed run is
+		// sure to reach its first checkpoint however the writes were timed.
+		final File first = checkpointFile();
+		final ParticleSimulator checkpointed = new ParticleSimulator(file.getPath(), true);
+		checkpointed.setCheckpoints(first, plain.getEventsProcessed() * 2 / 3, 0);
+		ParticleFiles.simulate(checkpointed, false);
+
+		final File second = checkpointFile();
+		final ParticleSimulator resumed = ParticleSimulator.resume(first);
+		resumed.setCheckpoints(second, plain.getEventsProcessed() / 10, 0);
+		assertEquals(expected, ParticleFiles.simulate(resumed, false));
+		assertEquals(expected, ParticleFiles.simulate(ParticleSimulator.resume(second), false));
+	}
+
+	@Test
+	public void testDamaged() throws IOException {
+		final File file = ParticleFiles.randomParticles(50, 100, 2);
+		final File checkpoint = checkpointFile();
+		final ParticleSimulator simulator = new ParticleSimulator(file.getPath(), true);
+		simulator.setCheckpoints(checkpoint, 1, 0);
+		ParticleFiles.simulate(simulator, false);
+
+		// A file cut short, or with a byte changed, is not resumed.
+		final byte[] bytes = Files.readAllBytes(checkpoint.toPath());
+		Files.write(checkpoint.toPath(), Arrays.copyOf(bytes, bytes.length - 100));
+		assertThrows(IOException.class, () -> ParticleSimulator.resume(checkpoint));
+		bytes[bytes.length / 2] ^= 1;
+		Files.write(checkpoint.toPath(), bytes);
+		assertThrows(IOException.class, () -> ParticleSimulator.resume(checkpoint));
+		assertThrows(IOException.class, () -> ParticleSimulator.resume(file));
+	}
+
+	@Test
+	public void testCalendarQueue() throws IOException {
+		final File file = ParticleFiles.randomParticles(10, 100, 3);
+		final ParticleSimulator simulator = new ParticleSimulator(file.getPath(), true, new CalendarQueue());
+		assertThrows(IllegalStateException.class, () -> simulator.setCheckpoints(checkpointFile(), 100, 0));
+		assertThrows(IllegalArgumentException.class,
+				() -> new ParticleSimulator(file.getPath(), true).setCheckpoints(checkpointFile(), -1, 0));
+	}
+}
@@ -0,0 +1,233 @@
+import java.util.Arrays;
+
+/**
+ * Finds the next event of a particle: the earliest of crossing into another cell,
+ * hitting a wall, and colliding with a particle in its own or a neighbouring cell.
+ * The particles of the neighbouring cells are gathered into an array first, in the
+ * order the cells list them, and their collision times are computed in one pass
+ * over it. findAll does the same for a block of particles at once, gathering the
+ * pairs of them all into one array, which VectorCollisionScan computes the times
+ * of several at a time.
+ *
+ * Ties go to the candidate tested first, as they always have: the crossing, then
+ * the walls in order, then the particles in the order gathered. A scan keeps its
+ * result and its scratch arrays, so each thread needs its own.
+ */
+class CollisionScan {
+	// The name of the class that computes collision times with the Vector API.
+	private static final String VECTOR_SCAN = "VectorCollisionScan";
+
+	// Initial capacity for the arrays of candidates.
+	private static final int INITIAL_CAPACITY = 64;
+
+	// The particles in the cells around the particle being scanned, and the time
+	// until it collides with each of them.
+	int[] _others = new int[INITIAL_CAPACITY];
+	double[] _times = new double[INITIAL_CAPACITY];
+
+	// The time until the earliest collision found by earliestCollision.
+	double _collisionTime;
+
+	// The next event found by find: the time until it, its type and the other
+	// particle or the wall.
+	private double _time;
+	private int _type;
+	private int _other;
+
+	/**
+	 * Creates a scan that uses the Vector API if it is available, that is if the
+	 * jdk.incubator.vector module was added with --add-modules, and computes one
+	 * collision time at a time if not.
+	 *
+	 * @param vector false to always compute one collision time at a time.
+	 * @return the scan.
+	 */
+	static CollisionScan create(boolean vector) {
+		if (vector) {
+			try {
+				return (CollisionScan) Class.forName(VECTOR_SCAN).getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+				// The module is missing; fall through to the scalar scan.
+			}
+		}
+		return new CollisionScan();
+	}
+
+	/**
+	 * Creates a scan that uses the Vector API if it is available.
+	 *
+	 * @return the scan.
+	 */
+	static CollisionScan create() {
+		return create(true);
+	}
+
+	/**
+	 * Returns whether this scan computes several collision times at a time.
+	 *
+	 * @return true if it uses the Vector API.
+	 */
+	boolean isVectorized() {
+		return false;
+	}
+
+	/**
+	 * Finds the next event of a particle, which is then given by getTime, getType
+	 * and getOther.
+	 *
+	 * @param store the particles.
+	 * @param cells the grid the particles are filed in.
+	 * @param width the width of the box.
+	 * @param p1    the particle.
+	 * @param now   the time the event times are relative to.
+	 */
+	void find(ParticleStore store, CellList cells, int width, int p1, double now) {
+		findBoundary(store, cells, width, p1, now);
+
+		// Now test collisions with the particles in its own and the neighbouring cells.
+		final int count = gather(cells, p1, 0);
+		final int k = earliestCollision(store, p1, count, now, _time);
+		if (k != -1) {
+			_time = _collisionTime;
+			_type = EventPool.COLLISION;
+			_other = _others[k];
+		}
+	}
+
+	/**
+	 * Finds the next event of every particle of a block, as find would one after
+	 * the other.
+	 *
+	 * @param store  the particles.
+	 * @param cells  the grid the particles are filed in.
+	 * @param width  the width of the box.
+	 * @param from   the first particle of the block.
+	 * @param to     the particle after the last of the block.
+	 * @param now    the time the event times are relative to.
+	 * @param times  the time until the event of each particle, by particle id.
+	 * @param types  the type of the event of each particle.
+	 * @param others the other particle or the wall of the event of each particle.
+	 */
+	void findAll(ParticleStore store, CellList cells, int width, int from, int to, double now, double[] times,
+			int[] types, int[] others) {
+		for (int p = from; p < to; p++) {
+			find(store, cells, width, p, now);
+			times[p] = _time;
+			types[p] = _type;
+			others[p] = _other;
+		}
+	}
+
+	/**
+	 * Finds the earliest of crossing into another cell and hitting a wall, which is
+	 * left as the result of find.
+	 *
+	 * @param store the particles.
+	 * @param cells the grid the particles are filed in.
+	 * @param width the width of the box.
+	 * @param p1    the particle.
+	 * @param now   the time the event times are relative to.
+	 */
+	void findBoundary(ParticleStore store, CellList cells, int width, int p1, double now) {
+		// The earliest candidate so far; a particle that never leaves its cell needs
+		// no crossing event.
+		double bestTime = cells.getCrossingTime(store, p1, now);
+		int bestType = EventPool.CROSSING;
+		int bestOther = -1;
+
+		for (int wall = ParticleStore.LEFT; wall <= ParticleStore.BOTTOM; wall++) {
+			double time = store.getWallCollisionTime(p1, wall, width, now);
+			if (time < bestTime) {
+				bestTime = time;
+				bestType = EventPool.WALL;
+				bestOther = wall;
+			}
+		}
+
+		_time = bestTime;
+		_type = bestType;
+		_other = bestOther;
+	}
+
+	/**
+	 * Adds the particles in the cell of a particle and the neighbouring cells, other
+	 * than the particle itself, to _others, growing it and _times as needed.
+	 *
+	 * @param cells the grid the particles are filed in.
+	 * @param p1    the particle.
+	 * @param count the number of particles already in _others.
+	 * @return the number of particles in _others after them.
+	 */
+	int gather(CellList cells, int p1, int count) {
+		for (int cellY = cells.getCellY(p1) - 1; cellY <= cells.getCellY(p1) + 1; cellY++) {
+			for (int cellX = cells.getCellX(p1) - 1; cellX <= cells.getCellX(p1) + 1; cellX++) {
+				for (int p2 = cells.first(cellX, cellY); p2 != -1; p2 = cells.next(p2)) {
+					if (p2 == p1) {
+						continue;
+					}
+					if (count == _others.length) {
+						_others = Arrays.copyOf(_others, count * 2);
+						_times = Arrays.copyOf(_times, count * 2);
+					}
+					_others[count++] = p2;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Finds the first of the gathered particles that a particle collides with
+	 * earliest, if that is before a limit. The particle itself is skipped.
+	 *
+	 * @param store the particles.
+	 * @param p1    the particle.
+	 * @param count the number of particles gathered in _others.
+	 * @param now   the time the collision times are relative to.
+	 * @param limit the time the collision must come before.
+	 * @return the position in _others of the particle, whose collision time is left
+	 *         in _collisionTime, or -1 if none collides before the limit.
+	 */
+	int earliestCollision(ParticleStore store, int p1, int count, double now, double limit) {
+		double bestTime = limit;
+		int best = -1;
+		for (int k = 0; k < count; k++) {
+			if (_others[k] != p1) {
+				double time = store.getCollisionTime(p1, _others[k], now);
+				if (time < bestTime) {
+					bestTime = time;
+					best = k;
+				}
+			}
+		}
+		_collisionTime = bestTime;
+		return best;
+	}
+
+	/**
+	 * Returns the time until the event found by find, or infinity if there is none.
+	 *
+	 * @return the time after now of the event.
+	 */
+	double getTime() {
+		return _time;
+	}
+
+	/**
+	 * Returns the type of the event found by find.
+	 *
+	 * @return the type, one of the types of EventPool.
+	 */
+	int getType() {
+		return _type;
+	}
+
+	/**
+	 * Returns the other particle or the wall of the event found by find.
+	 *
+	 * @return the other particle, the wall, or -1.
+	 */
+	int getOther() {
+		return _other;
+	}
+}
@@ -0,0 +1,124 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.io.*;
+import java.util.*;
+
+public class CollisionScanTester {
+	/**
+	 * Makes crowded particles of mixed sizes, some of them overlapping, some at
+	 * rest and some moving together, so that every branch of the formula is taken.
+	 */
+	private java.util.List<Particle> crowdedParticles(int n, long seed) {
+		final Random random = new Random(seed);
+		final java.util.List<Particle> particles = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			final double vx = i % 7 == 0 ? 0 : i % 5 == 0 ? 0.5 : random.nextDouble() * 2 - 1;
+			final double vy = i % 7 == 0 ? 0 : i % 5 == 0 ? -0.25 : random.nextDouble() * 2 - 1;
+			particles.add(new Particle("p" + i, 5 + random.nextDouble() * 90, 5 + random.nextDouble() * 90, vx, vy,
+					0.5 + random.nextDouble() * 4));
+		}
+		return particles;
+	}
+
+	@Test
+	public void testSameAsScalar() {
+		final ParticleStore store = new ParticleStore(crowdedParticles(203, 0));
+		final CollisionScan scalar = CollisionScan.create(false);
+		final CollisionScan vector = CollisionScan.create();
+		assertFalse(scalar.isVectorized());
+
+		// Every particle against all the others, with and without a limit, and against
+		// fewer than fill a vector.
+		for (double now : new double[] { 0, 1.75 }) {
+			for (int p1 = 0; p1 < store.size(); p1++) {
+				for (int count : new int[] { store.size(), 3 }) {
+					for (double limit : new double[] { Double.POSITIVE_INFINITY, 2 }) {
+						for (CollisionScan scan : new CollisionScan[] { scalar, vector }) {
+							scan._others = new int[count];
+							scan._times = new double[count];
+							for (int k = 0; k < count; k++) {
+								scan._others[k] = (p1 + k) % store.size();
+							}
+						}
+						assertEquals(scalar.earliestCollision(store, p1, count, now, limit),
+								vector.earliestCollision(store, p1, count, now, limit));
+						assertEquals(scalar._collisionTime, vector._collisionTime);
+					}
+				}
+			}
+		}
+
+		// The times themselves are those of the store, to the last bit.
+		if (vector.isVectorized()) {
+			for (int p1 = 0; p1 < store.size(); p1++) {
+				vector._others = new int[store.size()];
+				vector._times = new double[store.size()];
+				for (int k = 0; k < store.size(); k++) {
+					vector._others[k] = k;
+				}
+				vector.earliestCollision(store, p1, store.size(), 0.5, Double.POSITIVE_INFINITY);
+				for (int k = 0; k < store.size(); k++) {
+					if (k != p1) {
+						assertEquals(store.getCollisionTime(p1, k, 0.5), vector._times[k], p1 + " and " + k);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSameNextEvents() {
+		final ParticleStore store = new ParticleStore(crowdedParticles(400, 1));
+		final CellList cells = new CellList(store, 100);
+		final CollisionScan scalar = CollisionScan.create(false);
+		final CollisionScan vector = CollisionScan.create();
+		for (int p = 0; p < store.size(); p++) {
+			scalar.find(store, cells, 100, p, 0);
+			vector.find(store, cells, 100, p, 0);
+			assertEquals(scalar.getTime(), vector.getTime());
+			assertEquals(scalar.getType(), vector.getType());
+			assertEquals(scalar.getOther(), vector.getOther());
+		}
+
+		// A block at a time, in blocks of every size up to more than a vector.
+		for (int block : new int[] { 1, 3, 17, 400 }) {
+			final double[] times = new double[store.size()];
+			final int[] types = new int[store.size()];
+			final int[] others = new int[store.size()];
+			for (int from = 0; from < store.size(); from += block) {
+				vector.findAll(store, cells, 100, from, Math.min(store.size(), from + block), 0.5, times, types, others);
+			}
+			for (int p = 0; p < store.size(); p++) {
+				scalar.find(store, cells, 100, p, 0.5);
+				assertEquals(scalar.getTime(), times[p]);
+				assertEquals(scalar.getType(), types[p]);
+				assertEquals(scalar.getOther(), others[p]);
+			}
+		}
+	}
+
+	@Test
+	public void testSameSimulation() throws IOException {
+		final File file = File.createTempFile("particles", ".txt");
+		try {
+			ParticleFiles.writeRandomParticles(file, 3000, 2);
+			final String[] outputs = new String[3];
+			final long[] events = new long[3];
+			final boolean[][] scans = { { false, false }, { true, false }, { true, true } };
+			for (int i = 0; i < scans.length; i++) {
+				final ParticleSimulator simulator = new ParticleSimulator(file.getPath(), true);
+				simulator.setInitialScan(scans[i][0], scans[i][1]);
+				final ByteArrayOutputStream out = new ByteArrayOutputStream();
+				simulator.simulate(false, new PrintStream(out));
+				outputs[i] = out.toString();
+				events[i] = simulator.getEventsProcessed();
+			}
+			for (int i = 1; i < scans.length; i++) {
+				assertEquals(outputs[0], outputs[i]);
+				assertEquals(events[0], events[i]);
+			}
+		} finally {
+			file.delete();
+		}
+	}
+}
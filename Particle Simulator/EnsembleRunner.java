@@ -0,0 +1,236 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs many simulations without drawing them, each on its own input file, and
+ * writes the final state of each to its own result file. The runs are spread over
+ * a work-stealing pool: the list of runs is split in halves until each task holds
+ * one run, so a thread that finishes its short runs takes half of the work still
+ * waiting on a busy thread. Every run has its own simulator, store and queue, so
+ * they share nothing and the throughput grows with the number of cores.
+ *
+ * The input is either a directory, whose files ending in .txt are all run, or a
+ * manifest listing one input file per line; relative paths in a manifest are
+ * relative to its directory, and blank lines and lines starting with # are
+ * skipped. A summary of the runs, with the time and the number of events of each,
+ * is written to summary.tsv in the output directory.
+ *
+ * Usage: java EnsembleRunner <directory|manifest> <outputDirectory> [threads] [lazy]
+ */
+public class EnsembleRunner {
+	// The name of the summary file in the output directory.
+	static final String SUMMARY = "summary.tsv";
+
+	// The input files, in the order they are listed.
+	private final List<File> _inputs;
+
+	// The directory the result files are written to.
+	private final File _outputDirectory;
+
+	// Whether the runs move only the particles involved in each event.
+	private final boolean _lazy;
+
+	/**
+	 * The outcome of one run.
+	 */
+	static class Result {
+		// The input file and the file its final state was written to.
+		final File _input;
+		final File _output;
+
+		// The number of events and collisions, and the wall-clock time of the run.
+		long _events;
+		long _collisions;
+		long _nanos;
+
+		// The message of the exception that ended the run, or null if it finished.
+		String _error;
+
+		Result(File input, File output) {
+			_input = input;
+			_output = output;
+		}
+	}
+
+	/**
+	 * A range of the runs, split in halves until it holds one.
+	 */
+	private class Runs extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Result[] _results;
+		private final int _from;
+		private final int _to;
+
+		Runs(Result[] results, int from, int to) {
+			_results = results;
+			_from = from;
+			_to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (_to - _from == 1) {
+				runOne(_results[_from]);
+			} else {
+				final int middle = (_from + _to) >>> 1;
+				invokeAll(new Runs(_results, _from, middle), new Runs(_results, middle, _to));
+			}
+		}
+	}
+
+	/**
+	 * @param inputs          the input files
+	 * @param outputDirectory the directory to write the result files to
+	 * @param lazy            true to only move the particles involved in each
+	 *                        event; false to move every particle after every event
+	 */
+	EnsembleRunner(List<File> inputs, File outputDirectory, boolean lazy) {
+		_inputs = inputs;
+		_outputDirectory = outputDirectory;
+		_lazy = lazy;
+	}
+
+	/**
+	 * Finds the input files in a directory or a manifest.
+	 *
+	 * @param source a directory of .txt files, or a manifest listing input files.
+	 * @return the input files: those of a directory sorted by name, those of a
+	 *         manifest in its order.
+	 */
+	static List<File> findInputs(File source) throws IOException {
+		final List<File> inputs = new ArrayList<>();
+		if (source.isDirectory()) {
+			final File[] files = source.listFiles((directory, name) -> name.endsWith(".txt"));
+			Arrays.sort(files);
+			for (File file : files) {
+				if (file.isFile()) {
+					inputs.add(file);
+				}
+			}
+			return inputs;
+		}
+		try (BufferedReader reader = new BufferedReader(new FileReader(source))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				File file = new File(line);
+				if (!file.isAbsolute()) {
+					file = new File(source.getAbsoluteFile().getParentFile(), line);
+				}
+				inputs.add(file);
+			}
+		}
+		return inputs;
+	}
+
+	/**
+	 * Runs every simulation and writes the summary. A run that fails is recorded
+	 * in its result and does not stop the others.
+	 *
+	 * @param threads the number of threads of the pool.
+	 * @return the results, in the order of the inputs.
+	 */
+	List<Result> run(int threads) throws IOException {
+		if (!_outputDirectory.isDirectory() && !_outputDirectory.mkdirs()) {
+			throw new IOException("Cannot create " + _outputDirectory);
+		}
+		final Result[] results = new Result[_inputs.size()];
+		final Set<String> names = new HashSet<>();
+		for (int i = 0; i < results.length; i++) {
+			// Inputs of the same name from different directories get their number.
+			String name = _inputs.get(i).getName();
+			if (!names.add(name)) {
+				name = name + "-" + i;
+				names.add(name);
+			}
+			results[i] = new Result(_inputs.get(i), new File(_outputDirectory, name + ".out"));
+		}
+		if (results.length > 0) {
+			final ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				pool.invoke(new Runs(results, 0, results.length));
+			} finally {
+				pool.shutdown();
+			}
+		}
+		writeSummary(results);
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * Runs one simulation, streaming its final state to its result file.
+	 *
+	 * @param result the run, whose counts and time are filled in.
+	 */
+	private void runOne(Result result) {
+		final long start = System.nanoTime();
+		try (PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(result._output)))) {
+			final ParticleSimulator simulator = new ParticleSimulator(result._input.getPath(), _lazy);
+			simulator.simulate(false, out);
+			result._events = simulator.getEventsProcessed();
+			result._collisions = simulator.getCollisions();
+		} catch (IOException | RuntimeException e) {
+			result._error = e.toString();
+		}
+		result._nanos = System.nanoTime() - start;
+	}
+
+	/**
+	 * Writes a line for each run to the summary file.
+	 *
+	 * @param results the runs.
+	 */
+	private void writeSummary(Result[] results) throws IOException {
+		try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(new File(_outputDirectory, SUMMARY))))) {
+			out.println("input\toutput\tevents\tcollisions\tmilliseconds\terror");
+			for (Result result : results) {
+				out.println(result._input.getPath() + "\t" + result._output.getName() + "\t" + result._events + "\t"
+						+ result._collisions + "\t" + result._nanos / 1e6 + "\t"
+						+ (result._error == null ? "" : result._error.replace('\t', ' ')));
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: java EnsembleRunner <directory|manifest> <outputDirectory> [threads] [lazy]");
+			System.exit(1);
+		}
+
+		// Nothing is drawn, so no display is needed.
+		System.setProperty("java.awt.headless", "true");
+
+		// The options after the output directory.
+		List<String> options = Arrays.asList(args).subList(2, args.length);
+		int threads = Runtime.getRuntime().availableProcessors();
+		for (String option : options) {
+			if (option.matches("\\d+")) {
+				threads = Integer.parseInt(option);
+			}
+		}
+
+		final EnsembleRunner runner = new EnsembleRunner(findInputs(new File(args[0])), new File(args[1]),
+				options.contains("lazy"));
+		final long start = System.nanoTime();
+		final List<Result> results = runner.run(threads);
+		final double seconds = (System.nanoTime() - start) / 1e9;
+
+		long events = 0;
+		int failed = 0;
+		for (Result result : results) {
+			events += result._events;
+			if (result._error != null) {
+				System.err.println(result._input + ": " + result._error);
+				failed++;
+			}
+		}
+		System.out.printf("%d runs (%d failed) on %d threads in %.3f s: %.2f runs/s, %.0f events/s%n",
+				results.size(), failed, threads, seconds, results.size() / seconds, events / seconds);
+	}
+}
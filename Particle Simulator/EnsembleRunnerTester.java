@@ -0,0 +1,92 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class EnsembleRunnerTester {
+	/**
+	 * Makes an empty temporary directory, deleted when the tests end.
+	 */
+	private File makeDirectory() throws IOException {
+		final File directory = Files.createTempDirectory("ensemble").toFile();
+		directory.deleteOnExit();
+		return directory;
+	}
+
+	/**
+	 * Writes a random configuration of the given number of particles.
+	 */
+	private File writeParticles(File directory, String name, int numParticles, long seed) throws IOException {
+		final File file = new File(directory, name);
+		file.deleteOnExit();
+		ParticleFiles.writeRandomParticles(file, numParticles, seed);
+		return file;
+	}
+
+	@Test
+	public void testDirectory() throws IOException {
+		final File inputs = makeDirectory();
+		final File outputs = new File(makeDirectory(), "results");
+		outputs.deleteOnExit();
+		final File[] files = new File[5];
+		for (int i = 0; i < files.length; i++) {
+			files[i] = writeParticles(inputs, "run" + i + ".txt", 20 + 10 * i, i);
+		}
+		// Only the .txt files of a directory are run.
+		new File(inputs, "notes.md").createNewFile();
+		new File(inputs, "notes.md").deleteOnExit();
+
+		final List<File> found = EnsembleRunner.findInputs(inputs);
+		assertEquals(Arrays.asList(files), found);
+
+		final List<EnsembleRunner.Result> results = new EnsembleRunner(found, outputs, true).run(3);
+		assertEquals(files.length, results.size());
+		for (int i = 0; i < files.length; i++) {
+			final EnsembleRunner.Result result = results.get(i);
+			result._output.deleteOnExit();
+			assertNull(result._error);
+			assertEquals(files[i], result._input);
+			assertTrue(result._events > result._collisions);
+			assertEquals(ParticleFiles.simulate(new ParticleSimulator(files[i].getPath(), true), false),
+					new String(Files.readAllBytes(result._output.toPath())));
+		}
+
+		// A header and a line for each run.
+		final File summary = new File(outputs, EnsembleRunner.SUMMARY);
+		summary.deleteOnExit();
+		assertEquals(files.length + 1, Files.readAllLines(summary.toPath()).size());
+	}
+
+	@Test
+	public void testManifest() throws IOException {
+		final File directory = makeDirectory();
+		final File outputs = makeDirectory();
+		final File file = writeParticles(directory, "particles.txt", 30, 7);
+		final File manifest = new File(directory, "manifest");
+		manifest.deleteOnExit();
+		try (PrintWriter out = new PrintWriter(new FileWriter(manifest))) {
+			out.println("# Relative to the manifest.");
+			out.println("particles.txt");
+			out.println();
+			out.println(file.getAbsolutePath());
+			out.println("missing.txt");
+		}
+
+		final List<File> found = EnsembleRunner.findInputs(manifest);
+		assertEquals(3, found.size());
+		final List<EnsembleRunner.Result> results = new EnsembleRunner(found, outputs, true).run(2);
+		for (EnsembleRunner.Result result : results) {
+			result._output.deleteOnExit();
+		}
+		new File(outputs, EnsembleRunner.SUMMARY).deleteOnExit();
+
+		// The same file twice gets two result files; a missing one fails on its own.
+		assertNotEquals(results.get(0)._output, results.get(1)._output);
+		assertNull(results.get(0)._error);
+		assertNull(results.get(1)._error);
+		assertEquals(ParticleFiles.simulate(new ParticleSimulator(file.getPath(), true), false),
+				new String(Files.readAllBytes(results.get(1)._output.toPath())));
+		assertNotNull(results.get(2)._error);
+	}
+}
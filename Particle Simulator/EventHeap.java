@@ -0,0 +1,335 @@
+import java.util.Arrays;
+
+/**
+ * A d-ary heap of event handles keyed by event time, with the earliest event at
+ * the top. The heap holds plain ints and compares doubles, so adding, removing and
+ * rescheduling events allocates nothing and makes no virtual calls. The times are
+ * kept next to the handles in heap order, so a sift step reads one array instead
+ * of following each handle to its time, and with four children to a node the heap
+ * is half as deep as a binary one while a node's children share a cache line.
+ */
+class EventHeap implements EventQueue {
+	// Initial capacity for the heap.
+	private static final int INITIAL_CAPACITY = 128;
+
+	// The number of children of each node, unless another is given.
+	private static final int DEFAULT_ARITY = 4;
+
+	// The number of children of each node.
+	private final int _arity;
+
+	// The handles of the events, in heap order.
+	private int[] _storage;
+
+	// The times of the events, in the same order as their handles.
+	private double[] _keys;
+
+	// The index in the heap of the event with each handle, or -1 if it is not in
+	// the heap.
+	private int[] _positions;
+
+	// The number of elements in the heap.
+	private int _numElements;
+
+	/**
+	 * Initialize an empty heap in which each node has the given number of children.
+	 *
+	 * @param arity the number of children of each node, at least 2.
+	 */
+	public EventHeap(int arity) {
+		if (arity < 2) {
+			throw new IllegalArgumentException("A heap node needs at least 2 children: " + arity);
+		}
+		_arity = arity;
+		_storage = new int[INITIAL_CAPACITY];
+		_keys = new double[INITIAL_CAPACITY];
+		_positions = new int[INITIAL_CAPACITY];
+		Arrays.fill(_positions, -1);
+		_numElements = 0;
+	}
+
+	/**
+	 * Initialize an empty 4-ary heap.
+	 */
+	public EventHeap() {
+		this(DEFAULT_ARITY);
+	}
+
+	/**
+	 * Reads a heap written to a checkpoint by writeTo. The events are heapified in
+	 * the order they were in, which is already heap order, so none of them moves and
+	 * events with the same time come out in the same order as they would have.
+	 *
+	 * @param in the checkpoint, at the state of the heap.
+	 */
+	EventHeap(Checkpoint in) {
+		this(in.getInt());
+		final int count = in.getInt();
+		addAll(in.getInts(count), in.getDoubles(count), count);
+	}
+
+	/**
+	 * Puts the arity and the events of the heap, in heap order, into a checkpoint.
+	 *
+	 * @param out the checkpoint.
+	 */
+	void writeTo(Checkpoint out) {
+		out.putInt(_arity);
+		out.putInt(_numElements);
+		out.putInts(_storage, _numElements);
+		out.putDoubles(_keys, _numElements);
+	}
+
+	/**
+	 * Adds an event to the heap.
+	 *
+	 * @param handle the handle of an event that is not in the heap.
+	 * @param time   the time of the event.
+	 */
+	public void add(int handle, double time) {
+		append(handle, time);
+
+		// Heapify up from the end of the heap.
+		siftUp(_numElements - 1);
+	}
+
+	/**
+	 * Adds a batch of events to the heap. Into an empty heap they are put in any
+	 * order and then heapified from the bottom up, which takes O(n) time rather
+	 * than the O(n log n) of adding them one at a time.
+	 *
+	 * @param handles the handles of events that are not in the heap.
+	 * @param times   the times of the events.
+	 * @param count   the number of events to add from the start of the arrays.
+	 */
+	public void addAll(int[] handles, double[] times, int count) {
+		if (_numElements > 0) {
+			for (int i = 0; i < count; i++) {
+				add(handles[i], times[i]);
+			}
+			return;
+		}
+		for (int i = 0; i < count; i++) {
+			append(handles[i], times[i]);
+		}
+
+		// Sift down every node that has children, the deepest first; an empty heap
+		// has none, and its first slot may hold a stale handle.
+		if (_numElements == 0) {
+			return;
+		}
+		for (int index = (_numElements - 2) / _arity; index >= 0; index--) {
+			siftDown(index);
+		}
+	}
+
+	/**
+	 * Remove and return the earliest event of the heap.
+	 *
+	 * @return the handle of the earliest event, or -1 if the heap is empty.
+	 */
+	public int removeFirst() {
+		// If heap is empty return -1.
+		if (_numElements == 0) {
+			return -1;
+		}
+		int first = _storage[0];
+		removeAt(0);
+		return first;
+	}
+
+	/**
+	 * Return the earliest event of the heap without removing it.
+	 *
+	 * @return the handle of the earliest event, or -1 if the heap is empty.
+	 */
+	public int getFirst() {
+		return _numElements == 0 ? -1 : _storage[0];
+	}
+
+	/**
+	 * Remove an event from the heap.
+	 *
+	 * @param handle the handle of an event in the heap.
+	 */
+	public void remove(int handle) {
+		removeAt(position(handle));
+	}
+
+	/**
+	 * Change the time of an event, moving it up or down as needed.
+	 *
+	 * @param handle the handle of an event in the heap.
+	 * @param time   the new time of the event.
+	 */
+	public void update(int handle, double time) {
+		int index = position(handle);
+		_keys[index] = time;
+
+		// At most one of these moves the event.
+		siftDown(siftUp(index));
+	}
+
+	/**
+	 * Find whether an event is in the heap.
+	 *
+	 * @param handle the handle of an event.
+	 * @return true if it is in the heap.
+	 */
+	public boolean contains(int handle) {
+		return handle >= 0 && handle < _positions.length && _positions[handle] != -1;
+	}
+
+	/**
+	 * Find the current size of the heap.
+	 *
+	 * @return the size of the heap.
+	 */
+	public int size() {
+		return _numElements;
+	}
+
+	/**
+	 * Returns the number of children of each node.
+	 *
+	 * @return the arity of the heap.
+	 */
+	public int getArity() {
+		return _arity;
+	}
+
+	/**
+	 * Put an event at the end of the heap, without restoring the heap order.
+	 *
+	 * @param handle the handle of an event that is not in the heap.
+	 * @param time   the time of the event.
+	 */
+	private void append(int handle, double time) {
+		if (contains(handle)) {
+			throw new IllegalArgumentException("Event " + handle + " is already in the heap");
+		}
+		ensureCapacity(handle);
+		_storage[_numElements] = handle;
+		_keys[_numElements] = time;
+		_positions[handle] = _numElements;
+		_numElements++;
+	}
+
+	/**
+	 * Find the index in the heap of the event with the given handle.
+	 *
+	 * @param handle the handle of an event in the heap.
+	 * @return the index of the event.
+	 */
+	private int position(int handle) {
+		if (!contains(handle)) {
+			throw new IllegalArgumentException("Event " + handle + " is not in the heap");
+		}
+		return _positions[handle];
+	}
+
+	/**
+	 * Remove the event at an index of the heap.
+	 *
+	 * @param index the index of the event in the heap.
+	 */
+	private void removeAt(int index) {
+		_positions[_storage[index]] = -1;
+
+		// Replace the removed event with the last one.
+		_numElements--;
+		if (index < _numElements) {
+			_storage[index] = _storage[_numElements];
+			_keys[index] = _keys[_numElements];
+			_positions[_storage[index]] = index;
+			siftDown(siftUp(index));
+		}
+	}
+
+	/**
+	 * Move an event up the heap until its parent is no later.
+	 *
+	 * @param index the index of the event.
+	 * @return the new index of the event.
+	 */
+	private int siftUp(int index) {
+		int handle = _storage[index];
+		double time = _keys[index];
+		while (index > 0) {
+			int parent = (index - 1) / _arity;
+			if (_keys[parent] <= time) {
+				break;
+			}
+			move(parent, index);
+			index = parent;
+		}
+		_storage[index] = handle;
+		_keys[index] = time;
+		_positions[handle] = index;
+		return index;
+	}
+
+	/**
+	 * Move an event down the heap until it is no later than its children.
+	 *
+	 * @param index the index of the event.
+	 * @return the new index of the event.
+	 */
+	private int siftDown(int index) {
+		int handle = _storage[index];
+		double time = _keys[index];
+		while (true) {
+			// The earliest of the children.
+			int firstChild = index * _arity + 1;
+			if (firstChild >= _numElements) {
+				break;
+			}
+			int lastChild = Math.min(firstChild + _arity, _numElements);
+			int child = firstChild;
+			for (int i = firstChild + 1; i < lastChild; i++) {
+				if (_keys[i] < _keys[child]) {
+					child = i;
+				}
+			}
+			if (_keys[child] >= time) {
+				break;
+			}
+			move(child, index);
+			index = child;
+		}
+		_storage[index] = handle;
+		_keys[index] = time;
+		_positions[handle] = index;
+		return index;
+	}
+
+	/**
+	 * Move the event at one index of the heap to another.
+	 *
+	 * @param from the index of the event.
+	 * @param to   the index to move it to.
+	 */
+	private void move(int from, int to) {
+		_storage[to] = _storage[from];
+		_keys[to] = _keys[from];
+		_positions[_storage[to]] = to;
+	}
+
+	/**
+	 * Grow the arrays so that they can hold the given handle.
+	 *
+	 * @param handle the handle.
+	 */
+	private void ensureCapacity(int handle) {
+		if (handle >= _positions.length) {
+			int oldLength = _positions.length;
+			int newLength = Math.max(oldLength * 2, handle + 1);
+			_positions = Arrays.copyOf(_positions, newLength);
+			Arrays.fill(_positions, oldLength, newLength, -1);
+		}
+		if (_numElements == _storage.length) {
+			_storage = Arrays.copyOf(_storage, _storage.length * 2);
+			_keys = Arrays.copyOf(_keys, _keys.length * 2);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.util.*;
+
+public class EventHeapTester extends EventQueueTester {
+	@Override
+	EventQueue newQueue() {
+		return new EventHeap();
+	}
+
+	@Test
+	public void testAddAll() {
+		final int N = 1000;
+		final int[] handles = new int[N];
+		final double[] times = new double[N];
+		for (int i = 0; i < N; i++) {
+			handles[i] = i;
+		}
+		final Random random = new Random(0);
+		for (int i = N - 1; i > 0; i--) {
+			final int j = random.nextInt(i + 1);
+			final int temp = handles[i];
+			handles[i] = handles[j];
+			handles[j] = temp;
+		}
+		for (int i = 0; i < N; i++) {
+			times[i] = handles[i] / 10.0;
+		}
+
+		// Heapified into an empty heap, or added one at a time into one that is not.
+		for (int arity = 2; arity <= 8; arity++) {
+			final EventHeap heap = new EventHeap(arity);
+			heap.addAll(handles, times, N - 1);
+			heap.addAll(handles, times, 0);
+			heap.addAll(new int[] { handles[N - 1] }, new double[] { times[N - 1] }, 1);
+			assertEquals(N, heap.size());
+			for (int i = 0; i < N; i++) {
+				assertEquals(i, heap.removeFirst());
+			}
+			assertEquals(-1, heap.removeFirst());
+		}
+
+		// Nothing into an empty heap, also after the heap has been emptied.
+		final EventHeap heap = new EventHeap();
+		heap.addAll(new int[0], new double[0], 0);
+		assertEquals(0, heap.size());
+		assertFalse(heap.contains(0));
+		heap.add(0, 1.0);
+		assertEquals(0, heap.removeFirst());
+		heap.addAll(new int[0], new double[0], 0);
+		assertEquals(0, heap.size());
+		assertFalse(heap.contains(0));
+		heap.add(0, 2.0);
+		assertEquals(1, heap.size());
+	}
+
+	@Test
+	@Override
+	public void testRemoveAndUpdate() {
+		for (int arity = 2; arity <= 5; arity++) {
+			testRemoveAndUpdate(new EventHeap(arity));
+		}
+	}
+
+	@Test
+	public void testBadArguments() {
+		assertThrows(IllegalArgumentException.class, () -> new EventHeap().addAll(new int[] { 4, 4 }, new double[2], 2));
+		assertThrows(IllegalArgumentException.class, () -> new EventHeap(1));
+	}
+}
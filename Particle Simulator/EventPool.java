@@ -0,0 +1,211 @@
+import java.util.Arrays;
+
+/**
+ * Stores the events of a simulation in parallel primitive arrays, so scheduling an
+ * event allocates nothing. Each event lives in a slot, identified by an int handle,
+ * which is recycled through a free list once the event has been handled.
+ *
+ * An event has a type, the time when it will take place, the time when it was
+ * created, the particle it belongs to and, depending on the type, the other
+ * particle in the collision or the wall the particle hits.
+ */
+public class EventPool {
+	// The types of events.
+	public static final int COLLISION = 0;
+	public static final int WALL = 1;
+	public static final int CROSSING = 2;
+	public static final int TERMINATION = 3;
+
+	// A particle whose next event lies beyond the scheduling horizon looks again
+	// for its next event at the edge of the horizon.
+	public static final int REEXAMINE = 4;
+
+	// Initial number of slots.
+	private static final int INITIAL_CAPACITY = 128;
+
+	// The fields of the event in slot i are at position i of every array.
+	private int[] _type;
+	private double[] _timeOfEvent;
+	private double[] _timeEventCreated;
+	private int[] _particle;
+	private int[] _other;
+
+	// The slots not in use, as a stack.
+	private int[] _free;
+	private int _numFree;
+
+	/**
+	 * Creates a pool with no events in it.
+	 */
+	public EventPool() {
+		_type = new int[INITIAL_CAPACITY];
+		_timeOfEvent = new double[INITIAL_CAPACITY];
+		_timeEventCreated = new double[INITIAL_CAPACITY];
+		_particle = new int[INITIAL_CAPACITY];
+		_other = new int[INITIAL_CAPACITY];
+		_free = new int[INITIAL_CAPACITY];
+		for (int i = 0; i < INITIAL_CAPACITY; i++) {
+			_free[i] = INITIAL_CAPACITY - 1 - i;
+		}
+		_numFree = INITIAL_CAPACITY;
+	}
+
+	/**
+	 * Reads a pool written to a checkpoint by writeTo. Every slot, and the order of
+	 * the free list, is as it was, so the same handles are handed out next.
+	 *
+	 * @param in the checkpoint, at the state of the pool.
+	 */
+	EventPool(Checkpoint in) {
+		final int capacity = in.getInt();
+		_type = in.getInts(capacity);
+		_timeOfEvent = in.getDoubles(capacity);
+		_timeEventCreated = in.getDoubles(capacity);
+		_particle = in.getInts(capacity);
+		_other = in.getInts(capacity);
+		_numFree = in.getInt();
+		_free = Arrays.copyOf(in.getInts(_numFree), capacity);
+	}
+
+	/**
+	 * Puts every slot and the free list into a checkpoint.
+	 *
+	 * @param out the checkpoint.
+	 */
+	void writeTo(Checkpoint out) {
+		final int capacity = _type.length;
+		out.putInt(capacity);
+		out.putInts(_type, capacity);
+		out.putDoubles(_timeOfEvent, capacity);
+		out.putDoubles(_timeEventCreated, capacity);
+		out.putInts(_particle, capacity);
+		out.putInts(_other, capacity);
+		out.putInt(_numFree);
+		out.putInts(_free, _numFree);
+	}
+
+	/**
+	 * Takes a free slot and stores an event in it.
+	 *
+	 * @param type             the type of the event.
+	 * @param timeOfEvent      the time when the event will take place.
+	 * @param timeEventCreated the time when the event was created.
+	 * @param particle         the particle the event belongs to, or -1.
+	 * @param other            the other particle of a collision, the wall of a wall
+	 *                         collision, or -1.
+	 * @return the handle of the event.
+	 */
+	public int allocate(int type, double timeOfEvent, double timeEventCreated, int particle, int other) {
+		if (_numFree == 0) {
+			grow();
+		}
+		final int handle = _free[--_numFree];
+		set(handle, type, timeOfEvent, timeEventCreated, particle, other);
+		return handle;
+	}
+
+	/**
+	 * Replaces the event in a slot that is in use.
+	 *
+	 * @param handle           the handle of the event.
+	 * @param type             the type of the event.
+	 * @param timeOfEvent      the time when the event will take place.
+	 * @param timeEventCreated the time when the event was created.
+	 * @param particle         the particle the event belongs to, or -1.
+	 * @param other            the other particle of a collision, the wall of a wall
+	 *                         collision, or -1.
+	 */
+	public void set(int handle, int type, double timeOfEvent, double timeEventCreated, int particle, int other) {
+		_type[handle] = type;
+		_timeOfEvent[handle] = timeOfEvent;
+		_timeEventCreated[handle] = timeEventCreated;
+		_particle[handle] = particle;
+		_other[handle] = other;
+	}
+
+	/**
+	 * Puts a slot back on the free list; the handle must not be used again until it
+	 * is handed out by allocate.
+	 *
+	 * @param handle the handle of the event.
+	 */
+	public void free(int handle) {
+		_free[_numFree++] = handle;
+	}
+
+	/**
+	 * Returns the number of events in the pool.
+	 *
+	 * @return the number of slots in use.
+	 */
+	public int size() {
+		return _type.length - _numFree;
+	}
+
+	/**
+	 * Returns the type of an event.
+	 *
+	 * @param handle the handle of the event.
+	 * @return the type.
+	 */
+	public int getType(int handle) {
+		return _type[handle];
+	}
+
+	/**
+	 * Returns the time when an event will take place.
+	 *
+	 * @param handle the handle of the event.
+	 * @return the time when the event will take place.
+	 */
+	public double getTimeOfEvent(int handle) {
+		return _timeOfEvent[handle];
+	}
+
+	/**
+	 * Returns the time when an event was created.
+	 *
+	 * @param handle the handle of the event.
+	 * @return the time when the event was created.
+	 */
+	public double getTimeEventCreated(int handle) {
+		return _timeEventCreated[handle];
+	}
+
+	/**
+	 * Returns the particle an event belongs to.
+	 *
+	 * @param handle the handle of the event.
+	 * @return the particle the event belongs to.
+	 */
+	public int getParticle(int handle) {
+		return _particle[handle];
+	}
+
+	/**
+	 * Returns the other particle or the wall of an event.
+	 *
+	 * @param handle the handle of the event.
+	 * @return the other particle or the wall.
+	 */
+	public int getOther(int handle) {
+		return _other[handle];
+	}
+
+	/**
+	 * Doubles the number of slots, adding the new ones to the free list.
+	 */
+	private void grow() {
+		final int oldLength = _type.length;
+		final int newLength = oldLength * 2;
+		_type = Arrays.copyOf(_type, newLength);
+		_timeOfEvent = Arrays.copyOf(_timeOfEvent, newLength);
+		_timeEventCreated = Arrays.copyOf(_timeEventCreated, newLength);
+		_particle = Arrays.copyOf(_particle, newLength);
+		_other = Arrays.copyOf(_other, newLength);
+		_free = Arrays.copyOf(_free, newLength);
+		for (int handle = newLength - 1; handle >= oldLength; handle--) {
+			_free[_numFree++] = handle;
+		}
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * A priority queue of events identified by int handles, such as the handles of an
+ * EventPool, ordered by the time of each event. The earliest event comes first.
+ * Handles are small non-negative ints; the queue grows to hold the largest one.
+ */
+interface EventQueue {
+	/**
+	 * Adds an event to the queue.
+	 *
+	 * @param handle the handle of an event that is not in the queue
+	 * @param time   the time of the event
+	 */
+	void add(int handle, double time);
+
+	/**
+	 * Adds a batch of events to the queue, such as the first event of every
+	 * particle. Queues that can build themselves faster from a whole batch than one
+	 * event at a time override this.
+	 *
+	 * @param handles the handles of events that are not in the queue
+	 * @param times   the times of the events
+	 * @param count   the number of events to add from the start of the arrays
+	 */
+	default void addAll(int[] handles, double[] times, int count) {
+		for (int i = 0; i < count; i++) {
+			add(handles[i], times[i]);
+		}
+	}
+
+	/**
+	 * Removes and returns the earliest event.
+	 *
+	 * @return the handle of the earliest event, or -1 if the queue is empty
+	 */
+	int removeFirst();
+
+	/**
+	 * Removes an event from the queue.
+	 *
+	 * @param handle the handle of an event in the queue
+	 */
+	void remove(int handle);
+
+	/**
+	 * Changes the time of an event in the queue.
+	 *
+	 * @param handle the handle of an event in the queue
+	 * @param time   the new time of the event
+	 */
+	void update(int handle, double time);
+
+	/**
+	 * Returns whether an event is in the queue.
+	 *
+	 * @param handle the handle of an event
+	 * @return true if it is in the queue
+	 */
+	boolean contains(int handle);
+
+	/**
+	 * Returns the number of events in the queue.
+	 *
+	 * @return the number of events
+	 */
+	int size();
+}
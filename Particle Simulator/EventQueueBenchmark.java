@@ -0,0 +1,298 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks that replay the stream of queue operations recorded from a real
+ * simulation against EventHeap (4-ary and binary), CalendarQueue, HeapImpl and
+ * java.util.PriorityQueue, and that build a queue of the first event of every
+ * particle, as simulate does, by heapifying, by adding one event at a time, and
+ * with HeapImpl.
+ * The input is either a particle file, or a number of particles for which a random
+ * configuration is written.
+ *
+ * HeapImpl and PriorityQueue cannot remove or reschedule an event, so for them the
+ * replay does what ParticleSimulator used to do: a rescheduled event is added again,
+ * and the outdated copy is skipped when it comes to the top.
+ *
+ * Events with the same time can come out of the queues in any order, so when a
+ * queue picks a different one than the recorded run did, the replay swaps it for the
+ * recorded one; this only happens on exact ties.
+ *
+ * The harness is generated by the JMH annotation processor when this file is
+ * compiled with jmh-generator-annprocess on the classpath. The processor refuses
+ * benchmarks in the default package, so the sources (without the testers) are
+ * compiled as a package of their own, for example from this directory:
+ *
+ *   mkdir -p build/src/benchmark build/classes
+ *   for f in *.java; do case $f in *Tester.java) ;; *) (echo "package benchmark;"; cat $f) > build/src/benchmark/$f;; esac; done
+ *   javac --add-modules jdk.incubator.vector -cp jmh-core-1.37.jar:jmh-generator-annprocess-1.37.jar -d build/classes build/src/benchmark/*.java
+ *   java --add-modules jdk.incubator.vector -cp build/classes:jmh-core-1.37.jar:jopt-simple-5.0.4.jar:commons-math3-3.6.1.jar benchmark.EventQueueBenchmark [resultFile]
+ *
+ * The jdk.incubator.vector module is only needed because VectorCollisionScan is
+ * among the sources.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EventQueueBenchmark {
+	// The kinds of recorded operations.
+	private static final byte ADD = 0;
+	private static final byte REMOVE_FIRST = 1;
+	private static final byte REMOVE = 2;
+	private static final byte UPDATE = 3;
+
+	// A particle file, or the number of particles to generate.
+	@Param({ "1000", "10000", "100000" })
+	public String _input;
+
+	// The recorded operations.
+	private Recorder _stream;
+
+	// The number of events added before the first removal: the initial batch.
+	private int _batchSize;
+
+	/**
+	 * An EventHeap that records every operation done on it.
+	 */
+	static class Recorder extends EventHeap {
+		byte[] _operations = new byte[1024];
+		int[] _handles = new int[1024];
+		double[] _times = new double[1024];
+		int _length;
+		int _maxHandle;
+
+		private void record(byte operation, int handle, double time) {
+			if (_length == _operations.length) {
+				_operations = Arrays.copyOf(_operations, _length * 2);
+				_handles = Arrays.copyOf(_handles, _length * 2);
+				_times = Arrays.copyOf(_times, _length * 2);
+			}
+			_operations[_length] = operation;
+			_handles[_length] = handle;
+			_times[_length] = time;
+			_length++;
+			_maxHandle = Math.max(_maxHandle, handle);
+		}
+
+		public void add(int handle, double time) {
+			record(ADD, handle, time);
+			super.add(handle, time);
+		}
+
+		public void addAll(int[] handles, double[] times, int count) {
+			for (int i = 0; i < count; i++) {
+				record(ADD, handles[i], times[i]);
+			}
+			super.addAll(handles, times, count);
+		}
+
+		public int removeFirst() {
+			int first = super.removeFirst();
+			record(REMOVE_FIRST, first, 0);
+			return first;
+		}
+
+		public void remove(int handle) {
+			record(REMOVE, handle, 0);
+			super.remove(handle);
+		}
+
+		public void update(int handle, double time) {
+			record(UPDATE, handle, time);
+			super.update(handle, time);
+		}
+	}
+
+	/**
+	 * An event for the queues without handles: the handle it is a copy of, and the
+	 * version of that handle it was made for.
+	 */
+	private static class StreamEvent extends Event {
+		final int _handle;
+		final int _version;
+
+		StreamEvent(double timeOfEvent, int handle, int version) {
+			super(timeOfEvent, 0);
+			_handle = handle;
+			_version = version;
+		}
+	}
+
+	/**
+	 * Runs the simulation once to record its stream of queue operations.
+	 */
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		File file = new File(_input);
+		boolean generated = !file.exists();
+		if (generated) {
+			file = File.createTempFile("particles", ".txt");
+			ParticleFiles.writeRandomParticles(file, Integer.parseInt(_input), 0);
+		}
+		_stream = new Recorder();
+		new ParticleSimulator(file.getPath(), true, _stream).simulate(false,
+				new PrintStream(OutputStream.nullOutputStream()));
+		if (generated) {
+			file.delete();
+		}
+		while (_batchSize < _stream._length && _stream._operations[_batchSize] == ADD) {
+			_batchSize++;
+		}
+	}
+
+	/**
+	 * Replays the stream on a queue with handles.
+	 *
+	 * @param queue an empty queue.
+	 * @return the sum of the handles removed, so that the work is not optimized away.
+	 */
+	private long replay(EventQueue queue) {
+		final double[] times = new double[_stream._maxHandle + 1];
+		long sum = 0;
+		for (int i = 0; i < _stream._length; i++) {
+			final int handle = _stream._handles[i];
+			switch (_stream._operations[i]) {
+			case ADD:
+				times[handle] = _stream._times[i];
+				queue.add(handle, _stream._times[i]);
+				break;
+			case REMOVE_FIRST:
+				final int first = queue.removeFirst();
+				if (first != handle) {
+					queue.remove(handle);
+					queue.add(first, times[first]);
+				}
+				sum += handle;
+				break;
+			case REMOVE:
+				queue.remove(_stream._handles[i]);
+				break;
+			default:
+				times[handle] = _stream._times[i];
+				queue.update(handle, _stream._times[i]);
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Replays the stream on a queue without handles, skipping outdated copies.
+	 *
+	 * @param queue an empty queue; the earliest event comes out first.
+	 * @return the sum of the handles removed, so that the work is not optimized away.
+	 */
+	private long replay(Heap<Event> queue) {
+		final int[] versions = new int[_stream._maxHandle + 1];
+		final boolean[] queued = new boolean[_stream._maxHandle + 1];
+		long sum = 0;
+		for (int i = 0; i < _stream._length; i++) {
+			final int handle = _stream._handles[i];
+			switch (_stream._operations[i]) {
+			case ADD:
+			case UPDATE:
+				queued[handle] = true;
+				queue.add(new StreamEvent(_stream._times[i], handle, ++versions[handle]));
+				break;
+			case REMOVE:
+				queued[handle] = false;
+				break;
+			default:
+				while (true) {
+					final StreamEvent event = (StreamEvent) queue.removeFirst();
+					if (queued[event._handle] && event._version == versions[event._handle]) {
+						// On a tie with the recorded event, put this one back and drop that one.
+						if (event._handle != handle) {
+							queue.add(event);
+							versions[handle]++;
+						}
+						queued[handle] = false;
+						sum += handle;
+						break;
+					}
+				}
+			}
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long eventHeap() {
+		return replay(new EventHeap());
+	}
+
+	@Benchmark
+	public long binaryEventHeap() {
+		return replay(new EventHeap(2));
+	}
+
+	@Benchmark
+	public int batchHeapify() {
+		final EventHeap heap = new EventHeap();
+		heap.addAll(_stream._handles, _stream._times, _batchSize);
+		return heap.removeFirst();
+	}
+
+	@Benchmark
+	public int batchAdd() {
+		final EventHeap heap = new EventHeap();
+		for (int i = 0; i < _batchSize; i++) {
+			heap.add(_stream._handles[i], _stream._times[i]);
+		}
+		return heap.removeFirst();
+	}
+
+	@Benchmark
+	public Event batchHeapImpl() {
+		final HeapImpl<Event> heap = new HeapImpl<Event>();
+		for (int i = 0; i < _batchSize; i++) {
+			heap.add(new StreamEvent(_stream._times[i], _stream._handles[i], 0));
+		}
+		return heap.removeFirst();
+	}
+
+	@Benchmark
+	public long calendarQueue() {
+		return replay(new CalendarQueue());
+	}
+
+	@Benchmark
+	public long heapImpl() {
+		return replay(new HeapImpl<Event>());
+	}
+
+	@Benchmark
+	public long priorityQueue() {
+		// Event orders the earliest event last, for HeapImpl's maximum heap.
+		final PriorityQueue<Event> queue = new PriorityQueue<>(Collections.reverseOrder());
+		return replay(new Heap<Event>() {
+			public void add(Event item) {
+				queue.add(item);
+			}
+
+			public Event removeFirst() {
+				return queue.poll();
+			}
+
+			public int size() {
+				return queue.size();
+			}
+		});
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(EventQueueBenchmark.class.getSimpleName())
+				.resultFormat(ResultFormatType.JSON)
+				.result(args.length >= 1 ? args[0] : "event-queue-benchmark.json")
+				.build()).run();
+	}
+}
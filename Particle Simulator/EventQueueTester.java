@@ -0,0 +1,99 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.util.*;
+
+/**
+ * The tests every EventQueue has to pass. The tester of each queue extends this
+ * with the queue it makes, and adds the tests of its own.
+ */
+public abstract class EventQueueTester {
+	/**
+	 * Makes an empty queue of the kind under test.
+	 */
+	abstract EventQueue newQueue();
+
+	@Test
+	public void testShuffled() {
+		final int N = 1000;
+		final java.util.List<Integer> handles = new ArrayList<>();
+		for (int i = 0; i < N; i++) {
+			handles.add(i);
+		}
+		Collections.shuffle(handles, new Random(0));
+
+		// Event i happens at time i / 10, so they come out in handle order.
+		final EventQueue queue = newQueue();
+		for (int handle : handles) {
+			queue.add(handle, handle / 10.0);
+		}
+		assertEquals(N, queue.size());
+		for (int i = 0; i < N; i++) {
+			assertEquals(i, queue.removeFirst());
+		}
+		assertEquals(0, queue.size());
+		assertEquals(-1, queue.removeFirst());
+	}
+
+	@Test
+	public void testRemoveAndUpdate() {
+		testRemoveAndUpdate(newQueue());
+	}
+
+	/**
+	 * Adds, removes and reschedules events at random, and checks the queue against
+	 * a sorted set.
+	 */
+	void testRemoveAndUpdate(EventQueue queue) {
+		final Random random = new Random(1);
+		final EventPool pool = new EventPool();
+
+		// The time of every event in the queue. Times are made unique so that
+		// removeFirst has only one right answer. Removed events move the clock
+		// forward, and new events land shortly after it, as in a simulation.
+		final Map<Integer, Double> times = new HashMap<>();
+		final TreeMap<Double, Integer> sorted = new TreeMap<>();
+		double now = 0;
+		for (int step = 0; step < 20000; step++) {
+			final int operation = random.nextInt(4);
+			final double time = now + random.nextInt(1000) / 100.0 + step / 100000000.0;
+			if (operation == 0 || times.isEmpty()) {
+				final int handle = pool.allocate(EventPool.WALL, time, 0, 0, 0);
+				queue.add(handle, time);
+				times.put(handle, time);
+				sorted.put(time, handle);
+			} else if (operation == 3) {
+				final int handle = queue.removeFirst();
+				assertEquals(sorted.pollFirstEntry().getValue(), (Integer) handle);
+				now = times.remove(handle);
+				pool.free(handle);
+				assertFalse(queue.contains(handle));
+			} else {
+				final java.util.List<Integer> handles = new ArrayList<>(times.keySet());
+				final int handle = handles.get(random.nextInt(handles.size()));
+				assertTrue(queue.contains(handle));
+				sorted.remove(times.get(handle));
+				if (operation == 1) {
+					queue.remove(handle);
+					times.remove(handle);
+					pool.free(handle);
+				} else {
+					queue.update(handle, time);
+					times.put(handle, time);
+					sorted.put(time, handle);
+				}
+			}
+			assertEquals(times.size(), queue.size());
+			assertEquals(times.size(), pool.size());
+		}
+	}
+
+	@Test
+	public void testMissingHandle() {
+		final EventQueue queue = newQueue();
+		queue.add(3, 1.0);
+		assertThrows(IllegalArgumentException.class, () -> queue.add(3, 2.0));
+		queue.remove(3);
+		assertThrows(IllegalArgumentException.class, () -> queue.remove(3));
+		assertThrows(IllegalArgumentException.class, () -> queue.update(3, 2.0));
+	}
+}
@@ -0,0 +1,209 @@
+import java.io.*;
+
+/**
+ * Compares scheduling every event, as ParticleSimulator does by default, with
+ * scheduling only the events within a horizon. Each run prints the peak size of
+ * the queue, the share of the events taken out of it that were stale, the number
+ * of re-examinations at the horizon, the time the run took and the number of
+ * collisions simulated per second. Re-examinations are cheap events, so the
+ * throughput is counted in collisions rather than in events. The eager run is
+ * done once first to warm up.
+ *
+ * Every run is of the same particles, so their final states should agree up to
+ * rounding. The collisions are chaotic, though, and over a long run the rounding
+ * alone moves the particles apart, so the agreement is checked on runs of only
+ * CHECK_DURATION time units against an eager run of the same length.
+ *
+ * A horizon does not lower the peak size of the queue: every particle still has
+ * one pending event, so the queue holds n + 1 events either way. Its cost is the
+ * re-examinations, which take up throughput at small horizons.
+ *
+ * The input is either a particle file, or a number of particles for which a random
+ * configuration is written.
+ *
+ * Usage: java HorizonComparison <filename|numParticles> [horizon...] [lazy]
+ */
+public class HorizonComparison {
+	// The horizons compared with eager scheduling when none are given.
+	private static final double[] DEFAULT_HORIZONS = { 4, 1, 0.25 };
+
+	// How far the final positions may be from those of the eager run.
+	private static final double TOLERANCE = 1e-6;
+
+	// The length of the runs whose final states are compared.
+	static final double CHECK_DURATION = 10;
+
+	/**
+	 * The outcome of one run.
+	 */
+	static class Result {
+		// The horizon, or infinity for eager scheduling.
+		final double _horizon;
+
+		// The counts of the simulator, and the time the simulation took.
+		long _events;
+		long _collisions;
+		long _staleEvents;
+		long _reexaminations;
+		int _peakQueueSize;
+		long _nanos;
+
+		// The final state, as printed.
+		String _finalState;
+
+		Result(double horizon) {
+			_horizon = horizon;
+		}
+
+		/**
+		 * Returns the share of the events taken out of the queue that were stale.
+		 *
+		 * @return the ratio, between 0 and 1.
+		 */
+		double getStaleRatio() {
+			return _events == 0 ? 0 : (double) _staleEvents / _events;
+		}
+
+		/**
+		 * Returns the number of collisions simulated per second.
+		 *
+		 * @return the throughput.
+		 */
+		double getThroughput() {
+			return _collisions * 1e9 / Math.max(1, _nanos);
+		}
+	}
+
+	/**
+	 * Simulates a file without drawing it.
+	 *
+	 * @param file    the particle file.
+	 * @param horizon the horizon, or infinity to schedule every event.
+	 * @param lazy    true to only move the particles involved in each event.
+	 * @return the outcome of the run.
+	 */
+	static Result run(File file, double horizon, boolean lazy) throws IOException {
+		return run(file, horizon, lazy, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Simulates a file without drawing it, for at most a given time.
+	 *
+	 * @param file     the particle file.
+	 * @param horizon  the horizon, or infinity to schedule every event.
+	 * @param lazy     true to only move the particles involved in each event.
+	 * @param duration the time to stop at, or infinity for the end in the file.
+	 * @return the outcome of the run.
+	 */
+	static Result run(File file, double horizon, boolean lazy, double duration) throws IOException {
+		final ParticleSimulator simulator = new ParticleSimulator(file.getPath(), lazy);
+		simulator.setHorizon(horizon);
+		if (Double.isFinite(duration)) {
+			simulator.setDuration(duration);
+		}
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final long start = System.nanoTime();
+		try (PrintStream print = new PrintStream(out)) {
+			simulator.simulate(false, print);
+		}
+		final Result result = new Result(horizon);
+		result._nanos = System.nanoTime() - start;
+		result._events = simulator.getEventsProcessed();
+		result._collisions = simulator.getCollisions();
+		result._staleEvents = simulator.getStaleEvents();
+		result._reexaminations = simulator.getReexaminations();
+		result._peakQueueSize = simulator.getPeakQueueSize();
+		result._finalState = out.toString();
+		return result;
+	}
+
+	/**
+	 * Returns whether two final states have the same particles at the same places,
+	 * up to the tolerance.
+	 *
+	 * @param expected the final state of one run.
+	 * @param actual   the final state of another.
+	 * @return true if they agree.
+	 */
+	static boolean agree(String expected, String actual) {
+		final String[] a = expected.split("\\s+");
+		final String[] b = actual.split("\\s+");
+		if (a.length != b.length) {
+			return false;
+		}
+		for (int i = 0; i < a.length; i++) {
+			try {
+				if (Math.abs(Double.parseDouble(a[i]) - Double.parseDouble(b[i])) > TOLERANCE) {
+					return false;
+				}
+			} catch (NumberFormatException e) {
+				// A particle name.
+				if (!a[i].equals(b[i])) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: java HorizonComparison <filename|numParticles> [horizon...] [lazy]");
+			System.exit(1);
+		}
+
+		// A number of particles is written to a random configuration first.
+		File file = new File(args[0]);
+		final boolean generated = !file.exists();
+		if (generated) {
+			file = File.createTempFile("particles", ".txt");
+			ParticleFiles.writeRandomParticles(file, Integer.parseInt(args[0]), 0);
+		}
+		boolean lazy = false;
+		double[] horizons = new double[args.length - 1];
+		int numHorizons = 0;
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("lazy")) {
+				lazy = true;
+			} else {
+				horizons[numHorizons++] = Double.parseDouble(args[i]);
+			}
+		}
+		if (numHorizons == 0) {
+			horizons = DEFAULT_HORIZONS;
+			numHorizons = horizons.length;
+		}
+
+		try {
+			run(file, Double.POSITIVE_INFINITY, lazy);
+			final Result eager = run(file, Double.POSITIVE_INFINITY, lazy);
+			final String check = run(file, Double.POSITIVE_INFINITY, lazy, CHECK_DURATION)._finalState;
+			System.out.printf("%-10s %12s %12s %10s %10s %14s %10s %14s  %s%n", "horizon", "events", "collisions",
+					"stale", "peak queue", "re-examined", "ms", "collisions/s", "same at " + CHECK_DURATION);
+			print(eager, true);
+			for (int i = 0; i < numHorizons; i++) {
+				final Result result = run(file, horizons[i], lazy);
+				print(result, agree(check, run(file, horizons[i], lazy, CHECK_DURATION)._finalState));
+			}
+			System.out.println();
+			System.out.println("The final states are compared after " + CHECK_DURATION
+					+ " time units; over longer runs rounding alone makes chaotic collisions drift apart.");
+			System.out.println("A horizon does not lower the peak queue size, which is one event per particle"
+					+ " plus one, and small horizons cost throughput in re-examinations.");
+		} finally {
+			if (generated) {
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * Prints a row of the comparison.
+	 */
+	private static void print(Result result, boolean same) {
+		System.out.printf("%-10s %12d %12d %9.2f%% %10d %14d %10.1f %14.0f  %s%n",
+				Double.isInfinite(result._horizon) ? "eager" : result._horizon, result._events,
+				result._collisions, 100 * result.getStaleRatio(), result._peakQueueSize, result._reexaminations,
+				result._nanos / 1e6, result.getThroughput(), same ? "yes" : "NO");
+	}
+}
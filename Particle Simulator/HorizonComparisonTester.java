@@ -0,0 +1,63 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.io.*;
+
+public class HorizonComparisonTester {
+	@Test
+	public void testSameAsEager() throws IOException {
+		final File file = ParticleFiles.gridParticles(15, 20, 0, false);
+		for (boolean lazy : new boolean[] { true, false }) {
+			final HorizonComparison.Result eager = HorizonComparison.run(file, Double.POSITIVE_INFINITY, lazy);
+			assertEquals(0, eager._reexaminations);
+			assertTrue(eager._peakQueueSize <= 15 * 15 + 1);
+			for (double horizon : new double[] { 2, 0.5, 0.1 }) {
+				final HorizonComparison.Result result = HorizonComparison.run(file, horizon, lazy);
+				assertTrue(HorizonComparison.agree(eager._finalState, result._finalState), "horizon " + horizon);
+				assertEquals(eager._collisions, result._collisions);
+				assertTrue(result._reexaminations > 0);
+				assertTrue(result._peakQueueSize <= 15 * 15 + 1);
+			}
+		}
+	}
+
+	@Test
+	public void testShortRun() throws IOException {
+		// Cutting a run short is the same as a file with the shorter duration.
+		final HorizonComparison.Result full = HorizonComparison.run(ParticleFiles.gridParticles(10, 20, 3, false), 0.5,
+				true, HorizonComparison.CHECK_DURATION);
+		final HorizonComparison.Result written = HorizonComparison.run(
+				ParticleFiles.gridParticles(10, HorizonComparison.CHECK_DURATION, 3, false), 0.5, true);
+		assertEquals(written._finalState, full._finalState);
+		assertEquals(written._collisions, full._collisions);
+	}
+
+	@Test
+	public void testResumeKeepsHorizon() throws IOException {
+		final File file = ParticleFiles.gridParticles(10, 20, 1, false);
+		final File checkpoint = File.createTempFile("simulation", ".checkpoint");
+		checkpoint.delete();
+		checkpoint.deleteOnExit();
+
+		final ParticleSimulator plain = new ParticleSimulator(file.getPath(), true);
+		plain.setHorizon(0.5);
+		final String expected = ParticleFiles.simulate(plain, false);
+
+		final ParticleSimulator checkpointed = new ParticleSimulator(file.getPath(), true);
+		checkpointed.setHorizon(0.5);
+		checkpointed.setCheckpoints(checkpoint, plain.getEventsProcessed() / 3, 0);
+		ParticleFiles.simulate(checkpointed, false);
+
+		final ParticleSimulator resumed = ParticleSimulator.resume(checkpoint);
+		assertEquals(expected, ParticleFiles.simulate(resumed, false));
+		assertEquals(plain.getReexaminations(), resumed.getReexaminations());
+		assertEquals(plain.getStaleEvents(), resumed.getStaleEvents());
+	}
+
+	@Test
+	public void testHorizonMustBePositive() throws IOException {
+		final File file = ParticleFiles.gridParticles(2, 1, 2, false);
+		final ParticleSimulator simulator = new ParticleSimulator(file.getPath());
+		assertThrows(IllegalArgumentException.class, () -> simulator.setHorizon(0));
+		assertThrows(IllegalArgumentException.class, () -> simulator.setHorizon(Double.NaN));
+	}
+}
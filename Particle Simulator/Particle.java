@@ -58,6 +58,77 @@ public class Particle {
 		return event._timeEventCreated >= _lastUpdateTime;
 	}
 
+	/**
+	 * Copies the state of this particle into a slot of a particle store.
+	 *
+	 * @param store the store to copy into.
+	 * @param i     the id of the particle in the store.
+	 */
+	void copyTo(ParticleStore store, int i) {
+		store.setName(i, _name);
+		store._x[i] = _x;
+		store._y[i] = _y;
+		store._vx[i] = _vx;
+		store._vy[i] = _vy;
+		store._radius[i] = _radius;
+		store._lastUpdateTime[i] = _lastUpdateTime;
+	}
+
+	/**
+	 * Sets the state of this particle from a slot of a particle store, so that it
+	 * can be used as a view of that slot.
+	 *
+	 * @param store the store to copy from.
+	 * @param i     the id of the particle in the store.
+	 * @param now   the time of the state to copy.
+	 */
+	void copyFrom(ParticleStore store, int i, double now) {
+		_x = store.getX(i, now);
+		_y = store.getY(i, now);
+		_vx = store._vx[i];
+		_vy = store._vy[i];
+		_radius = store._radius[i];
+		_lastUpdateTime = store._lastUpdateTime[i];
+	}
+
+	/**
+	 * Returns the x-coordinate of this particle.
+	 *
+	 * @return the x-coordinate.
+	 */
+	double getX() {
+		return _x;
+	}
+
+	/**
+	 * Returns the y-coordinate of this particle.
+	 *
+	 * @return the y-coordinate.
+	 */
+	double getY() {
+		return _y;
+	}
+
+	/**
+	 * Returns the radius of this particle.
+	 *
+	 * @return the radius.
+	 */
+	double getRadius() {
+		return _radius;
+	}
+
+	/**
+	 * Moves this particle to a position, so that a view can be drawn there.
+	 *
+	 * @param x the x-coordinate.
+	 * @param y the y-coordinate.
+	 */
+	void setPosition(double x, double y) {
+		_x = x;
+		_y = y;
+	}
+
 	/**
 	 * Useful for debugging.
 	 */
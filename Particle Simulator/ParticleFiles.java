@@ -0,0 +1,127 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Writes configurations of particles in the format ParticleSimulator reads, for
+ * the benchmarks, the comparisons and the testers, and runs simulations of them
+ * for what they print.
+ */
+class ParticleFiles {
+	private ParticleFiles() {
+	}
+
+	/**
+	 * Writes a random configuration of particles of equal size, one per cell of a
+	 * jittered grid so that none overlap, to be simulated for 100 time units.
+	 *
+	 * @param file         the file to write.
+	 * @param numParticles the number of particles.
+	 * @param seed         the seed of the random numbers.
+	 */
+	static void writeRandomParticles(File file, int numParticles, long seed) throws IOException {
+		writeRandomParticles(file, numParticles, 100, seed);
+	}
+
+	/**
+	 * Writes a random configuration of particles of equal size, one per cell of a
+	 * jittered grid so that none overlap.
+	 *
+	 * @param file         the file to write.
+	 * @param numParticles the number of particles.
+	 * @param duration     the time to simulate them for.
+	 * @param seed         the seed of the random numbers.
+	 */
+	static void writeRandomParticles(File file, int numParticles, double duration, long seed) throws IOException {
+		final Random random = new Random(seed);
+		final double radius = 2;
+		final double cellSize = 3 * radius;
+		final int cellsPerSide = (int) Math.ceil(Math.sqrt(2.0 * numParticles));
+		final int width = (int) Math.ceil(cellsPerSide * cellSize);
+
+		// Pick distinct cells for the particles.
+		final int[] cells = new int[cellsPerSide * cellsPerSide];
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] = i;
+		}
+		try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+			out.println(width + " " + format(duration));
+			for (int i = 0; i < numParticles; i++) {
+				final int j = i + random.nextInt(cells.length - i);
+				final int cell = cells[j];
+				cells[j] = cells[i];
+				final double x = (cell % cellsPerSide + 0.5) * cellSize + (random.nextDouble() - 0.5) * radius;
+				final double y = (cell / cellsPerSide + 0.5) * cellSize + (random.nextDouble() - 0.5) * radius;
+				out.println("p" + i + " " + x + " " + y + " " + (random.nextDouble() * 2 - 1) + " "
+						+ (random.nextDouble() * 2 - 1) + " " + radius);
+			}
+		}
+	}
+
+	/**
+	 * Writes a random configuration of particles of equal size, as
+	 * writeRandomParticles does, to a temporary file deleted when the program ends.
+	 *
+	 * @param numParticles the number of particles.
+	 * @param duration     the time to simulate them for.
+	 * @param seed         the seed of the random numbers.
+	 * @return the file.
+	 */
+	static File randomParticles(int numParticles, double duration, long seed) throws IOException {
+		final File file = File.createTempFile("particles", ".txt");
+		file.deleteOnExit();
+		writeRandomParticles(file, numParticles, duration, seed);
+		return file;
+	}
+
+	/**
+	 * Writes perSide by perSide particles, one in each cell of 10 by 10 of a
+	 * jittered grid, with speeds up to 2 in each direction, to a temporary file
+	 * deleted when the program ends. They all have radius 1.5 unless mixedRadii is
+	 * set, in which case each has a radius between 0.5 and 2.5.
+	 *
+	 * @param perSide    the number of particles along each side of the box.
+	 * @param duration   the time to simulate them for.
+	 * @param seed       the seed of the random numbers.
+	 * @param mixedRadii true for particles of different sizes.
+	 * @return the file.
+	 */
+	static File gridParticles(int perSide, double duration, long seed, boolean mixedRadii) throws IOException {
+		final Random random = new Random(seed);
+		final File file = File.createTempFile("particles", ".txt");
+		file.deleteOnExit();
+		try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+			out.println(perSide * 10 + " " + duration);
+			for (int i = 0; i < perSide * perSide; i++) {
+				final double x = (i % perSide) * 10 + 5 + random.nextDouble() * 2 - 1;
+				final double y = (i / perSide) * 10 + 5 + random.nextDouble() * 2 - 1;
+				out.println("p" + i + " " + x + " " + y + " " + (random.nextDouble() * 4 - 2) + " "
+						+ (random.nextDouble() * 4 - 2) + " " + (mixedRadii ? 0.5 + random.nextDouble() * 2 : 1.5));
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * Runs a simulation and returns what it prints.
+	 *
+	 * @param simulator the simulation.
+	 * @param show      true to draw it as well.
+	 * @return the final state of the particles, as printed.
+	 */
+	static String simulate(ParticleSimulator simulator, boolean show) {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (PrintStream print = new PrintStream(out)) {
+			simulator.simulate(show, print);
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Returns a duration as the first line of a file has it, without a fraction if
+	 * it is whole, as in "100".
+	 */
+	private static String format(double duration) {
+		return duration == Math.rint(duration) && Math.abs(duration) < 1e15 ? Long.toString((long) duration)
+				: Double.toString(duration);
+	}
+}
@@ -0,0 +1,756 @@
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the particles of a simulation from a file, either in the text format
+ * ParticleSimulator has always read or in a compact binary one, and writes them
+ * in either, so that a configuration can be converted from one to the other.
+ *
+ * The text format is the width and the duration, then one particle per line: its
+ * name, x, y, vx, vy and radius, separated by whitespace. It is scanned in a
+ * byte buffer, filled a few megabytes at a time, with no regular expression,
+ * stream or string per number: plain decimals are converted by hand, and only
+ * the others go through Double.parseDouble, so every number is the same, to the
+ * last bit, as Particle.build would make it.
+ *
+ * The binary format is little-endian. It starts with a header of HEADER_BYTES
+ * bytes:
+ *
+ * <pre>
+ *  0  int    MAGIC
+ *  4  int    VERSION
+ *  8  int    the width of the box
+ * 12  int    the number of particles, n
+ * 16  double the duration
+ * 24  long   the offset of the names
+ * </pre>
+ *
+ * The particles follow in order, each as five doubles: x, y, vx, vy and radius,
+ * so particle i starts at HEADER_BYTES + RECORD_BYTES i. The names come last,
+ * each as an int length and that many bytes of UTF-8. The file is read through
+ * windows of it mapped into memory.
+ *
+ * Usage: java ParticleInput <input> <output> [text|binary], which converts a file
+ * to the other format, or to the one given.
+ */
+class ParticleInput {
+	// Marks a binary particle file ("PSIN"), and the version of its layout.
+	static final int MAGIC = 0x5053494E;
+	static final int VERSION = 1;
+
+	// The size of the header, and of the numbers of one particle.
+	static final int HEADER_BYTES = 32;
+	static final int RECORD_BYTES = 40;
+
+	// The size of the window of the file mapped or written at a time.
+	private static final int WINDOW_BYTES = 8 << 20;
+
+	// Initial number of particles the arrays hold when the count is not known.
+	private static final int INITIAL_CAPACITY = 1024;
+
+	// The powers of ten that are exact doubles, and the largest mantissa a double
+	// holds exactly; a decimal within both is converted with one correctly rounded
+	// multiplication or division.
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	// The powers of five from MIN_POWER_OF_FIVE to MAX_POWER_OF_FIVE, each shifted
+	// to fill 128 bits and split into its high and low halves, for the decimals that
+	// are not exact doubles.
+	private static final int MIN_POWER_OF_FIVE = -342;
+	private static final int MAX_POWER_OF_FIVE = 308;
+	private static final long[] POWERS_OF_FIVE_HIGH = new long[MAX_POWER_OF_FIVE - MIN_POWER_OF_FIVE + 1];
+	private static final long[] POWERS_OF_FIVE_LOW = new long[MAX_POWER_OF_FIVE - MIN_POWER_OF_FIVE + 1];
+	static {
+		// A positive power is truncated; a negative one is rounded up from its
+		// reciprocal and then truncated.
+		final BigInteger twoTo128 = BigInteger.ONE.shiftLeft(128);
+		for (int q = MIN_POWER_OF_FIVE; q <= MAX_POWER_OF_FIVE; q++) {
+			final BigInteger power = BigInteger.valueOf(5).pow(Math.abs(q));
+			BigInteger c;
+			if (q >= 0) {
+				c = power.bitLength() <= 128 ? power.shiftLeft(128 - power.bitLength())
+						: power.shiftRight(power.bitLength() - 128);
+			} else {
+				final int z = power.bitLength();
+				final int b = q >= -27 ? z + 127 : 2 * z + 128;
+				c = BigInteger.ONE.shiftLeft(b).divide(power).add(BigInteger.ONE);
+				while (c.compareTo(twoTo128) >= 0) {
+					c = c.shiftRight(1);
+				}
+			}
+			POWERS_OF_FIVE_HIGH[q - MIN_POWER_OF_FIVE] = c.shiftRight(64).longValue();
+			POWERS_OF_FIVE_LOW[q - MIN_POWER_OF_FIVE] = c.longValue();
+		}
+	}
+
+	// The width of the box and the duration of the simulation.
+	private int _width;
+	private double _duration;
+
+	// The particles: the fields of particle i are at position i of every array.
+	private int _size;
+	private String[] _names;
+	private double[] _x;
+	private double[] _y;
+	private double[] _vx;
+	private double[] _vy;
+	private double[] _radius;
+
+	// The file being read, and the window of a binary file mapped and where it
+	// starts.
+	private FileChannel _channel;
+	private long _fileSize;
+	private MappedByteBuffer _window;
+	private long _windowStart;
+
+	// The buffer a text file is read through, the position in the file of its first
+	// byte, and the number of bytes in it.
+	private byte[] _bytes;
+	private long _bytesStart;
+	private int _bytesLength;
+
+	// Holds the bytes of a name in a binary file.
+	private byte[] _token = new byte[64];
+
+	/**
+	 * Creates an empty configuration with room for some particles.
+	 */
+	private ParticleInput(int capacity) {
+		_names = new String[capacity];
+		_x = new double[capacity];
+		_y = new double[capacity];
+		_vx = new double[capacity];
+		_vy = new double[capacity];
+		_radius = new double[capacity];
+	}
+
+	/**
+	 * Reads a file in either format, telling them apart by the magic number at the
+	 * start of the binary one.
+	 *
+	 * @param file the file to read.
+	 * @return the particles in it.
+	 * @throws IOException if the file cannot be read or is not in either format.
+	 */
+	static ParticleInput read(File file) throws IOException {
+		return isBinary(file) ? readBinary(file) : readText(file);
+	}
+
+	/**
+	 * Returns whether a file starts with the magic number of the binary format.
+	 *
+	 * @param file the file.
+	 * @return true if it is a binary particle file.
+	 * @throws IOException if the file cannot be read.
+	 */
+	static boolean isBinary(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			final ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+			while (magic.hasRemaining()) {
+				if (channel.read(magic, magic.position()) < 0) {
+					return false;
+				}
+			}
+			return magic.getInt(0) == MAGIC;
+		}
+	}
+
+	/**
+	 * Reads a file in the text format.
+	 *
+	 * @param file the file to read.
+	 * @return the particles in it.
+	 * @throws IOException if the file cannot be read or a line is not a particle.
+	 */
+	static ParticleInput readText(File file) throws IOException {
+		final ParticleInput input = new ParticleInput(INITIAL_CAPACITY);
+		input.open(file);
+		try {
+			input.parseText(file);
+		} finally {
+			input.closeChannel();
+		}
+		return input;
+	}
+
+	/**
+	 * Reads a file in the binary format.
+	 *
+	 * @param file the file to read.
+	 * @return the particles in it.
+	 * @throws IOException if the file cannot be read or is not a whole binary
+	 *                     particle file.
+	 */
+	static ParticleInput readBinary(File file) throws IOException {
+		final ParticleInput input = new ParticleInput(0);
+		input.open(file);
+		try {
+			input.parseBinary(file);
+		} finally {
+			input.closeChannel();
+		}
+		return input;
+	}
+
+	/**
+	 * Returns the width of the box.
+	 *
+	 * @return the width.
+	 */
+	int getWidth() {
+		return _width;
+	}
+
+	/**
+	 * Returns the duration of the simulation.
+	 *
+	 * @return the duration.
+	 */
+	double getDuration() {
+		return _duration;
+	}
+
+	/**
+	 * Returns the number of particles.
+	 *
+	 * @return the number of particles.
+	 */
+	int size() {
+		return _size;
+	}
+
+	/**
+	 * Makes a particle for each one read, in order.
+	 *
+	 * @return the particles.
+	 */
+	List<Particle> toParticles() {
+		final List<Particle> particles = new ArrayList<>(_size);
+		for (int i = 0; i < _size; i++) {
+			particles.add(new Particle(_names[i], _x[i], _y[i], _vx[i], _vy[i], _radius[i]));
+		}
+		return particles;
+	}
+
+	/**
+	 * Writes the particles in the text format, each number as Double.toString
+	 * writes it, so that reading the file back gives the same numbers.
+	 *
+	 * @param file the file to write.
+	 */
+	void writeText(File file) throws IOException {
+		try (Writer out = new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8), WINDOW_BYTES)) {
+			out.write(_width + " " + _duration + "\n");
+			final StringBuilder line = new StringBuilder();
+			for (int i = 0; i < _size; i++) {
+				line.setLength(0);
+				line.append(_names[i]).append(' ').append(_x[i]).append(' ').append(_y[i]).append(' ')
+						.append(_vx[i]).append(' ').append(_vy[i]).append(' ').append(_radius[i]).append('\n');
+				out.append(line);
+			}
+		}
+	}
+
+	/**
+	 * Writes the particles in the binary format.
+	 *
+	 * @param file the file to write.
+	 */
+	void writeBinary(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			final ByteBuffer buffer = ByteBuffer.allocateDirect(WINDOW_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(_width);
+			buffer.putInt(_size);
+			buffer.putDouble(_duration);
+			buffer.putLong(HEADER_BYTES + (long) RECORD_BYTES * _size);
+			for (int i = 0; i < _size; i++) {
+				if (buffer.remaining() < RECORD_BYTES) {
+					drain(channel, buffer);
+				}
+				buffer.putDouble(_x[i]);
+				buffer.putDouble(_y[i]);
+				buffer.putDouble(_vx[i]);
+				buffer.putDouble(_vy[i]);
+				buffer.putDouble(_radius[i]);
+			}
+			for (int i = 0; i < _size; i++) {
+				final byte[] name = _names[i].getBytes(StandardCharsets.UTF_8);
+				if (buffer.remaining() < 4 + name.length) {
+					drain(channel, buffer);
+				}
+				buffer.putInt(name.length);
+				if (name.length > buffer.remaining()) {
+					// A name longer than the buffer goes straight to the file.
+					drain(channel, buffer);
+					channel.write(ByteBuffer.wrap(name));
+				} else {
+					buffer.put(name);
+				}
+			}
+			drain(channel, buffer);
+		}
+	}
+
+	/**
+	 * Writes what is in a buffer to a file, and empties it.
+	 */
+	private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Opens a file to be read.
+	 */
+	private void open(File file) throws IOException {
+		_channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		_fileSize = _channel.size();
+		_window = null;
+	}
+
+	/**
+	 * Closes the file being read.
+	 */
+	private void closeChannel() throws IOException {
+		_channel.close();
+		_channel = null;
+		_window = null;
+		_bytes = null;
+	}
+
+	/**
+	 * Makes sure the bytes from a position on are in the mapped window, mapping a
+	 * new window from that position if they are not.
+	 *
+	 * @param position the position in the file.
+	 * @param bytes    the number of bytes needed, which the window holds unless
+	 *                 the file ends first.
+	 * @return the position in the window of the byte at the position in the file.
+	 */
+	private int cover(long position, int bytes) throws IOException {
+		final long end = Math.min(_fileSize, position + bytes);
+		if (_window == null || position < _windowStart || end > _windowStart + _window.capacity()) {
+			_windowStart = position;
+			_window = _channel.map(FileChannel.MapMode.READ_ONLY, position,
+					Math.min(_fileSize - position, Math.max(bytes, WINDOW_BYTES)));
+			_window.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		return (int) (position - _windowStart);
+	}
+
+	/**
+	 * Reads the header and the particles of a binary file.
+	 */
+	private void parseBinary(File file) throws IOException {
+		if (_fileSize < HEADER_BYTES) {
+			throw new IOException(file + " is not a binary particle file");
+		}
+		int at = cover(0, HEADER_BYTES);
+		if (_window.getInt(at) != MAGIC) {
+			throw new IOException(file + " is not a binary particle file");
+		}
+		final int version = _window.getInt(at + 4);
+		if (version != VERSION) {
+			throw new IOException(file + " has version " + version + " rather than " + VERSION);
+		}
+		_width = _window.getInt(at + 8);
+		final int n = _window.getInt(at + 12);
+		_duration = _window.getDouble(at + 16);
+		final long namesOffset = _window.getLong(at + 24);
+		if (n < 0 || namesOffset != HEADER_BYTES + (long) RECORD_BYTES * n || namesOffset + 4L * n > _fileSize) {
+			throw new IOException(file + " is damaged or incomplete");
+		}
+
+		_size = n;
+		_names = new String[n];
+		_x = new double[n];
+		_y = new double[n];
+		_vx = new double[n];
+		_vy = new double[n];
+		_radius = new double[n];
+		final int recordsPerWindow = WINDOW_BYTES / RECORD_BYTES;
+		for (int i = 0; i < n; i += recordsPerWindow) {
+			final int count = Math.min(recordsPerWindow, n - i);
+			at = cover(HEADER_BYTES + (long) RECORD_BYTES * i, RECORD_BYTES * count);
+			for (int j = i; j < i + count; j++, at += RECORD_BYTES) {
+				_x[j] = _window.getDouble(at);
+				_y[j] = _window.getDouble(at + 8);
+				_vx[j] = _window.getDouble(at + 16);
+				_vy[j] = _window.getDouble(at + 24);
+				_radius[j] = _window.getDouble(at + 32);
+			}
+		}
+
+		long position = namesOffset;
+		for (int i = 0; i < n; i++) {
+			if (position + 4 > _fileSize) {
+				throw new EOFException(file + " ends in its names");
+			}
+			at = cover(position, 4);
+			final int length = _window.getInt(at);
+			if (length < 0 || position + 4 + length > _fileSize) {
+				throw new EOFException(file + " ends in its names");
+			}
+			at = cover(position + 4, length);
+			if (length > _token.length) {
+				_token = new byte[Math.max(length, 2 * _token.length)];
+			}
+			_window.get(at, _token, 0, length);
+			_names[i] = new String(_token, 0, length, StandardCharsets.UTF_8);
+			position += 4 + length;
+		}
+	}
+
+	/**
+	 * Reads the header and the particles of a text file, a line at a time, through
+	 * the buffer. A line that runs past the end of what is in the buffer is moved to
+	 * its start, and the rest of the buffer filled from the file after it.
+	 */
+	private void parseText(File file) throws IOException {
+		_bytes = new byte[(int) Math.max(1, Math.min(WINDOW_BYTES, _fileSize))];
+		_bytesStart = 0;
+		_bytesLength = 0;
+		fill();
+
+		// The width and the duration come first, and the rest of their line is skipped,
+		// as Scanner.nextLine would; they have to be in the first buffer.
+		int position = skipWhitespace(0, _bytesLength);
+		int end = tokenEnd(position, _bytesLength);
+		if (end == position) {
+			throw new IOException(file + " has no width");
+		}
+		_width = Integer.parseInt(tokenString(position, end));
+		position = skipWhitespace(end, _bytesLength);
+		end = tokenEnd(position, _bytesLength);
+		if (end == position) {
+			throw new IOException(file + " has no duration");
+		}
+		_duration = Double.parseDouble(tokenString(position, end));
+		position = find(end, _bytesLength, '\n');
+		while (position == _bytesLength && _bytesStart + _bytesLength < _fileSize) {
+			// The rest of the line is long; drop it a buffer at a time.
+			_bytesStart += _bytesLength;
+			_bytesLength = 0;
+			fill();
+			position = find(0, _bytesLength, '\n');
+		}
+
+		int lineNumber = 1;
+		while (position < _bytesLength) {
+			// Skip the line break, and find the next one.
+			int start = position + 1;
+			lineNumber++;
+			int lineEnd = find(start, _bytesLength, '\n');
+			if (lineEnd == _bytesLength && _bytesStart + _bytesLength < _fileSize) {
+				System.arraycopy(_bytes, start, _bytes, 0, _bytesLength - start);
+				_bytesStart += start;
+				_bytesLength -= start;
+				fill();
+				lineEnd = find(lineEnd - start, _bytesLength, '\n');
+				start = 0;
+				if (lineEnd == _bytesLength && _bytesStart + _bytesLength < _fileSize) {
+					throw new IOException(file + ":" + lineNumber + " is too long");
+				}
+			}
+
+			// Blank lines are skipped.
+			if (skipWhitespace(start, lineEnd) < lineEnd) {
+				parseLine(file, lineNumber, start, lineEnd);
+			}
+			position = lineEnd;
+		}
+	}
+
+	/**
+	 * Reads from the file into the buffer after what it holds, until it is full or
+	 * the file ends.
+	 */
+	private void fill() throws IOException {
+		final ByteBuffer buffer = ByteBuffer.wrap(_bytes, _bytesLength, _bytes.length - _bytesLength);
+		while (buffer.hasRemaining()) {
+			if (_channel.read(buffer, _bytesStart + buffer.position()) < 0) {
+				break;
+			}
+		}
+		_bytesLength = buffer.position();
+	}
+
+	/**
+	 * Reads one particle: the first token of the line is its name, empty if the line
+	 * starts with whitespace, and the next five are its numbers, as Particle.build
+	 * splits the line.
+	 *
+	 * @param start the position of the line in the buffer.
+	 * @param end   the position of its line break in the buffer, or the end of the
+	 *              file.
+	 */
+	private void parseLine(File file, int lineNumber, int start, int end) throws IOException {
+		if (_size == _x.length) {
+			grow();
+		}
+		int position = tokenEnd(start, end);
+		_names[_size] = tokenString(start, position);
+		for (int field = 0; field < 5; field++) {
+			position = skipWhitespace(position, end);
+			final int tokenEnd = tokenEnd(position, end);
+			if (tokenEnd == position) {
+				throw new IOException(file + ":" + lineNumber + " has fewer than five numbers");
+			}
+			final double value = parseDouble(position, tokenEnd);
+			switch (field) {
+			case 0:
+				_x[_size] = value;
+				break;
+			case 1:
+				_y[_size] = value;
+				break;
+			case 2:
+				_vx[_size] = value;
+				break;
+			case 3:
+				_vy[_size] = value;
+				break;
+			default:
+				_radius[_size] = value;
+			}
+			position = tokenEnd;
+		}
+		_size++;
+	}
+
+	/**
+	 * Converts a token in the buffer into a double. A plain decimal with at most 18
+	 * significant digits is converted directly, exactly if it can be and with the
+	 * Eisel-Lemire algorithm if not; anything else, and the rare decimal that lies
+	 * too close to halfway between two doubles, goes to Double.parseDouble.
+	 */
+	private double parseDouble(int start, int end) throws IOException {
+		int i = start;
+		boolean negative = false;
+		if (_bytes[i] == '-' || _bytes[i] == '+') {
+			negative = _bytes[i] == '-';
+			i++;
+		}
+
+		// The significant digits, and the power of ten to scale them by.
+		long mantissa = 0;
+		int exponent = 0;
+		int digits = 0;
+		boolean point = false;
+		boolean plain = true;
+		for (; i < end; i++) {
+			final byte c = _bytes[i];
+			if (c >= '0' && c <= '9') {
+				digits++;
+				if (mantissa > (Long.MAX_VALUE - 9) / 10) {
+					plain = false;
+					break;
+				}
+				mantissa = 10 * mantissa + (c - '0');
+				if (point) {
+					exponent--;
+				}
+			} else if (c == '.' && !point) {
+				point = true;
+			} else {
+				break;
+			}
+		}
+		if (plain && digits > 0 && i < end && (_bytes[i] == 'e' || _bytes[i] == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if (i < end && (_bytes[i] == '-' || _bytes[i] == '+')) {
+				negativeExponent = _bytes[i] == '-';
+				i++;
+			}
+			int value = 0;
+			final int first = i;
+			for (; i < end && _bytes[i] >= '0' && _bytes[i] <= '9' && value < 1000; i++) {
+				value = 10 * value + (_bytes[i] - '0');
+			}
+			plain = i > first;
+			exponent += negativeExponent ? -value : value;
+		}
+		if (plain && digits > 0 && i == end) {
+			final double value = toDouble(mantissa, exponent);
+			if (!Double.isNaN(value)) {
+				return negative ? -value : value;
+			}
+		}
+		try {
+			return Double.parseDouble(tokenString(start, end));
+		} catch (NumberFormatException e) {
+			throw new IOException("\"" + tokenString(start, end) + "\" is not a number", e);
+		}
+	}
+
+	/**
+	 * Returns the double nearest to a mantissa times a power of ten, or NaN if it
+	 * cannot be told for sure without the exact digits. A mantissa and a power that
+	 * are both exact doubles take one correctly rounded operation; the others are
+	 * multiplied by a 128-bit approximation of the power of five, which is exact
+	 * enough unless the product lies next to halfway between two doubles, or the
+	 * result is subnormal or infinite.
+	 *
+	 * @param mantissa the significant digits, at most 2^63 - 1.
+	 * @param exponent the power of ten.
+	 * @return the double, or NaN.
+	 */
+	static double toDouble(long mantissa, int exponent) {
+		if (mantissa == 0) {
+			return 0;
+		}
+		if (mantissa <= MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+			return exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+		}
+		if (exponent < MIN_POWER_OF_FIVE || exponent > MAX_POWER_OF_FIVE) {
+			return Double.NaN;
+		}
+
+		// Normalize the mantissa, and multiply it by the high half of the power.
+		final int zeros = Long.numberOfLeadingZeros(mantissa);
+		final long w = mantissa << zeros;
+		long exponent2 = ((217706L * exponent) >> 16) + 64 + 1023 - zeros;
+		final int power = exponent - MIN_POWER_OF_FIVE;
+		long high = unsignedMultiplyHigh(w, POWERS_OF_FIVE_HIGH[power]);
+		long low = w * POWERS_OF_FIVE_HIGH[power];
+
+		// The low half of the power only matters if the bits below the mantissa are all
+		// ones, and if they still are with it the rounding cannot be told.
+		if ((high & 0x1FF) == 0x1FF && Long.compareUnsigned(low + w, w) < 0) {
+			final long lowHigh = unsignedMultiplyHigh(w, POWERS_OF_FIVE_LOW[power]);
+			final long lowLow = w * POWERS_OF_FIVE_LOW[power];
+			long mergedHigh = high;
+			final long mergedLow = low + lowHigh;
+			if (Long.compareUnsigned(mergedLow, low) < 0) {
+				mergedHigh++;
+			}
+			if ((mergedHigh & 0x1FF) == 0x1FF && mergedLow + 1 == 0 && Long.compareUnsigned(lowLow + w, w) < 0) {
+				return Double.NaN;
+			}
+			high = mergedHigh;
+			low = mergedLow;
+		}
+
+		// Keep 54 bits, and round them to 53 unless the product lies exactly halfway.
+		final long top = high >>> 63;
+		long bits = high >>> (top + 9);
+		exponent2 -= 1 ^ top;
+		if (low == 0 && (high & 0x1FF) == 0 && (bits & 3) == 1) {
+			return Double.NaN;
+		}
+		bits += bits & 1;
+		bits >>>= 1;
+		if (bits >>> 53 > 0) {
+			bits >>>= 1;
+			exponent2++;
+		}
+		if (exponent2 <= 0 || exponent2 >= 0x7FF) {
+			return Double.NaN;
+		}
+		return Double.longBitsToDouble(exponent2 << 52 | bits & 0xFFFFFFFFFFFFFL);
+	}
+
+	/**
+	 * Returns the high 64 bits of the 128-bit product of two unsigned longs.
+	 */
+	private static long unsignedMultiplyHigh(long x, long y) {
+		return Math.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+	}
+
+	/**
+	 * Returns whether a byte separates tokens, as \s does.
+	 */
+	private static boolean isWhitespace(byte c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B;
+	}
+
+	/**
+	 * Returns the position in the buffer of the first byte at or after a position
+	 * that is not whitespace, or the end.
+	 */
+	private int skipWhitespace(int position, int end) {
+		while (position < end && isWhitespace(_bytes[position])) {
+			position++;
+		}
+		return position;
+	}
+
+	/**
+	 * Returns the position in the buffer just after the token starting at a
+	 * position, or the end.
+	 */
+	private int tokenEnd(int position, int end) {
+		while (position < end && !isWhitespace(_bytes[position])) {
+			position++;
+		}
+		return position;
+	}
+
+	/**
+	 * Returns the position in the buffer of the first byte at or after a position
+	 * that is a given byte, or the end.
+	 */
+	private int find(int position, int end, int b) {
+		while (position < end && _bytes[position] != b) {
+			position++;
+		}
+		return position;
+	}
+
+	/**
+	 * Returns the bytes between two positions in the buffer as a string.
+	 */
+	private String tokenString(int start, int end) {
+		return new String(_bytes, start, end - start, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Doubles the room for particles.
+	 */
+	private void grow() {
+		final int capacity = Math.max(INITIAL_CAPACITY, 2 * _x.length);
+		_names = Arrays.copyOf(_names, capacity);
+		_x = Arrays.copyOf(_x, capacity);
+		_y = Arrays.copyOf(_y, capacity);
+		_vx = Arrays.copyOf(_vx, capacity);
+		_vy = Arrays.copyOf(_vy, capacity);
+		_radius = Arrays.copyOf(_radius, capacity);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: java ParticleInput <input> <output> [text|binary]");
+			System.exit(1);
+		}
+		final File input = new File(args[0]);
+		final boolean binary = args.length > 2 ? args[2].equals("binary") : !isBinary(input);
+		final long start = System.nanoTime();
+		final ParticleInput particles = read(input);
+		final long read = System.nanoTime();
+		if (binary) {
+			particles.writeBinary(new File(args[1]));
+		} else {
+			particles.writeText(new File(args[1]));
+		}
+		System.out.printf("%d particles read in %.1f ms and written as %s in %.1f ms%n", particles.size(),
+				(read - start) / 1e6, binary ? "binary" : "text", (System.nanoTime() - read) / 1e6);
+	}
+}
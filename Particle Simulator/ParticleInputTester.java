@@ -0,0 +1,148 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class ParticleInputTester {
+	// Numbers that take every way through the parser.
+	private static final String[] NUMBERS = { "1", "-0", "0.1", "1e5", "1.5E-3", "+2", "3.", "-.25",
+			"123456789012345678901234", "0.000000000000000000000000001", "1d", "9007199254740993", "1e22", "1e23",
+			"4.9e-324", "2.2250738585072014E-308", "17.000000000000001", "7233.662881977574", "-0.38189886360058156" };
+
+	/**
+	 * Writes a file with particles whose numbers are either from NUMBERS or random,
+	 * some of them nameless, with blank lines, tabs and CRLF line breaks.
+	 */
+	private File writeAwkwardParticles(int numParticles, long seed) throws IOException {
+		final Random random = new Random(seed);
+		final File file = File.createTempFile("particles", ".txt");
+		file.deleteOnExit();
+		try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+			out.print("  500\n 12.5 the rest of the line\r\n");
+			for (int i = 0; i < numParticles; i++) {
+				final StringBuilder line = new StringBuilder(i % 13 == 0 ? "\t" : "n" + i + " ");
+				for (int k = 0; k < 5; k++) {
+					line.append(random.nextInt(3) == 0 ? NUMBERS[random.nextInt(NUMBERS.length)]
+							: Double.toString((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(30) - 15)));
+					line.append(k == 4 ? "" : random.nextBoolean() ? " " : " \t ");
+				}
+				out.print(line + (i % 7 == 0 ? "\r\n" : "\n"));
+				if (i % 100 == 0) {
+					out.print("   \n");
+				}
+			}
+			out.print("\n\n");
+		}
+		return file;
+	}
+
+	/**
+	 * Parses a file the way ParticleSimulator used to, with Particle.build.
+	 */
+	private java.util.List<String> buildAll(File file) throws IOException {
+		final java.util.List<String> lines = Files.readAllLines(file.toPath());
+		final java.util.List<String> particles = new ArrayList<>();
+		for (String line : lines.subList(2, lines.size())) {
+			if (!line.trim().isEmpty()) {
+				particles.add(Particle.build(line).toString());
+			}
+		}
+		return particles;
+	}
+
+	/**
+	 * Returns the particles of a configuration as strings.
+	 */
+	private java.util.List<String> strings(ParticleInput input) {
+		final java.util.List<String> particles = new ArrayList<>();
+		for (Particle p : input.toParticles()) {
+			particles.add(p.toString());
+		}
+		return particles;
+	}
+
+	@Test
+	public void testSameAsBuild() throws IOException {
+		final File file = writeAwkwardParticles(5000, 0);
+		final ParticleInput input = ParticleInput.read(file);
+		assertFalse(ParticleInput.isBinary(file));
+		assertEquals(500, input.getWidth());
+		assertEquals(12.5, input.getDuration());
+		assertEquals(buildAll(file), strings(input));
+	}
+
+	@Test
+	public void testBinaryAndTextRoundTrip() throws IOException {
+		final File file = writeAwkwardParticles(3000, 1);
+		final File binary = File.createTempFile("particles", ".bin");
+		final File text = File.createTempFile("particles", ".txt");
+		binary.deleteOnExit();
+		text.deleteOnExit();
+		ParticleInput.read(file).writeBinary(binary);
+		ParticleInput.read(binary).writeText(text);
+		assertTrue(ParticleInput.isBinary(binary));
+		assertFalse(ParticleInput.isBinary(text));
+
+		final java.util.List<String> expected = buildAll(file);
+		for (File converted : new File[] { binary, text }) {
+			final ParticleInput input = ParticleInput.read(converted);
+			assertEquals(500, input.getWidth());
+			assertEquals(12.5, input.getDuration());
+			assertEquals(expected, strings(input));
+		}
+	}
+
+	@Test
+	public void testSameSimulation() throws IOException {
+		final File file = File.createTempFile("particles", ".txt");
+		final File binary = File.createTempFile("particles", ".bin");
+		try {
+			ParticleFiles.writeRandomParticles(file, 2000, 2);
+			ParticleInput.read(file).writeBinary(binary);
+			final String[] outputs = new String[2];
+			final File[] files = { file, binary };
+			for (int i = 0; i < files.length; i++) {
+				final ByteArrayOutputStream out = new ByteArrayOutputStream();
+				new ParticleSimulator(files[i].getPath(), true).simulate(false, new PrintStream(out));
+				outputs[i] = out.toString();
+			}
+			assertEquals(outputs[0], outputs[1]);
+		} finally {
+			file.delete();
+			binary.delete();
+		}
+	}
+
+	@Test
+	public void testToDoubleIsExact() {
+		final Random random = new Random(3);
+		for (int i = 0; i < 1000000; i++) {
+			final long mantissa = random.nextLong() >>> (1 + random.nextInt(63));
+			final int exponent = random.nextInt(700) - 350;
+			final double value = ParticleInput.toDouble(mantissa, exponent);
+			if (!Double.isNaN(value)) {
+				assertEquals(Double.parseDouble(mantissa + "e" + exponent), value, mantissa + "e" + exponent);
+			}
+		}
+	}
+
+	@Test
+	public void testBadFiles() throws IOException {
+		final File file = File.createTempFile("particles", ".txt");
+		file.deleteOnExit();
+		Files.write(file.toPath(), "100 10\np 1 2 3\n".getBytes());
+		assertThrows(IOException.class, () -> ParticleInput.read(file));
+		Files.write(file.toPath(), "100 10\np 1 2 3 x 5\n".getBytes());
+		assertThrows(IOException.class, () -> ParticleInput.read(file));
+
+		// A binary file cut short.
+		final File binary = File.createTempFile("particles", ".bin");
+		binary.deleteOnExit();
+		Files.write(file.toPath(), "100 10\np 1 2 3 4 5\nq 6 7 8 9 10\n".getBytes());
+		ParticleInput.read(file).writeBinary(binary);
+		final byte[] bytes = Files.readAllBytes(binary.toPath());
+		Files.write(binary.toPath(), Arrays.copyOf(bytes, bytes.length - 3));
+		assertThrows(IOException.class, () -> ParticleInput.read(binary));
+	}
+}
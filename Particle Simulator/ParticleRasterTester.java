@@ -0,0 +1,96 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.*;
+
+public class ParticleRasterTester {
+	// The colors of the box and of the particles.
+	private static final int BACKGROUND = 0xEEEEEE;
+	private static final int FOREGROUND = 0x000000;
+
+	/**
+	 * Makes particles at random positions, with their centers up to the given
+	 * distance outside the box; a negative one keeps them inside.
+	 */
+	private java.util.List<Particle> makeParticles(int count, int width, double outside, long seed) {
+		final Random random = new Random(seed);
+		final java.util.List<Particle> particles = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			particles.add(new Particle("p" + i, random.nextDouble() * (width + 2 * outside) - outside,
+					random.nextDouble() * (width + 2 * outside) - outside, 0, 0, 1 + random.nextDouble() * 8));
+		}
+		return particles;
+	}
+
+	/**
+	 * Draws the particles with fillOval, as paintComponent does for a few of them.
+	 */
+	private int[] fillOvals(java.util.List<Particle> particles, int width) {
+		final BufferedImage image = new BufferedImage(width, width, BufferedImage.TYPE_INT_RGB);
+		final Graphics g = image.getGraphics();
+		g.setColor(new Color(BACKGROUND));
+		g.fillRect(0, 0, width, width);
+		g.setColor(new Color(FOREGROUND));
+		for (Particle p : particles) {
+			p.draw(g);
+		}
+		g.dispose();
+		return image.getRGB(0, 0, width, width, null, 0, width);
+	}
+
+	@Test
+	public void testSameAsFillOval() {
+		final int width = 300;
+		final java.util.List<Particle> particles = makeParticles(400, width, -10, 0);
+		final int[] expected = fillOvals(particles, width);
+		final BufferedImage image = new ParticleRaster(width, 7).draw(particles, BACKGROUND, FOREGROUND);
+		final int[] actual = image.getRGB(0, 0, width, width, null, 0, width);
+
+		// Java2D fills a curve that approximates the disc, so the two may differ by a
+		// pixel along the edges of discs, but nowhere else: next to every pixel that
+		// differs, both images have a disc.
+		for (int y = 0; y < width; y++) {
+			for (int x = 0; x < width; x++) {
+				if (expected[y * width + x] != actual[y * width + x]) {
+					assertTrue(hasDiscNear(expected, width, x, y) && hasDiscNear(actual, width, x, y),
+							"pixel " + x + ", " + y);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns whether a pixel or one of its neighbours is the color of particles.
+	 */
+	private boolean hasDiscNear(int[] pixels, int width, int x, int y) {
+		for (int ny = Math.max(0, y - 1); ny <= Math.min(width - 1, y + 1); ny++) {
+			for (int nx = Math.max(0, x - 1); nx <= Math.min(width - 1, x + 1); nx++) {
+				if ((pixels[ny * width + nx] & 0xFFFFFF) == FOREGROUND) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	@Test
+	public void testBandsAgree() {
+		// However the image is split, every band draws the same pixels.
+		final int width = 257;
+		final java.util.List<Particle> particles = makeParticles(500, width, 10, 1);
+		final int[] single = new ParticleRaster(width, 1).draw(particles, BACKGROUND, FOREGROUND).getRGB(0, 0, width,
+				width, null, 0, width);
+		for (int bands : new int[] { 2, 3, 16, 1000 }) {
+			final ParticleRaster raster = new ParticleRaster(width, bands);
+			assertArrayEquals(single, raster.draw(particles, BACKGROUND, FOREGROUND).getRGB(0, 0, width, width, null,
+					0, width));
+
+			// Drawing again after the particles move clears the old discs.
+			raster.draw(makeParticles(50, width, 10, 2), BACKGROUND, FOREGROUND);
+			assertArrayEquals(single, raster.draw(particles, BACKGROUND, FOREGROUND).getRGB(0, 0, width, width, null,
+					0, width));
+		}
+		assertThrows(IllegalArgumentException.class, () -> new ParticleRaster(width, 0));
+	}
+}
@@ -0,0 +1,356 @@
+import java.util.*;
+
+/**
+ * Keeps the state of all the particles of a simulation in parallel primitive arrays
+ * (a structure of arrays), indexed by an int particle id. The event loop of
+ * ParticleSimulator works on the store, so stepping and collision tests walk
+ * contiguous arrays instead of scattered Particle objects; Particle objects are only
+ * used as views, for drawing and for the file format.
+ *
+ * The collision math is the same as in Particle, operation for operation, so a
+ * simulation on the store gives the same results as one on Particle objects.
+ *
+ * Every particle has its own reference time: its position is where it is at that
+ * time. A simulation can move all particles to the current time after every event,
+ * as Particle.update does, or move a particle only when it takes part in an event
+ * and leave the others where they were. Collision times are computed from the
+ * positions extrapolated to a common time, so they are the same either way.
+ */
+public class ParticleStore {
+	// The codes of the walls of the box, and their names as used by Particle.
+	public static final int LEFT = 0;
+	public static final int RIGHT = 1;
+	public static final int TOP = 2;
+	public static final int BOTTOM = 3;
+	public static final String[] WALL_NAMES = { "left", "right", "top", "bottom" };
+
+	// The names of the particles, only needed to print them.
+	private final String[] _names;
+
+	// The state of particle i is at position i of every array.
+	final double[] _x, _y;
+	final double[] _vx, _vy;
+	final double[] _radius;
+	final double[] _lastUpdateTime;
+
+	// The time at which each particle was at its position.
+	final double[] _time;
+
+	/**
+	 * Copies the given particles into a new store; particle i of the list gets id i.
+	 *
+	 * @param particles the particles to store.
+	 */
+	public ParticleStore(List<Particle> particles) {
+		final int n = particles.size();
+		_names = new String[n];
+		_x = new double[n];
+		_y = new double[n];
+		_vx = new double[n];
+		_vy = new double[n];
+		_radius = new double[n];
+		_lastUpdateTime = new double[n];
+		_time = new double[n];
+		for (int i = 0; i < n; i++) {
+			particles.get(i).copyTo(this, i);
+		}
+	}
+
+	/**
+	 * Copies another store, so that the copy can be changed independently.
+	 *
+	 * @param other the store to copy.
+	 */
+	ParticleStore(ParticleStore other) {
+		_names = other._names;
+		_x = other._x.clone();
+		_y = other._y.clone();
+		_vx = other._vx.clone();
+		_vy = other._vy.clone();
+		_radius = other._radius.clone();
+		_lastUpdateTime = other._lastUpdateTime.clone();
+		_time = other._time.clone();
+	}
+
+	/**
+	 * Reads a store written to a checkpoint by writeTo.
+	 *
+	 * @param in the checkpoint, at the state of the store.
+	 */
+	ParticleStore(Checkpoint in) {
+		final int n = in.getInt();
+		_names = new String[n];
+		for (int i = 0; i < n; i++) {
+			_names[i] = in.getString();
+		}
+		_x = in.getDoubles(n);
+		_y = in.getDoubles(n);
+		_vx = in.getDoubles(n);
+		_vy = in.getDoubles(n);
+		_radius = in.getDoubles(n);
+		_lastUpdateTime = in.getDoubles(n);
+		_time = in.getDoubles(n);
+	}
+
+	/**
+	 * Puts the state of every particle into a checkpoint.
+	 *
+	 * @param out the checkpoint.
+	 */
+	void writeTo(Checkpoint out) {
+		final int n = size();
+		out.putInt(n);
+		for (int i = 0; i < n; i++) {
+			out.putString(_names[i]);
+		}
+		out.putDoubles(_x, n);
+		out.putDoubles(_y, n);
+		out.putDoubles(_vx, n);
+		out.putDoubles(_vy, n);
+		out.putDoubles(_radius, n);
+		out.putDoubles(_lastUpdateTime, n);
+		out.putDoubles(_time, n);
+	}
+
+	/**
+	 * Copies the state of one particle from another store of the same particles.
+	 *
+	 * @param from the store to copy from.
+	 * @param i    the id of the particle.
+	 */
+	void copyParticle(ParticleStore from, int i) {
+		_x[i] = from._x[i];
+		_y[i] = from._y[i];
+		_vx[i] = from._vx[i];
+		_vy[i] = from._vy[i];
+		_lastUpdateTime[i] = from._lastUpdateTime[i];
+		_time[i] = from._time[i];
+	}
+
+	/**
+	 * Returns the number of particles in the store.
+	 *
+	 * @return the number of particles.
+	 */
+	public int size() {
+		return _x.length;
+	}
+
+	/**
+	 * Sets the name of a particle.
+	 *
+	 * @param i    the id of the particle.
+	 * @param name the name of the particle.
+	 */
+	void setName(int i, String name) {
+		_names[i] = name;
+	}
+
+	/**
+	 * Returns the name of a particle.
+	 *
+	 * @param i the id of the particle.
+	 * @return the name of the particle.
+	 */
+	public String getName(int i) {
+		return _names[i];
+	}
+
+	/**
+	 * Copies the state of every particle at a given time into its view, so that the
+	 * views can be drawn or printed. The particles themselves are not moved.
+	 *
+	 * @param particles the views, in id order.
+	 * @param now       the time of the state to copy.
+	 */
+	public void copyTo(List<Particle> particles, double now) {
+		for (int i = 0; i < particles.size(); i++) {
+			particles.get(i).copyFrom(this, i, now);
+		}
+	}
+
+	/**
+	 * Determine if an event is still valid in regards to a particle.
+	 *
+	 * @param i                the id of the particle.
+	 * @param timeEventCreated the time when the event was created.
+	 * @return true if still valid, false if not.
+	 */
+	public boolean isValid(int i, double timeEventCreated) {
+		return timeEventCreated >= _lastUpdateTime[i];
+	}
+
+	/**
+	 * Moves a particle by its velocity to where it is at the given time.
+	 *
+	 * @param i   the id of the particle.
+	 * @param now the time to move it to.
+	 */
+	public void advance(int i, double now) {
+		final double delta = now - _time[i];
+		_x[i] = _x[i] + delta * _vx[i];
+		_y[i] = _y[i] + delta * _vy[i];
+		_time[i] = now;
+	}
+
+	/**
+	 * Moves every particle by its velocity to where it is at the given time.
+	 *
+	 * @param now the time to move them to.
+	 */
+	public void advanceAll(double now) {
+		final double[] x = _x, y = _y, vx = _vx, vy = _vy, time = _time;
+		for (int i = 0; i < x.length; i++) {
+			final double delta = now - time[i];
+			x[i] = x[i] + delta * vx[i];
+			y[i] = y[i] + delta * vy[i];
+			time[i] = now;
+		}
+	}
+
+	/**
+	 * Returns the x coordinate of a particle at a given time, without moving it.
+	 *
+	 * @param i   the id of the particle.
+	 * @param now the time.
+	 * @return the x coordinate at that time.
+	 */
+	public double getX(int i, double now) {
+		return _x[i] + (now - _time[i]) * _vx[i];
+	}
+
+	/**
+	 * Returns the y coordinate of a particle at a given time, without moving it.
+	 *
+	 * @param i   the id of the particle.
+	 * @param now the time.
+	 * @return the y coordinate at that time.
+	 */
+	public double getY(int i, double now) {
+		return _y[i] + (now - _time[i]) * _vy[i];
+	}
+
+	/**
+	 * Updates the velocities of two particles after they collide; see
+	 * Particle.updateAfterCollision. Both particles are first moved to the time of
+	 * the collision.
+	 *
+	 * @param now the current time in the simulation.
+	 * @param i   the id of the first particle.
+	 * @param j   the id of the particle it collided with.
+	 */
+	public void updateAfterCollision(double now, int i, int j) {
+		advance(i, now);
+		advance(j, now);
+		final double dx = _x[i] - _x[j];
+		final double dy = _y[i] - _y[j];
+		final double common = ((_vx[i] - _vx[j]) * dx + (_vy[i] - _vy[j]) * dy)
+				/ (Math.pow(dx, 2) + Math.pow(dy, 2));
+		final double vxPrime = _vx[i] - common * dx;
+		final double vyPrime = _vy[i] - common * dy;
+		final double otherVxPrime = _vx[j] - common * (_x[j] - _x[i]);
+		final double otherVyPrime = _vy[j] - common * (_y[j] - _y[i]);
+
+		_vx[i] = vxPrime;
+		_vy[i] = vyPrime;
+		_vx[j] = otherVxPrime;
+		_vy[j] = otherVyPrime;
+
+		_lastUpdateTime[i] = now;
+		_lastUpdateTime[j] = now;
+	}
+
+	/**
+	 * Updates the velocity of a particle after it collides with a wall. The particle
+	 * is first moved to the time of the collision.
+	 *
+	 * @param now  the time that this collision is occurring.
+	 * @param i    the id of the particle.
+	 * @param wall the code of the wall with which the particle is colliding.
+	 */
+	public void updateAfterWallCollision(double now, int i, int wall) {
+		advance(i, now);
+		// Reverse the velocity in the x direction if the wall is vertical, and in the
+		// y direction if it is horizontal.
+		if (wall == LEFT || wall == RIGHT) {
+			_vx[i] *= -1;
+		} else {
+			_vy[i] *= -1;
+		}
+		_lastUpdateTime[i] = now;
+	}
+
+	/**
+	 * Computes the time until two particles collide; see Particle.getCollisionTime.
+	 *
+	 * @param i   the id of the first particle.
+	 * @param j   the id of the other particle.
+	 * @param now the time the result is relative to.
+	 * @return the time after now when the particles collide, or infinity if they
+	 *         never do.
+	 */
+	public double getCollisionTime(int i, int j, double now) {
+		final double a = _vx[i] - _vx[j];
+		final double b = getX(i, now) - getX(j, now);
+		final double c = _vy[i] - _vy[j];
+		final double d = getY(i, now) - getY(j, now);
+		final double r = _radius[i];
+
+		final double A = a * a + c * c;
+		final double B = 2 * (a * b + c * d);
+		final double C = b * b + d * d - 4 * r * r;
+
+		double t1, t2;
+		if (B >= 0) {
+			t1 = (-B - Math.sqrt(B * B - 4 * A * C)) / (2 * A);
+			t2 = 2 * C / (-B - Math.sqrt(B * B - 4 * A * C));
+		} else {
+			t1 = 2 * C / (-B + Math.sqrt(B * B - 4 * A * C));
+			t2 = (-B + Math.sqrt(B * B - 4 * A * C)) / (2 * A);
+		}
+
+		final double SMALL = 1e-6;
+		if (t1 > SMALL && t2 > SMALL) {
+			return Math.min(t1, t2);
+		} else if (t1 > SMALL) {
+			return t1;
+		} else if (t2 > SMALL) {
+			return t2;
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Find the time it takes for a particle to collide with one of the walls.
+	 *
+	 * @param i     the id of the particle.
+	 * @param wall  the code of the wall that should be tested.
+	 * @param width the width of the box.
+	 * @param now   the time the result is relative to.
+	 * @return the time after now when the particle collides with the given wall, or
+	 *         infinity if it never does.
+	 */
+	public double getWallCollisionTime(int i, int wall, int width, double now) {
+		if (wall == LEFT && _vx[i] < 0) {
+			return -(getX(i, now) - _radius[i]) / _vx[i];
+		} else if (wall == RIGHT && _vx[i] > 0) {
+			return (width - getX(i, now) - _radius[i]) / _vx[i];
+		} else if (wall == TOP && _vy[i] < 0) {
+			return -(getY(i, now) - _radius[i]) / _vy[i];
+		} else if (wall == BOTTOM && _vy[i] > 0) {
+			return (width - getY(i, now) - _radius[i]) / _vy[i];
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Returns a particle in the same format as Particle.toString.
+	 *
+	 * @param i the id of the particle.
+	 * @return the particle as a string.
+	 */
+	public String toString(int i) {
+		return (_names[i].equals("") ? "" : _names[i] + " ") + _x[i] + "  " + _y[i] + " " + _vx[i] + " " + _vy[i]
+				+ " " + _radius[i];
+	}
+}
@@ -0,0 +1,57 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.util.*;
+
+public class ParticleStoreTester {
+	private java.util.List<Particle> randomParticles(int n, long seed) {
+		final Random random = new Random(seed);
+		final java.util.List<Particle> particles = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			particles.add(new Particle("p" + i, 10 + random.nextDouble() * 480, 10 + random.nextDouble() * 480,
+					random.nextDouble() * 2 - 1, random.nextDouble() * 2 - 1, 5));
+		}
+		return particles;
+	}
+
+	@Test
+	public void testSameMathAsParticle() {
+		final java.util.List<Particle> particles = randomParticles(50, 1);
+		final ParticleStore store = new ParticleStore(particles);
+		for (int i = 0; i < particles.size(); i++) {
+			for (int wall = ParticleStore.LEFT; wall <= ParticleStore.BOTTOM; wall++) {
+				assertEquals(particles.get(i).getWallCollisionTime(ParticleStore.WALL_NAMES[wall], 500),
+						store.getWallCollisionTime(i, wall, 500, 0));
+			}
+			for (int j = 0; j < particles.size(); j++) {
+				if (i != j) {
+					assertEquals(particles.get(i).getCollisionTime(particles.get(j)), store.getCollisionTime(i, j, 0));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testUpdatesMatchParticle() {
+		final java.util.List<Particle> particles = randomParticles(10, 2);
+		final ParticleStore store = new ParticleStore(particles);
+
+		store.advanceAll(3.5);
+		store.updateAfterCollision(3.5, 0, 1);
+		store.updateAfterWallCollision(3.5, 2, ParticleStore.TOP);
+		for (Particle p : particles) {
+			p.update(3.5);
+		}
+		particles.get(0).updateAfterCollision(3.5, particles.get(1));
+		particles.get(2).updateAfterWallCollision(3.5, "top");
+
+		for (int i = 0; i < particles.size(); i++) {
+			assertEquals(particles.get(i).toString(), store.toString(i));
+		}
+
+		// Copying back into the views leaves them unchanged.
+		store.copyTo(particles, 3.5);
+		for (int i = 0; i < particles.size(); i++) {
+			assertEquals(particles.get(i).toString(), store.toString(i));
+		}
+	}
+}
@@ -0,0 +1,107 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks of the time to draw one frame of a random configuration of
+ * particles: one fillOval per particle, as paintComponent does below
+ * ParticleRaster.THRESHOLD, and ParticleRaster with one band and with a band per
+ * thread of the common pool. Both draw into an image of the size of the box,
+ * off the screen, so only the drawing is measured.
+ *
+ * The harness is generated by the JMH annotation processor when this file is
+ * compiled with jmh-generator-annprocess on the classpath. The processor refuses
+ * benchmarks in the default package, so the sources (without the testers) are
+ * compiled as a package of their own, for example from this directory:
+ *
+ *   mkdir -p build/src/benchmark build/classes
+ *   for f in *.java; do case $f in *Tester.java) ;; *) (echo "package benchmark;"; cat $f) > build/src/benchmark/$f;; esac; done
+ *   javac --add-modules jdk.incubator.vector -cp jmh-core-1.37.jar:jmh-generator-annprocess-1.37.jar -d build/classes build/src/benchmark/*.java
+ *   java --add-modules jdk.incubator.vector -cp build/classes:jmh-core-1.37.jar:jopt-simple-5.0.4.jar:commons-math3-3.6.1.jar benchmark.RenderBenchmark [resultFile]
+ *
+ * The jdk.incubator.vector module is only needed because VectorCollisionScan is
+ * among the sources.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RenderBenchmark {
+	// The number of particles.
+	@Param({ "1000", "10000", "100000", "300000" })
+	public int _numParticles;
+
+	// The particles, and the width of their box.
+	private java.util.List<Particle> _particles;
+	private int _width;
+
+	// The image fillOval draws into.
+	private BufferedImage _image;
+	private Graphics _graphics;
+
+	// The rasters, with one band and with the default number.
+	private ParticleRaster _singleBand;
+	private ParticleRaster _bands;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		final File file = File.createTempFile("particles", ".txt");
+		ParticleFiles.writeRandomParticles(file, _numParticles, 0);
+		final java.util.List<String> lines = Files.readAllLines(file.toPath());
+		file.delete();
+		_width = Integer.parseInt(lines.get(0).split(" ")[0]);
+		_particles = new ArrayList<>();
+		for (String line : lines.subList(1, lines.size())) {
+			_particles.add(Particle.build(line));
+		}
+
+		_image = new BufferedImage(_width, _width, BufferedImage.TYPE_INT_RGB);
+		_graphics = _image.getGraphics();
+		_singleBand = new ParticleRaster(_width, 1);
+		_bands = new ParticleRaster(_width);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		_graphics.dispose();
+	}
+
+	@Benchmark
+	public int fillOval() {
+		_graphics.setColor(Color.WHITE);
+		_graphics.fillRect(0, 0, _width, _width);
+		_graphics.setColor(Color.BLACK);
+		for (Particle p : _particles) {
+			p.draw(_graphics);
+		}
+		return _image.getRGB(_width / 2, _width / 2);
+	}
+
+	@Benchmark
+	public int rasterSingleBand() {
+		return _singleBand.draw(_particles, 0xFFFFFF, 0).getRGB(_width / 2, _width / 2);
+	}
+
+	@Benchmark
+	public int rasterBands() {
+		return _bands.draw(_particles, 0xFFFFFF, 0).getRGB(_width / 2, _width / 2);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(RenderBenchmark.class.getSimpleName())
+				.resultFormat(ResultFormatType.JSON)
+				.result(args.length >= 1 ? args[0] : "render-benchmark.json")
+				.build()).run();
+	}
+}
@@ -0,0 +1,205 @@
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import javax.swing.*;
+
+/**
+ * Shows a simulation running on its own thread, at a fixed frame rate. The
+ * simulation thread takes a snapshot of the positions of the particles for each
+ * frame into the back of two buffers and swaps them; a Swing timer copies the front
+ * buffer into the particle views and repaints the panel. The simulation never waits
+ * for the screen: if painting falls behind, the frames it misses are simply never
+ * shown.
+ *
+ * Frames are spaced evenly in simulated time, timeScale units of simulated time
+ * to a second, and the simulation waits for the wall clock before the snapshot of
+ * each frame, so that it plays at that speed. A frame whose time has already passed
+ * on the wall clock is skipped when a later one is due too, so a simulation that is
+ * slower than the time scale plays as fast as it can. With an infinite time scale
+ * the simulation never waits, and takes a snapshot once per frame of wall-clock
+ * time.
+ *
+ * The simulation calls advance before any velocity changes, while every particle
+ * still moves in a straight line, so a snapshot can be taken at any time up to
+ * then.
+ */
+class SnapshotRenderer {
+	// The frame rate and time scale, unless others are given: the simulation used to
+	// sleep one millisecond per unit of simulated time.
+	static final int DEFAULT_FPS = 60;
+	static final double DEFAULT_TIME_SCALE = 1000;
+
+	// The panel to repaint, and the views it draws.
+	private final JComponent _panel;
+	private final List<Particle> _views;
+
+	// The time between frames, in nanoseconds and in simulated time.
+	private final long _frameNanos;
+	private final double _frameTime;
+
+	// The simulated time per second of wall-clock time.
+	private final double _timeScale;
+
+	// The x and y of every particle in turn: the front buffer is the last snapshot
+	// taken, and the back one is filled by the simulation thread. Both are swapped
+	// under the lock of this renderer.
+	private double[] _front;
+	private double[] _back;
+
+	// Whether the front buffer has a snapshot that has not been shown yet.
+	private boolean _fresh;
+
+	// The wall-clock time and the simulated time the simulation started at.
+	private long _startNanos;
+	private double _startTime;
+
+	// The simulated time of the next frame, and the wall-clock time of the next
+	// frame with an infinite time scale.
+	private double _nextFrame;
+	private long _nextFrameNanos;
+
+	// The timer that shows the frames, on the event dispatch thread.
+	private Timer _timer;
+
+	/**
+	 * @param panel     the panel that draws the views.
+	 * @param views     the views of the particles, in id order.
+	 * @param fps       the number of frames per second.
+	 * @param timeScale the simulated time shown per second, or infinity to run the
+	 *                  simulation as fast as it can.
+	 */
+	SnapshotRenderer(JComponent panel, List<Particle> views, int fps, double timeScale) {
+		if (fps <= 0) {
+			throw new IllegalArgumentException("The frame rate must be positive: " + fps);
+		}
+		if (!(timeScale > 0)) {
+			throw new IllegalArgumentException("The time scale must be positive: " + timeScale);
+		}
+		_panel = panel;
+		_views = views;
+		_frameNanos = 1000000000L / fps;
+		_timeScale = timeScale;
+		_frameTime = timeScale / fps;
+		_front = new double[2 * views.size()];
+		_back = new double[2 * views.size()];
+	}
+
+	/**
+	 * Shows the state at the start of the simulation, and starts showing frames.
+	 * Called on the simulation thread.
+	 *
+	 * @param store the particles.
+	 * @param now   the time the simulation starts from.
+	 */
+	void start(ParticleStore store, double now) {
+		_startNanos = System.nanoTime();
+		_startTime = now;
+		_nextFrame = now + _frameTime;
+		_nextFrameNanos = _startNanos + _frameNanos;
+		publish(store, now);
+		SwingUtilities.invokeLater(() -> {
+			_timer = new Timer((int) Math.max(1, _frameNanos / 1000000), e -> show());
+			_timer.start();
+		});
+	}
+
+	/**
+	 * Takes the snapshots of the frames due up to the given time, waiting for the
+	 * wall clock to reach each of them. Called on the simulation thread.
+	 *
+	 * @param store the particles.
+	 * @param now   the time of the next change of velocity.
+	 */
+	void advance(ParticleStore store, double now) {
+		if (Double.isInfinite(_timeScale)) {
+			if (System.nanoTime() >= _nextFrameNanos) {
+				publish(store, now);
+				_nextFrameNanos = System.nanoTime() + _frameNanos;
+			}
+			return;
+		}
+		while (_nextFrame <= now) {
+			final long late = System.nanoTime() - wallClockTime(_nextFrame);
+			if (late < 0) {
+				LockSupport.parkNanos(-late);
+				continue;
+			}
+			if (late < _frameNanos || _nextFrame + _frameTime > now) {
+				publish(store, _nextFrame);
+			}
+			_nextFrame += _frameTime;
+		}
+	}
+
+	/**
+	 * Shows the state at the end of the simulation, and stops showing frames once it
+	 * is on the screen. Called on the simulation thread, which goes on only after the
+	 * last frame has been copied into the views.
+	 *
+	 * @param store the particles.
+	 * @param now   the time the simulation ends at.
+	 */
+	void finish(ParticleStore store, double now) {
+		advance(store, now);
+		publish(store, now);
+		try {
+			SwingUtilities.invokeAndWait(() -> {
+				if (_timer != null) {
+					_timer.stop();
+				}
+				show();
+			});
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (InvocationTargetException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Returns when a simulated time is due on the wall clock.
+	 *
+	 * @param time the simulated time.
+	 * @return the value of System.nanoTime at which it is due.
+	 */
+	private long wallClockTime(double time) {
+		return _startNanos + (long) ((time - _startTime) / _timeScale * 1e9);
+	}
+
+	/**
+	 * Takes a snapshot of the positions at a time into the back buffer, and swaps
+	 * it to the front.
+	 *
+	 * @param store the particles.
+	 * @param time  the time of the snapshot.
+	 */
+	private void publish(ParticleStore store, double time) {
+		final double[] back = _back;
+		for (int i = 0; i < store.size(); i++) {
+			back[2 * i] = store.getX(i, time);
+			back[2 * i + 1] = store.getY(i, time);
+		}
+		synchronized (this) {
+			_back = _front;
+			_front = back;
+			_fresh = true;
+		}
+	}
+
+	/**
+	 * Copies the front buffer into the views, if it has not been shown yet, and
+	 * repaints the panel. Called on the event dispatch thread.
+	 */
+	private void show() {
+		synchronized (this) {
+			if (!_fresh) {
+				return;
+			}
+			for (int i = 0; i < _views.size(); i++) {
+				_views.get(i).setPosition(_front[2 * i], _front[2 * i + 1]);
+			}
+			_fresh = false;
+		}
+		_panel.repaint();
+	}
+}
@@ -0,0 +1,37 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.io.*;
+
+public class SnapshotRendererTester {
+	@Test
+	public void testSameResultWhenShown() throws IOException {
+		final File file = ParticleFiles.randomParticles(200, 20, 0);
+		final String expected = ParticleFiles.simulate(new ParticleSimulator(file.getPath(), true), false);
+		for (double timeScale : new double[] { 1000, Double.POSITIVE_INFINITY }) {
+			final ParticleSimulator simulator = new ParticleSimulator(file.getPath(), true);
+			simulator.setPlayback(100, timeScale);
+			assertEquals(expected, ParticleFiles.simulate(simulator, true));
+		}
+	}
+
+	@Test
+	public void testTimeScale() throws IOException {
+		// 20 units of simulated time at 100 a second take at least 0.2 seconds.
+		final File file = ParticleFiles.randomParticles(50, 20, 1);
+		final ParticleSimulator simulator = new ParticleSimulator(file.getPath(), false);
+		simulator.setPlayback(50, 100);
+		final long start = System.nanoTime();
+		ParticleFiles.simulate(simulator, true);
+		final double seconds = (System.nanoTime() - start) / 1e9;
+		assertTrue(seconds >= 0.19, "took " + seconds);
+		assertTrue(seconds < 5, "took " + seconds);
+	}
+
+	@Test
+	public void testBadArguments() throws IOException {
+		final ParticleSimulator simulator = new ParticleSimulator(ParticleFiles.randomParticles(5, 1, 2).getPath());
+		assertThrows(IllegalArgumentException.class, () -> simulator.setPlayback(0, 1));
+		assertThrows(IllegalArgumentException.class, () -> simulator.setPlayback(30, 0));
+		assertThrows(IllegalArgumentException.class, () -> simulator.setPlayback(30, Double.NaN));
+	}
+}
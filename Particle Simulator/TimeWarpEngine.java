@@ -0,0 +1,990 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Runs the simulation of ParticleSimulator on several threads with the optimistic
+ * Time Warp protocol (D. Jefferson, "Virtual Time", TOPLAS 1985).
+ *
+ * The grid of a CellList is split into vertical strips of columns, the regions, and
+ * each region is simulated by its own worker with its own copy of the store, its
+ * own grid, event heap and event pool. A worker owns the particles in its strip and
+ * schedules their events as ParticleSimulator does in lazy mode. It also keeps
+ * ghosts of the particles in the column on either side of its strip, since those
+ * are the only others its own particles can touch. Each particle's next event is
+ * found by its owner against every particle around it, ghosts included, exactly as
+ * ParticleSimulator finds it: the time until two particles collide depends on whose
+ * radius it is computed with, so a collision between particles of two regions is
+ * scheduled by both owners, each from its own particle's side. Whichever comes
+ * first happens, and the message it sends replaces the other one's event, as
+ * ParticleSimulator replaces the partner's event after a collision. When both come
+ * at the same time, both regions make the same change.
+ *
+ * Whenever an event changes a particle in a column that a neighbouring region
+ * keeps, the worker sends the neighbour the new state of the particle; when a
+ * particle crosses into the neighbour's strip, the same message hands it over.
+ * Workers do not wait for each other: each processes its events as far ahead as it
+ * can, saving the state of every particle it changes in an undo log. When a message
+ * arrives with a time before the last thing the worker did, the worker rolls back to
+ * that time by undoing the log, and tells its neighbours to cancel whatever it sent
+ * them since; they roll back in turn if they had used it.
+ *
+ * From time to time the workers stop together to compute the global virtual time
+ * (GVT), the earliest time anything can still happen at. Nothing before it can be
+ * rolled back, so the undo logs are trimmed to it, and the simulation is over once
+ * it passes the duration.
+ *
+ * Each strip is at least two columns wide, so a particle is kept by at most one
+ * region besides its owner.
+ */
+class TimeWarpEngine {
+	// The number of events a worker processes between requests for a GVT round.
+	private static final int GVT_INTERVAL = 4096;
+
+	// The starting optimism window, as a fraction of the duration.
+	private static final double INITIAL_WINDOW = 0.001;
+
+	// The share of events rolled back in a round above which the window shrinks, and
+	// below which it grows.
+	private static final double SHRINK_ABOVE = 0.1;
+	private static final double GROW_BELOW = 0.02;
+
+	// The status of a particle in a region.
+	private static final byte UNTRACKED = 0;
+	private static final byte GHOST = 1;
+	private static final byte OWNED = 2;
+
+	// The kinds of message.
+	private static final byte STATE = 0;
+	private static final byte CANCEL = 1;
+
+	// The kinds of undo log entry: the first entry of an event or of a message, or
+	// another entry of the same one.
+	private static final byte CONTINUED = 0;
+	private static final byte EVENT_START = 1;
+	private static final byte MESSAGE_START = 2;
+
+	// The particles, which get the final state, and the box.
+	private final ParticleStore _store;
+	private final int _width;
+	private final double _duration;
+
+	// The first column of each region; region r has columns _bounds[r] to
+	// _bounds[r + 1] - 1.
+	private final int[] _bounds;
+
+	// The region of each column.
+	private final int[] _regionOfColumn;
+
+	private final Worker[] _workers;
+
+	// Every worker waits at the first barrier when a GVT round starts, and at the
+	// second once it has posted its earliest time.
+	private final CyclicBarrier _stop;
+	private final CyclicBarrier _reduce;
+
+	// Whether a GVT round has been asked for.
+	private volatile boolean _gvtRequested;
+
+	// The number of workers with nothing to do.
+	private final AtomicInteger _idle = new AtomicInteger();
+
+	// The earliest time each worker posted, and the minimum of them.
+	private final double[] _localMinimums;
+	private volatile double _gvt;
+
+	// How far past the GVT a worker may go. It is set at each GVT round from the
+	// share of events rolled back since the one before, so that workers go as far
+	// ahead as they can without mostly doing work that is thrown away.
+	private volatile double _window;
+	private long _processedBefore, _rolledBackBefore;
+
+	private int _gvtRounds;
+
+	// The first exception thrown by a worker.
+	private volatile Throwable _failure;
+
+	/**
+	 * A message from one worker to another: the state of a particle at a time, or a
+	 * request to cancel the messages with a sequence number of at least the given
+	 * one.
+	 */
+	private static final class Message {
+		final byte _type;
+		final int _sender;
+		final long _seq;
+		final double _time;
+		final int _particle;
+		final double _x, _y, _vx, _vy, _lastUpdateTime, _stateTime;
+		final int _cellX, _cellY;
+
+		// The order in which the receiver got it, and the position of its first
+		// entry in the receiver's undo log once applied.
+		long _arrival;
+		long _position;
+
+		Message(byte type, int sender, long seq, double time, int particle, ParticleStore store, CellList cells) {
+			_type = type;
+			_sender = sender;
+			_seq = seq;
+			_time = time;
+			_particle = particle;
+			if (particle >= 0) {
+				_x = store._x[particle];
+				_y = store._y[particle];
+				_vx = store._vx[particle];
+				_vy = store._vy[particle];
+				_lastUpdateTime = store._lastUpdateTime[particle];
+				_stateTime = store._time[particle];
+				_cellX = cells.getCellX(particle);
+				_cellY = cells.getCellY(particle);
+			} else {
+				_x = _y = _vx = _vy = _lastUpdateTime = _stateTime = 0;
+				_cellX = _cellY = -1;
+			}
+		}
+	}
+
+	/**
+	 * Splits the box into regions for the given number of threads.
+	 *
+	 * @param store    the particles at time 0; they get the state at the duration.
+	 * @param width    the width of the box.
+	 * @param duration the time to simulate until.
+	 * @param threads  the number of regions wanted; there are fewer if the grid has
+	 *                 fewer than two columns for each.
+	 */
+	TimeWarpEngine(ParticleStore store, int width, double duration, int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("At least one thread is needed: " + threads);
+		}
+		_store = store;
+		_width = width;
+		_duration = duration;
+
+		final int columns = new CellList(store, width).getCellsPerSide();
+		final int regions = Math.max(1, Math.min(threads, columns / 2));
+		_bounds = new int[regions + 1];
+		_regionOfColumn = new int[columns];
+		for (int r = 0; r <= regions; r++) {
+			_bounds[r] = r * columns / regions;
+		}
+		for (int r = 0; r < regions; r++) {
+			Arrays.fill(_regionOfColumn, _bounds[r], _bounds[r + 1], r);
+		}
+
+		_window = INITIAL_WINDOW * duration;
+		_localMinimums = new double[regions];
+		_stop = new CyclicBarrier(regions, () -> _gvtRequested = false);
+		_reduce = new CyclicBarrier(regions, () -> {
+			double gvt = Double.POSITIVE_INFINITY;
+			for (double time : _localMinimums) {
+				gvt = Math.min(gvt, time);
+			}
+			_gvt = gvt;
+			_gvtRounds++;
+			adaptWindow();
+		});
+		_workers = new Worker[regions];
+		for (int r = 0; r < regions; r++) {
+			_workers[r] = new Worker(r);
+		}
+	}
+
+	/**
+	 * Runs the simulation to the duration on one thread per region, and leaves the
+	 * final state of every particle, moved to the duration, in the store.
+	 */
+	void run() {
+		final Thread[] threads = new Thread[_workers.length];
+		for (int r = 0; r < threads.length; r++) {
+			threads[r] = new Thread(_workers[r], "time-warp-" + r);
+			threads[r].start();
+		}
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while simulating", ie);
+			}
+		}
+		if (_failure != null) {
+			throw new IllegalStateException("A region failed", _failure);
+		}
+	}
+
+	/**
+	 * Returns the number of regions, each simulated by its own thread.
+	 *
+	 * @return the number of regions.
+	 */
+	int getNumRegions() {
+		return _workers.length;
+	}
+
+	/**
+	 * Returns the number of events processed, including those later rolled back.
+	 *
+	 * @return the number of events processed.
+	 */
+	long getEventsProcessed() {
+		long total = 0;
+		for (Worker worker : _workers) {
+			total += worker._eventsProcessed;
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the number of events that were undone by rollbacks.
+	 *
+	 * @return the number of events rolled back.
+	 */
+	long getEventsRolledBack() {
+		long total = 0;
+		for (Worker worker : _workers) {
+			total += worker._eventsRolledBack;
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the number of rollbacks.
+	 *
+	 * @return the number of rollbacks.
+	 */
+	long getRollbacks() {
+		long total = 0;
+		for (Worker worker : _workers) {
+			total += worker._rollbacks;
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the number of messages sent between regions, cancellations included.
+	 *
+	 * @return the number of messages.
+	 */
+	long getMessagesSent() {
+		long total = 0;
+		for (Worker worker : _workers) {
+			total += worker._messagesSent;
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the number of times the GVT was computed.
+	 *
+	 * @return the number of GVT rounds.
+	 */
+	int getGvtRounds() {
+		return _gvtRounds;
+	}
+
+	/**
+	 * Shrinks the optimism window if many of the events processed since the last GVT
+	 * round were rolled back, and grows it if few were.
+	 */
+	private void adaptWindow() {
+		final long processed = getEventsProcessed() - _processedBefore;
+		final long rolledBack = getEventsRolledBack() - _rolledBackBefore;
+		_processedBefore += processed;
+		_rolledBackBefore += rolledBack;
+		if (rolledBack > SHRINK_ABOVE * processed) {
+			_window /= 2;
+		} else if (rolledBack < GROW_BELOW * processed) {
+			_window *= 1.5;
+		}
+	}
+
+	/**
+	 * Find whether a region keeps the particles in a column, as owner or as ghosts.
+	 *
+	 * @param region the region.
+	 * @param column the column.
+	 * @return true if the region keeps the particles in the column.
+	 */
+	private boolean keeps(int region, int column) {
+		return column >= _bounds[region] - 1 && column <= _bounds[region + 1];
+	}
+
+	/**
+	 * One region, simulated on its own thread.
+	 */
+	private final class Worker implements Runnable {
+		private final int _id;
+
+		// The regions on either side, or -1.
+		private final int[] _neighbours;
+
+		// This region's copy of the particles, its grid, and its events.
+		private final ParticleStore _local;
+		private final CellList _cells;
+		private final EventHeap _events = new EventHeap();
+		private final EventPool _pool = new EventPool();
+
+		// The handle of the pending event of each owned particle, or -1.
+		private final int[] _pending;
+
+		// The status of each particle in this region.
+		private final byte[] _status;
+
+		// Messages from other workers that have not been looked at, those waiting to be
+		// applied in time order, and those applied and not yet fossil collected.
+		private final ConcurrentLinkedQueue<Message> _inbox = new ConcurrentLinkedQueue<>();
+		private final PriorityQueue<Message> _messages = new PriorityQueue<>((a, b) -> a._time != b._time
+				? Double.compare(a._time, b._time)
+				: Long.compare(a._arrival, b._arrival));
+		private final ArrayList<Message> _applied = new ArrayList<>();
+		private long _arrivals;
+
+		// The time of the event or message being processed, and of the last one.
+		private double _itemTime;
+		private byte _itemStart;
+		private double _lastTime = Double.NEGATIVE_INFINITY;
+
+		// The undo log: the state of a particle before an event or message changed
+		// it, in the order they were processed. _logBase is the number of entries
+		// fossil collected, so positions in the log stay the same as it is trimmed.
+		private double[] _logTime = new double[1024];
+		private byte[] _logKind = new byte[1024];
+		private int[] _logParticle = new int[1024];
+		private double[] _logX = new double[1024], _logY = new double[1024];
+		private double[] _logVx = new double[1024], _logVy = new double[1024];
+		private double[] _logLastUpdateTime = new double[1024], _logStateTime = new double[1024];
+		private int[] _logCellX = new int[1024], _logCellY = new int[1024];
+		private byte[] _logStatus = new byte[1024];
+		private int[] _logEventType = new int[1024], _logEventOther = new int[1024];
+		private double[] _logEventTime = new double[1024], _logEventCreated = new double[1024];
+		private int _logLength;
+		private long _logBase;
+
+		// For each neighbour, the messages sent to it that may still be cancelled:
+		// their time, the length of the undo log when they were sent, and their
+		// sequence numbers.
+		private final double[][] _sentTime = new double[2][64];
+		private final long[][] _sentPosition = new long[2][64];
+		private final long[][] _sentSeq = new long[2][64];
+		private final int[] _sentLength = new int[2];
+		private final long[] _nextSeq = new long[2];
+
+		private boolean _isIdle;
+		private int _sinceGvt;
+
+		private long _eventsProcessed;
+		private long _eventsRolledBack;
+		private long _rollbacks;
+		private long _messagesSent;
+
+		Worker(int id) {
+			_id = id;
+			_neighbours = new int[] { id > 0 ? id - 1 : -1, id < _bounds.length - 2 ? id + 1 : -1 };
+			_local = new ParticleStore(_store);
+			_cells = new CellList(_local, _width);
+			_pending = new int[_local.size()];
+			_status = new byte[_local.size()];
+			Arrays.fill(_pending, -1);
+
+			// Keep only the particles of this region and the columns beside it, and
+			// schedule the first event of each owned one.
+			for (int i = 0; i < _local.size(); i++) {
+				_status[i] = statusOf(_cells.getCellX(i));
+				if (_status[i] == UNTRACKED) {
+					_cells.remove(i);
+				}
+			}
+			for (int i = 0; i < _local.size(); i++) {
+				if (_status[i] == OWNED) {
+					makeEvent(i, 0);
+				}
+			}
+		}
+
+		public void run() {
+			try {
+				while (true) {
+					drainInbox();
+					if (_failure != null) {
+						return;
+					}
+					if (_gvtRequested) {
+						if (!gvtRound()) {
+							break;
+						}
+						continue;
+					}
+					if (nextTime() < Math.min(_duration, _gvt + _window)) {
+						setIdle(false);
+						processNext();
+						if (++_sinceGvt >= GVT_INTERVAL) {
+							_gvtRequested = true;
+						}
+					} else {
+						// Only a GVT round can tell whether a message is still coming, or move
+						// the window on, so ask for one once every worker is waiting.
+						setIdle(true);
+						Thread.yield();
+					}
+				}
+
+				// Everything before the duration is final: hand over the owned particles.
+				for (int i = 0; i < _local.size(); i++) {
+					if (_status[i] == OWNED) {
+						_local.advance(i, _duration);
+						_store.copyParticle(_local, i);
+					}
+				}
+			} catch (BrokenBarrierException e) {
+				// Another worker failed.
+			} catch (Throwable t) {
+				if (_failure == null) {
+					_failure = t;
+				}
+				_stop.reset();
+				_reduce.reset();
+			}
+		}
+
+		/**
+		 * Marks this worker as waiting or not, and asks for a GVT round when every
+		 * worker is waiting.
+		 *
+		 * @param idle true if it has nothing to do.
+		 */
+		private void setIdle(boolean idle) {
+			if (idle != _isIdle) {
+				_isIdle = idle;
+				if (idle) {
+					if (_idle.incrementAndGet() == _workers.length) {
+						_gvtRequested = true;
+					}
+				} else {
+					_idle.decrementAndGet();
+				}
+			}
+		}
+
+		/**
+		 * Takes part in a GVT round: posts the earliest time of anything this worker
+		 * has still to do, waits for the others, and fossil collects what is older
+		 * than the GVT.
+		 *
+		 * @return false if the simulation is over.
+		 */
+		private boolean gvtRound() throws InterruptedException, BrokenBarrierException {
+			setIdle(false);
+			_stop.await();
+
+			// No worker sends anything until the round is over, so the inbox is complete.
+			double earliest = nextTime();
+			for (Message message : _inbox) {
+				earliest = Math.min(earliest, message._time);
+			}
+			_localMinimums[_id] = earliest;
+			_reduce.await();
+
+			fossilCollect(_gvt);
+			_sinceGvt = 0;
+			return _gvt < _duration;
+		}
+
+		/**
+		 * Find the time of the next event or message to process.
+		 *
+		 * @return its time, or infinity if there is none.
+		 */
+		private double nextTime() {
+			final int first = _events.getFirst();
+			final double eventTime = first == -1 ? Double.POSITIVE_INFINITY : _pool.getTimeOfEvent(first);
+			final Message message = _messages.peek();
+			return message == null ? eventTime : Math.min(eventTime, message._time);
+		}
+
+		/**
+		 * Processes the next event or message, events first when they have the same time.
+		 */
+		private void processNext() {
+			final int first = _events.getFirst();
+			final Message message = _messages.peek();
+			if (first != -1 && (message == null || _pool.getTimeOfEvent(first) <= message._time)) {
+				processEvent(_events.removeFirst());
+			} else {
+				applyMessage(_messages.poll());
+			}
+		}
+
+		/**
+		 * Moves the messages that have arrived into the waiting messages, rolling back
+		 * for any that is in this worker's past, and handles cancellations.
+		 */
+		private void drainInbox() {
+			Message message;
+			while ((message = _inbox.poll()) != null) {
+				if (message._type == CANCEL) {
+					cancel(message);
+				} else {
+					message._arrival = _arrivals++;
+					if (message._time < _lastTime) {
+						rollback(message._time);
+					}
+					_messages.add(message);
+				}
+			}
+		}
+
+		/**
+		 * Drops the messages of a sender that it has cancelled, rolling back to
+		 * before the first of them if it was applied.
+		 *
+		 * @param cancel the cancellation.
+		 */
+		private void cancel(Message cancel) {
+			long position = Long.MAX_VALUE;
+			for (Message message : _applied) {
+				if (message._sender == cancel._sender && message._seq >= cancel._seq) {
+					position = Math.min(position, message._position);
+				}
+			}
+			if (position != Long.MAX_VALUE) {
+				rollbackTo(position);
+			}
+			_messages.removeIf(message -> message._sender == cancel._sender && message._seq >= cancel._seq);
+		}
+
+		/**
+		 * Processes an event of an owned particle, as collisionTracker does.
+		 *
+		 * @param event the handle of the event, taken out of the heap.
+		 */
+		private void processEvent(int event) {
+			final double time = _pool.getTimeOfEvent(event);
+			final int p = _pool.getParticle(event);
+			final int type = _pool.getType(event);
+			final int other = _pool.getOther(event);
+			final double created = _pool.getTimeEventCreated(event);
+			begin(time, EVENT_START);
+			_eventsProcessed++;
+
+			// The particle no longer has a pending event; its slot is free once it has
+			// been saved.
+			save(p);
+			_pending[p] = -1;
+			_pool.free(event);
+
+			// A partner that has changed, or that this region no longer keeps, makes the
+			// event invalid.
+			if (type == EventPool.COLLISION && (_status[other] == UNTRACKED || !_local.isValid(other, created))) {
+				makeEvent(p, time);
+				return;
+			}
+
+			final int column = _cells.getCellX(p);
+			if (type == EventPool.CROSSING) {
+				_cells.cross(_local, p, time);
+				final byte status = statusOf(_cells.getCellX(p));
+				if (status == OWNED) {
+					makeEvent(p, time);
+				} else {
+					// The particle has moved into the next region, which finds its next
+					// event; it is a ghost here now.
+					_status[p] = status;
+				}
+				sendState(p, column);
+			} else if (type == EventPool.WALL) {
+				_local.updateAfterWallCollision(time, p, other);
+				makeEvent(p, time);
+				sendState(p, column);
+			} else {
+				save(other);
+				_local.updateAfterCollision(time, p, other);
+				makeEvent(p, time);
+
+				// The particle's new state goes out before the partner's, so that the
+				// partner's owner has both when it finds the partner's next event.
+				sendState(p, column);
+				if (_status[other] == OWNED) {
+					makeEvent(other, time);
+					sendState(other, _cells.getCellX(other));
+				} else {
+					// The partner's owner finds its next event.
+					send(_regionOfColumn[_cells.getCellX(other)], other);
+				}
+			}
+		}
+
+		/**
+		 * Applies the state of a particle sent by another region.
+		 *
+		 * @param message the message.
+		 */
+		private void applyMessage(Message message) {
+			final int p = message._particle;
+			begin(message._time, MESSAGE_START);
+			message._position = _logBase + _logLength;
+			_applied.add(message);
+			save(p);
+
+			final byte oldStatus = _status[p];
+			final byte status = statusOf(message._cellX);
+			_local._x[p] = message._x;
+			_local._y[p] = message._y;
+			_local._vx[p] = message._vx;
+			_local._vy[p] = message._vy;
+			_local._lastUpdateTime[p] = status == UNTRACKED ? Double.POSITIVE_INFINITY : message._lastUpdateTime;
+			_local._time[p] = message._stateTime;
+			file(p, oldStatus, status, message._cellX, message._cellY);
+			_status[p] = status;
+
+			if (status == OWNED) {
+				makeEvent(p, message._time);
+			} else if (oldStatus == OWNED) {
+				dropEvent(p);
+			}
+		}
+
+		/**
+		 * Starts processing an event or a message.
+		 *
+		 * @param time  its time.
+		 * @param start EVENT_START or MESSAGE_START.
+		 */
+		private void begin(double time, byte start) {
+			_itemTime = time;
+			_itemStart = start;
+			_lastTime = time;
+		}
+
+		/**
+		 * Finds the next event of an owned particle and makes it its pending event, as
+		 * ParticleSimulator.makeEvent does. Ghosts are candidates like any other
+		 * particle, since their own regions test them against this one from their side.
+		 *
+		 * @param p1          the particle.
+		 * @param initialTime the time at which the new event is being created.
+		 */
+		private void makeEvent(int p1, double initialTime) {
+			double bestTime = _cells.getCrossingTime(_local, p1, initialTime);
+			int bestType = EventPool.CROSSING;
+			int bestOther = -1;
+
+			for (int wall = ParticleStore.LEFT; wall <= ParticleStore.BOTTOM; wall++) {
+				double time = _local.getWallCollisionTime(p1, wall, _width, initialTime);
+				if (time < bestTime) {
+					bestTime = time;
+					bestType = EventPool.WALL;
+					bestOther = wall;
+				}
+			}
+
+			for (int cellY = _cells.getCellY(p1) - 1; cellY <= _cells.getCellY(p1) + 1; cellY++) {
+				for (int cellX = _cells.getCellX(p1) - 1; cellX <= _cells.getCellX(p1) + 1; cellX++) {
+					for (int p2 = _cells.first(cellX, cellY); p2 != -1; p2 = _cells.next(p2)) {
+						if (p1 != p2) {
+							double time = _local.getCollisionTime(p1, p2, initialTime);
+							if (time < bestTime) {
+								bestTime = time;
+								bestType = EventPool.COLLISION;
+								bestOther = p2;
+							}
+						}
+					}
+				}
+			}
+
+			if (Double.isFinite(bestTime)) {
+				setEvent(p1, bestType, initialTime + bestTime, initialTime, bestOther);
+			} else {
+				dropEvent(p1);
+			}
+		}
+
+		/**
+		 * Makes an event the pending event of a particle, reusing its pool slot.
+		 *
+		 * @param p       the particle.
+		 * @param type    the type of the event.
+		 * @param time    the time of the event.
+		 * @param created the time the event was created.
+		 * @param other   the partner or wall of the event.
+		 */
+		private void setEvent(int p, int type, double time, double created, int other) {
+			if (_pending[p] == -1) {
+				_pending[p] = _pool.allocate(type, time, created, p, other);
+				_events.add(_pending[p], time);
+			} else {
+				_pool.set(_pending[p], type, time, created, p, other);
+				_events.update(_pending[p], time);
+			}
+		}
+
+		/**
+		 * Removes the pending event of a particle, if it has one.
+		 *
+		 * @param p the particle.
+		 */
+		private void dropEvent(int p) {
+			if (_pending[p] != -1) {
+				_events.remove(_pending[p]);
+				_pool.free(_pending[p]);
+				_pending[p] = -1;
+			}
+		}
+
+		/**
+		 * Find the status in this region of a particle in a column.
+		 *
+		 * @param column the column.
+		 * @return OWNED, GHOST or UNTRACKED.
+		 */
+		private byte statusOf(int column) {
+			if (column >= _bounds[_id] && column < _bounds[_id + 1]) {
+				return OWNED;
+			}
+			return keeps(_id, column) ? GHOST : UNTRACKED;
+		}
+
+		/**
+		 * Moves a particle in the grid to match a change of status and cell.
+		 *
+		 * @param p         the particle.
+		 * @param oldStatus its status before.
+		 * @param status    its status after.
+		 * @param cellX     the column of its cell after.
+		 * @param cellY     the row of its cell after.
+		 */
+		private void file(int p, byte oldStatus, byte status, int cellX, int cellY) {
+			if (oldStatus != UNTRACKED && status != UNTRACKED) {
+				if (_cells.getCellX(p) != cellX || _cells.getCellY(p) != cellY) {
+					_cells.move(p, cellX, cellY);
+				}
+			} else if (oldStatus != UNTRACKED) {
+				_cells.remove(p);
+			} else if (status != UNTRACKED) {
+				_cells.insert(p, cellX, cellY);
+			}
+		}
+
+		/**
+		 * Sends the state of an owned particle to the neighbours that keep the column
+		 * it was in or the one it is in now.
+		 *
+		 * @param p         the particle.
+		 * @param oldColumn the column it was in before the event.
+		 */
+		private void sendState(int p, int oldColumn) {
+			final int column = _cells.getCellX(p);
+			for (int neighbour : _neighbours) {
+				if (neighbour != -1 && (keeps(neighbour, oldColumn) || keeps(neighbour, column))) {
+					send(neighbour, p);
+				}
+			}
+		}
+
+		/**
+		 * Sends the state of a particle to a neighbour.
+		 *
+		 * @param neighbour the region to send to.
+		 * @param p         the particle.
+		 */
+		private void send(int neighbour, int p) {
+			final int side = neighbour < _id ? 0 : 1;
+			final Message message = new Message(STATE, _id, _nextSeq[side]++, _itemTime, p, _local, _cells);
+			int n = _sentLength[side];
+			if (n == _sentTime[side].length) {
+				_sentTime[side] = Arrays.copyOf(_sentTime[side], n * 2);
+				_sentPosition[side] = Arrays.copyOf(_sentPosition[side], n * 2);
+				_sentSeq[side] = Arrays.copyOf(_sentSeq[side], n * 2);
+			}
+			_sentTime[side][n] = _itemTime;
+			_sentPosition[side][n] = _logBase + _logLength;
+			_sentSeq[side][n] = message._seq;
+			_sentLength[side]++;
+			_messagesSent++;
+			_workers[neighbour]._inbox.add(message);
+		}
+
+		/**
+		 * Saves the state of a particle, its cell, status and pending event in the undo
+		 * log, before the current event or message changes it.
+		 *
+		 * @param p the particle.
+		 */
+		private void save(int p) {
+			if (_logLength == _logTime.length) {
+				growLog();
+			}
+			final int n = _logLength++;
+			_logTime[n] = _itemTime;
+			_logKind[n] = _itemStart;
+			_itemStart = CONTINUED;
+			_logParticle[n] = p;
+			_logX[n] = _local._x[p];
+			_logY[n] = _local._y[p];
+			_logVx[n] = _local._vx[p];
+			_logVy[n] = _local._vy[p];
+			_logLastUpdateTime[n] = _local._lastUpdateTime[p];
+			_logStateTime[n] = _local._time[p];
+			_logCellX[n] = _cells.getCellX(p);
+			_logCellY[n] = _cells.getCellY(p);
+			_logStatus[n] = _status[p];
+			final int event = _pending[p];
+			_logEventType[n] = event == -1 ? -1 : _pool.getType(event);
+			if (event != -1) {
+				_logEventTime[n] = _pool.getTimeOfEvent(event);
+				_logEventCreated[n] = _pool.getTimeEventCreated(event);
+				_logEventOther[n] = _pool.getOther(event);
+			}
+		}
+
+		/**
+		 * Undoes everything done after the given time.
+		 *
+		 * @param time the time to roll back to.
+		 */
+		private void rollback(double time) {
+			int n = _logLength;
+			while (n > 0 && _logTime[n - 1] > time) {
+				n--;
+			}
+			rollbackTo(_logBase + n);
+		}
+
+		/**
+		 * Undoes the undo log from a position on: restores the particles, puts the
+		 * messages applied since back in line, and cancels the messages sent since.
+		 *
+		 * @param position the position in the log to roll back to.
+		 */
+		private void rollbackTo(long position) {
+			final int n = (int) (position - _logBase);
+			if (n >= _logLength) {
+				return;
+			}
+			_rollbacks++;
+			for (int i = _logLength - 1; i >= n; i--) {
+				restore(i);
+				if (_logKind[i] == EVENT_START) {
+					_eventsRolledBack++;
+				}
+			}
+			_logLength = n;
+			_lastTime = n > 0 ? _logTime[n - 1] : Double.NEGATIVE_INFINITY;
+
+			for (int i = _applied.size() - 1; i >= 0 && _applied.get(i)._position >= position; i--) {
+				_messages.add(_applied.remove(i));
+			}
+
+			for (int side = 0; side < 2; side++) {
+				int sent = _sentLength[side];
+				while (sent > 0 && _sentPosition[side][sent - 1] > position) {
+					sent--;
+				}
+				if (sent < _sentLength[side]) {
+					_messagesSent++;
+					_workers[_neighbours[side]]._inbox.add(new Message(CANCEL, _id, _sentSeq[side][sent],
+							_sentTime[side][sent], -1, null, null));
+					_sentLength[side] = sent;
+				}
+			}
+		}
+
+		/**
+		 * Puts a particle back into the state saved in an entry of the undo log.
+		 *
+		 * @param i the index of the entry.
+		 */
+		private void restore(int i) {
+			final int p = _logParticle[i];
+			_local._x[p] = _logX[i];
+			_local._y[p] = _logY[i];
+			_local._vx[p] = _logVx[i];
+			_local._vy[p] = _logVy[i];
+			_local._lastUpdateTime[p] = _logLastUpdateTime[i];
+			_local._time[p] = _logStateTime[i];
+			file(p, _status[p], _logStatus[i], _logCellX[i], _logCellY[i]);
+			_status[p] = _logStatus[i];
+			if (_logEventType[i] == -1) {
+				dropEvent(p);
+			} else {
+				setEvent(p, _logEventType[i], _logEventTime[i], _logEventCreated[i], _logEventOther[i]);
+			}
+		}
+
+		/**
+		 * Forgets everything before the GVT, which can no longer be rolled back.
+		 *
+		 * @param gvt the global virtual time.
+		 */
+		private void fossilCollect(double gvt) {
+			int n = 0;
+			while (n < _logLength && _logTime[n] < gvt) {
+				n++;
+			}
+			if (n > 0) {
+				final int rest = _logLength - n;
+				System.arraycopy(_logTime, n, _logTime, 0, rest);
+				System.arraycopy(_logKind, n, _logKind, 0, rest);
+				System.arraycopy(_logParticle, n, _logParticle, 0, rest);
+				System.arraycopy(_logX, n, _logX, 0, rest);
+				System.arraycopy(_logY, n, _logY, 0, rest);
+				System.arraycopy(_logVx, n, _logVx, 0, rest);
+				System.arraycopy(_logVy, n, _logVy, 0, rest);
+				System.arraycopy(_logLastUpdateTime, n, _logLastUpdateTime, 0, rest);
+				System.arraycopy(_logStateTime, n, _logStateTime, 0, rest);
+				System.arraycopy(_logCellX, n, _logCellX, 0, rest);
+				System.arraycopy(_logCellY, n, _logCellY, 0, rest);
+				System.arraycopy(_logStatus, n, _logStatus, 0, rest);
+				System.arraycopy(_logEventType, n, _logEventType, 0, rest);
+				System.arraycopy(_logEventTime, n, _logEventTime, 0, rest);
+				System.arraycopy(_logEventCreated, n, _logEventCreated, 0, rest);
+				System.arraycopy(_logEventOther, n, _logEventOther, 0, rest);
+				_logLength = rest;
+				_logBase += n;
+			}
+
+			int applied = 0;
+			while (applied < _applied.size() && _applied.get(applied)._time < gvt) {
+				applied++;
+			}
+			_applied.subList(0, applied).clear();
+
+			for (int side = 0; side < 2; side++) {
+				int sent = 0;
+				while (sent < _sentLength[side] && _sentTime[side][sent] < gvt) {
+					sent++;
+				}
+				final int rest = _sentLength[side] - sent;
+				System.arraycopy(_sentTime[side], sent, _sentTime[side], 0, rest);
+				System.arraycopy(_sentPosition[side], sent, _sentPosition[side], 0, rest);
+				System.arraycopy(_sentSeq[side], sent, _sentSeq[side], 0, rest);
+				_sentLength[side] = rest;
+			}
+		}
+
+		/**
+		 * Doubles the size of the undo log.
+		 */
+		private void growLog() {
+			final int length = _logTime.length * 2;
+			_logTime = Arrays.copyOf(_logTime, length);
+			_logKind = Arrays.copyOf(_logKind, length);
+			_logParticle = Arrays.copyOf(_logParticle, length);
+			_logX = Arrays.copyOf(_logX, length);
+			_logY = Arrays.copyOf(_logY, length);
+			_logVx = Arrays.copyOf(_logVx, length);
+			_logVy = Arrays.copyOf(_logVy, length);
+			_logLastUpdateTime = Arrays.copyOf(_logLastUpdateTime, length);
+			_logStateTime = Arrays.copyOf(_logStateTime, length);
+			_logCellX = Arrays.copyOf(_logCellX, length);
+			_logCellY = Arrays.copyOf(_logCellY, length);
+			_logStatus = Arrays.copyOf(_logStatus, length);
+			_logEventType = Arrays.copyOf(_logEventType, length);
+			_logEventTime = Arrays.copyOf(_logEventTime, length);
+			_logEventCreated = Arrays.copyOf(_logEventCreated, length);
+			_logEventOther = Arrays.copyOf(_logEventOther, length);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.io.*;
+import java.util.*;
+
+public class TimeWarpEngineTester {
+	/**
+	 * Returns the numbers printed for the final state of the particles.
+	 */
+	private double[] finalState(ByteArrayOutputStream out) {
+		final ArrayList<Double> numbers = new ArrayList<>();
+		for (String token : out.toString().split("\\s+")) {
+			try {
+				numbers.add(Double.parseDouble(token));
+			} catch (NumberFormatException e) {
+				// A particle name.
+			}
+		}
+		final double[] result = new double[numbers.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = numbers.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Checks that the engine ends with the same state as the sequential simulator
+	 * for each number of threads.
+	 */
+	private void assertSameAsSequential(File file, int[] threadCounts) throws IOException {
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		new ParticleSimulator(file.getPath(), true).simulate(false, new PrintStream(expected));
+		final double[] sequential = finalState(expected);
+
+		for (int threads : threadCounts) {
+			final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+			final TimeWarpEngine engine = new ParticleSimulator(file.getPath(), true).simulateParallel(threads,
+					new PrintStream(actual));
+			assertEquals(threads, engine.getNumRegions());
+			assertTrue(engine.getEventsProcessed() >= engine.getEventsRolledBack());
+			assertArrayEquals(sequential, finalState(actual), 1e-6);
+		}
+	}
+
+	@Test
+	public void testSameAsSequential() throws IOException {
+		assertSameAsSequential(ParticleFiles.gridParticles(20, 20, 0, false), new int[] { 1, 2, 3, 5 });
+	}
+
+	@Test
+	public void testMixedRadii() throws IOException {
+		// A pair across two regions must be tested from both sides, since the
+		// collision time depends on which particle's radius is used.
+		assertSameAsSequential(ParticleFiles.gridParticles(20, 20, 2, true), new int[] { 2, 3, 5 });
+	}
+
+	@Test
+	public void testFewColumns() throws IOException {
+		// Every region needs two columns of cells, so a small box gets fewer regions.
+		final File file = ParticleFiles.gridParticles(3, 5, 1, false);
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		new ParticleSimulator(file.getPath(), true).simulate(false, new PrintStream(expected));
+
+		final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		final TimeWarpEngine engine = new ParticleSimulator(file.getPath(), true).simulateParallel(16,
+				new PrintStream(actual));
+		assertTrue(engine.getNumRegions() < 16);
+		assertArrayEquals(finalState(expected), finalState(actual), 1e-6);
+	}
+}
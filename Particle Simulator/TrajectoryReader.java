@@ -0,0 +1,234 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads back a file written by TrajectoryRecorder, one frame at a time. The
+ * frames are mapped into memory a window at a time, so a recording much larger
+ * than memory can be streamed through.
+ *
+ * Usage: java TrajectoryReader <file>, which prints every frame as its time
+ * followed by the x and y of every particle.
+ */
+class TrajectoryReader implements Closeable {
+	// The size of the window of frames mapped at a time, unless one frame is larger.
+	private static final int WINDOW_BYTES = 8 << 20;
+
+	private final FileChannel _channel;
+
+	// The fields of the header.
+	private final int _numParticles;
+	private final int _width;
+	private final double _interval;
+	private final long _firstFrame;
+	private final long _numFrames;
+
+	// The size of a frame, and the number of frames in a window.
+	private final int _frameBytes;
+	private final int _framesPerWindow;
+
+	// The time of every frame, or null if there is no index.
+	private final double[] _times;
+
+	// The mapped window, and the first frame in it.
+	private MappedByteBuffer _window;
+	private long _windowStart;
+
+	// The frame that nextFrame reads.
+	private long _nextFrame;
+
+	/**
+	 * Opens a recording.
+	 *
+	 * @param file the file written by TrajectoryRecorder.
+	 * @throws IOException if the file cannot be read or is not a recording.
+	 */
+	TrajectoryReader(File file) throws IOException {
+		_channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			final ByteBuffer header = ByteBuffer.allocate(TrajectoryRecorder.HEADER_BYTES)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining()) {
+				if (_channel.read(header, header.position()) < 0) {
+					throw new IOException(file + " is not a trajectory recording");
+				}
+			}
+			if (header.getInt(0) != TrajectoryRecorder.MAGIC) {
+				throw new IOException(file + " is not a trajectory recording");
+			}
+			if (header.getInt(4) != TrajectoryRecorder.VERSION) {
+				throw new IOException(file + " has version " + header.getInt(4) + " rather than "
+						+ TrajectoryRecorder.VERSION);
+			}
+			_numParticles = header.getInt(8);
+			_width = header.getInt(12);
+			_interval = header.getDouble(16);
+			_firstFrame = header.getLong(TrajectoryRecorder.FIRST_FRAME_OFFSET);
+			_frameBytes = 8 * _numParticles;
+			_framesPerWindow = Math.max(1, WINDOW_BYTES / Math.max(1, _frameBytes));
+
+			// A recording cut short may count a frame that did not reach the disk.
+			final long indexOffset = header.getLong(TrajectoryRecorder.INDEX_OFFSET);
+			final long end = indexOffset != 0 ? indexOffset : _channel.size();
+			_numFrames = Math.min(header.getLong(TrajectoryRecorder.FRAMES_OFFSET),
+					_frameBytes == 0 ? 0 : (end - TrajectoryRecorder.HEADER_BYTES) / _frameBytes);
+
+			if (indexOffset != 0) {
+				final ByteBuffer index = ByteBuffer.allocate(8 * (int) _numFrames).order(ByteOrder.LITTLE_ENDIAN);
+				while (index.hasRemaining()) {
+					if (_channel.read(index, indexOffset + index.position()) < 0) {
+						throw new EOFException(file + " ends in its index");
+					}
+				}
+				_times = new double[(int) _numFrames];
+				index.flip();
+				index.asDoubleBuffer().get(_times);
+			} else {
+				_times = null;
+			}
+		} catch (IOException | RuntimeException e) {
+			_channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the number of particles in each frame.
+	 *
+	 * @return the number of particles.
+	 */
+	public int getNumParticles() {
+		return _numParticles;
+	}
+
+	/**
+	 * Returns the width of the box.
+	 *
+	 * @return the width.
+	 */
+	public int getWidth() {
+		return _width;
+	}
+
+	/**
+	 * Returns the interval between frames.
+	 *
+	 * @return the interval, or 0 if a frame was taken after every collision.
+	 */
+	public double getInterval() {
+		return _interval;
+	}
+
+	/**
+	 * Returns the number of frames in the recording.
+	 *
+	 * @return the number of frames.
+	 */
+	public long getNumFrames() {
+		return _numFrames;
+	}
+
+	/**
+	 * Returns whether the recording has an index of frame times.
+	 *
+	 * @return true if it has an index.
+	 */
+	public boolean hasIndex() {
+		return _times != null;
+	}
+
+	/**
+	 * Returns the time of a frame, from the index or from the interval.
+	 *
+	 * @param frame the number of the frame.
+	 * @return the time of the frame.
+	 */
+	public double getTime(long frame) {
+		if (frame < 0 || frame >= _numFrames) {
+			throw new IndexOutOfBoundsException("Frame " + frame + " of " + _numFrames);
+		}
+		return _times != null ? _times[(int) frame] : (_firstFrame + frame) * _interval;
+	}
+
+	/**
+	 * Reads the next frame.
+	 *
+	 * @param positions an array of at least twice the number of particles, which
+	 *                  gets the x and y of each particle in turn.
+	 * @return the number of the frame read, or -1 after the last frame.
+	 */
+	public long nextFrame(float[] positions) {
+		if (_nextFrame >= _numFrames) {
+			return -1;
+		}
+		final long frame = _nextFrame;
+		readFrame(frame, positions);
+		return frame;
+	}
+
+	/**
+	 * Reads any frame; the next frame read by nextFrame is the one after it.
+	 *
+	 * @param frame     the number of the frame.
+	 * @param positions an array of at least twice the number of particles, which
+	 *                  gets the x and y of each particle in turn.
+	 */
+	public void readFrame(long frame, float[] positions) {
+		if (frame < 0 || frame >= _numFrames) {
+			throw new IndexOutOfBoundsException("Frame " + frame + " of " + _numFrames);
+		}
+		if (_window == null || frame < _windowStart || frame >= _windowStart + _framesPerWindow) {
+			mapWindow(frame);
+		}
+		final int start = (int) ((frame - _windowStart) * _frameBytes);
+		for (int i = 0; i < 2 * _numParticles; i++) {
+			positions[i] = _window.getFloat(start + 4 * i);
+		}
+		_nextFrame = frame + 1;
+	}
+
+	/**
+	 * Maps the window of frames starting at the given one.
+	 *
+	 * @param frame the first frame of the window.
+	 */
+	private void mapWindow(long frame) {
+		final long frames = Math.min(_framesPerWindow, _numFrames - frame);
+		try {
+			_window = _channel.map(FileChannel.MapMode.READ_ONLY, TrajectoryRecorder.HEADER_BYTES + frame * _frameBytes,
+					frames * _frameBytes);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		_window.order(ByteOrder.LITTLE_ENDIAN);
+		_windowStart = frame;
+	}
+
+	@Override
+	public void close() throws IOException {
+		_window = null;
+		_channel.close();
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: java TrajectoryReader <file>");
+			System.exit(1);
+		}
+		try (TrajectoryReader reader = new TrajectoryReader(new File(args[0]));
+				PrintStream out = new PrintStream(new BufferedOutputStream(System.out))) {
+			final float[] positions = new float[2 * reader.getNumParticles()];
+			for (long frame = reader.nextFrame(positions); frame != -1; frame = reader.nextFrame(positions)) {
+				out.print(reader.getTime(frame));
+				for (float position : positions) {
+					out.print(' ');
+					out.print(position);
+				}
+				out.println();
+			}
+		}
+	}
+}
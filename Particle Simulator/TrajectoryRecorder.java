@@ -0,0 +1,284 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Records the positions of the particles during a simulation into a binary file,
+ * either at a fixed interval of simulated time or after every collision, for
+ * analysis once the simulation is over. TrajectoryReader reads the file back.
+ *
+ * The file is little-endian. It starts with a header of HEADER_BYTES bytes:
+ *
+ * <pre>
+ *  0  int    MAGIC
+ *  4  int    VERSION
+ *  8  int    the number of particles, n
+ * 12  int    the width of the box
+ * 16  double the interval between frames, or 0 for a frame after every collision
+ * 24  long   the number of frames written so far
+ * 32  long   the offset of the index, or 0 if there is none
+ * 40  long   the number f of the first frame at the interval
+ * </pre>
+ *
+ * The frames follow, each n pairs of float32 x and y in particle id order, so
+ * frame k starts at HEADER_BYTES + 8 n k. The optional index, after the last
+ * frame, holds the time of each frame as a double. Without an index frame k is at
+ * time (f + k) times the interval, where f is 0 unless the simulation was resumed
+ * from a checkpoint, so a recording of every collision always has one.
+ *
+ * The frames are gathered in a buffer of a few megabytes, which is written to the
+ * file whenever it fills, and the count in the header is updated after every
+ * write, so a recording cut short by a crash can still be read up to the last
+ * frame written out. The file never holds more than has been written, so closing
+ * it only adds the index; no part of it is mapped, so nothing stops the file from
+ * being moved or deleted once it is closed. Writing a frame allocates nothing;
+ * only growing the index does.
+ */
+class TrajectoryRecorder implements Closeable {
+	// Marks a trajectory file ("PSTR"), and the version of its layout.
+	static final int MAGIC = 0x50535452;
+	static final int VERSION = 2;
+
+	// The size of the header, and the offsets of the fields that change.
+	static final int HEADER_BYTES = 64;
+	static final int FRAMES_OFFSET = 24;
+	static final int INDEX_OFFSET = 32;
+	static final int FIRST_FRAME_OFFSET = 40;
+
+	// The size of the buffer of frames, unless one frame is larger.
+	private static final int BUFFER_BYTES = 8 << 20;
+
+	// Initial number of frame times the index holds.
+	private static final int INITIAL_INDEX_CAPACITY = 1024;
+
+	private final FileChannel _channel;
+
+	// Holds a field of the header while it is written.
+	private final ByteBuffer _field = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+
+	// The number of particles, and the size of a frame.
+	private final int _numParticles;
+	private final int _frameBytes;
+
+	// The interval between frames, or 0 for a frame after every collision, and the
+	// time of the next frame at an interval.
+	private final double _interval;
+	private long _nextFrame;
+
+	// The number of the first frame at the interval.
+	private long _firstFrame;
+
+	// The frames not yet written to the file.
+	private final ByteBuffer _buffer;
+
+	// The number of frames taken, and the number of them written to the file.
+	private long _numFrames;
+	private long _numWritten;
+
+	// The time of every frame, or null if there is no index.
+	private double[] _times;
+
+	/**
+	 * Creates a recording, replacing the file if there is one.
+	 *
+	 * @param file         the file to write.
+	 * @param numParticles the number of particles in each frame.
+	 * @param width        the width of the box, kept for the reader.
+	 * @param interval     the simulated time between frames, or 0 for a frame after
+	 *                     every collision.
+	 * @param index        true to write the time of every frame after the frames;
+	 *                     it must be true when there is no interval.
+	 */
+	TrajectoryRecorder(File file, int numParticles, int width, double interval, boolean index) throws IOException {
+		if (!(interval >= 0) || Double.isInfinite(interval)) {
+			throw new IllegalArgumentException("The frame interval must be positive, or 0: " + interval);
+		}
+		if (interval == 0 && !index) {
+			throw new IllegalArgumentException("A frame after every collision needs an index of frame times");
+		}
+		_numParticles = numParticles;
+		_frameBytes = 8 * numParticles;
+		_interval = interval;
+		final int framesPerBuffer = Math.max(1, BUFFER_BYTES / Math.max(1, _frameBytes));
+		_buffer = ByteBuffer.allocateDirect(framesPerBuffer * _frameBytes).order(ByteOrder.LITTLE_ENDIAN);
+		_times = index ? new double[INITIAL_INDEX_CAPACITY] : null;
+
+		_channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(0, MAGIC);
+		header.putInt(4, VERSION);
+		header.putInt(8, numParticles);
+		header.putInt(12, width);
+		header.putDouble(16, interval);
+		header.putLong(FRAMES_OFFSET, 0);
+		header.putLong(INDEX_OFFSET, 0);
+		header.putLong(FIRST_FRAME_OFFSET, 0);
+		write(header, 0);
+	}
+
+	/**
+	 * Returns the number of frames written.
+	 *
+	 * @return the number of frames.
+	 */
+	long getNumFrames() {
+		return _numFrames;
+	}
+
+	/**
+	 * Takes the frames due up to the given time. The simulation calls this before
+	 * any velocity changes, while every particle still moves in a straight line
+	 * from its last position. At an interval, this takes a frame at every multiple
+	 * of the interval up to now; after every collision, it takes none.
+	 *
+	 * @param store the particles.
+	 * @param now   the time of the change.
+	 */
+	void advance(ParticleStore store, double now) {
+		if (_interval > 0) {
+			for (double time = _nextFrame * _interval; time <= now; time = ++_nextFrame * _interval) {
+				writeFrame(store, time);
+			}
+		}
+	}
+
+	/**
+	 * Takes a frame after a collision, if frames are taken after every collision.
+	 *
+	 * @param store the particles.
+	 * @param now   the time of the collision.
+	 */
+	void collided(ParticleStore store, double now) {
+		if (_interval == 0) {
+			writeFrame(store, now);
+		}
+	}
+
+	/**
+	 * Takes the frame at the start of a simulation: always after every collision,
+	 * and at an interval if the start is a multiple of it.
+	 *
+	 * @param store the particles.
+	 * @param now   the time the simulation starts from.
+	 */
+	void start(ParticleStore store, double now) {
+		if (_interval > 0) {
+			_nextFrame = (long) Math.ceil(now / _interval);
+			_firstFrame = _nextFrame;
+			advance(store, now);
+		} else {
+			writeFrame(store, now);
+		}
+	}
+
+	/**
+	 * Takes the frames at the end of a simulation: those due up to its end at an
+	 * interval, or one frame of the final state after every collision.
+	 *
+	 * @param store the particles.
+	 * @param now   the time the simulation ends at.
+	 */
+	void finish(ParticleStore store, double now) {
+		if (_interval > 0) {
+			advance(store, now);
+		} else {
+			writeFrame(store, now);
+		}
+	}
+
+	/**
+	 * Writes the positions of every particle at a time into the next frame.
+	 *
+	 * @param store the particles.
+	 * @param time  the time of the frame.
+	 */
+	private void writeFrame(ParticleStore store, double time) {
+		if (!_buffer.hasRemaining()) {
+			try {
+				flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		final ByteBuffer buffer = _buffer;
+		int position = buffer.position();
+		for (int i = 0; i < _numParticles; i++) {
+			buffer.putFloat(position, (float) store.getX(i, time));
+			buffer.putFloat(position + 4, (float) store.getY(i, time));
+			position += 8;
+		}
+		buffer.position(position);
+
+		if (_times != null) {
+			if (_numFrames == _times.length) {
+				_times = Arrays.copyOf(_times, _times.length * 2);
+			}
+			_times[(int) _numFrames] = time;
+		}
+		_numFrames++;
+	}
+
+	/**
+	 * Writes the buffered frames after those in the file, then the number of the
+	 * first of them all and their count into the header.
+	 */
+	private void flush() throws IOException {
+		_buffer.flip();
+		write(_buffer, HEADER_BYTES + _numWritten * _frameBytes);
+		_buffer.clear();
+		_numWritten = _numFrames;
+		writeField(FIRST_FRAME_OFFSET, _firstFrame);
+		writeField(FRAMES_OFFSET, _numWritten);
+	}
+
+	/**
+	 * Writes a field of the header.
+	 *
+	 * @param offset the offset of the field.
+	 * @param value  its new value.
+	 */
+	private void writeField(int offset, long value) throws IOException {
+		_field.clear();
+		_field.putLong(0, value);
+		write(_field, offset);
+	}
+
+	/**
+	 * Writes all of a buffer into the file.
+	 *
+	 * @param buffer   the bytes to write, from its position to its limit.
+	 * @param position the offset in the file to write them at.
+	 */
+	private void write(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += _channel.write(buffer, position);
+		}
+	}
+
+	/**
+	 * Writes the frames still buffered and the index, and closes the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!_channel.isOpen()) {
+			return;
+		}
+		try {
+			flush();
+			if (_times != null) {
+				final long end = HEADER_BYTES + _numFrames * _frameBytes;
+				final ByteBuffer index = ByteBuffer.allocate(8 * (int) _numFrames).order(ByteOrder.LITTLE_ENDIAN);
+				index.asDoubleBuffer().put(_times, 0, (int) _numFrames);
+				write(index, end);
+				writeField(INDEX_OFFSET, end);
+			}
+			_channel.force(false);
+		} finally {
+			_channel.close();
+		}
+	}
+}
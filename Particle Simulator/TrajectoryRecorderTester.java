@@ -0,0 +1,145 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.io.*;
+
+public class TrajectoryRecorderTester {
+	/**
+	 * Returns a temporary file name for a recording.
+	 */
+	private File recordingFile() throws IOException {
+		final File file = File.createTempFile("simulation", ".trajectory");
+		file.deleteOnExit();
+		return file;
+	}
+
+	/**
+	 * Runs a simulation, and returns the positions it prints for the particles as
+	 * floats, x and y of each particle in turn.
+	 */
+	private float[] simulate(ParticleSimulator simulator) {
+		final String[] lines = ParticleFiles.simulate(simulator, false).split("\n");
+		final float[] positions = new float[2 * (lines.length - 2)];
+		for (int i = 2; i < lines.length; i++) {
+			final String[] tokens = lines[i].trim().split("\\s+");
+			positions[2 * (i - 2)] = (float) Double.parseDouble(tokens[1]);
+			positions[2 * (i - 2) + 1] = (float) Double.parseDouble(tokens[2]);
+		}
+		return positions;
+	}
+
+	@Test
+	public void testInterval() throws IOException {
+		final File file = ParticleFiles.randomParticles(300, 100, 0);
+		for (boolean index : new boolean[] { false, true }) {
+			// Frames every 0.01 fill the buffer of frames more than once.
+			final File recording = recordingFile();
+			final ParticleSimulator simulator = new ParticleSimulator(file.getPath(), true);
+			final float[] last;
+			try (TrajectoryRecorder recorder = new TrajectoryRecorder(recording, 300, 100, 0.01, index)) {
+				simulator.setRecorder(recorder);
+				last = simulate(simulator);
+				assertEquals(10001, recorder.getNumFrames());
+			}
+
+			// The frame at 37 is where a simulation that stops at 37 leaves the particles.
+			final File stopped = ParticleFiles.randomParticles(300, 37, 0);
+			final float[] middle = simulate(new ParticleSimulator(stopped.getPath(), true));
+
+			try (TrajectoryReader reader = new TrajectoryReader(recording)) {
+				assertEquals(300, reader.getNumParticles());
+				assertEquals(100, reader.getWidth());
+				assertEquals(10001, reader.getNumFrames());
+				assertEquals(index, reader.hasIndex());
+				final float[] positions = new float[600];
+				reader.readFrame(3700, positions);
+				assertEquals(37, reader.getTime(3700), 1e-9);
+				assertArrayEquals(middle, positions, 1e-3f);
+				reader.readFrame(10000, positions);
+				assertArrayEquals(last, positions, 1e-3f);
+
+				// Streaming goes on after the frame read last, then stops.
+				reader.readFrame(9998, positions);
+				assertEquals(9999, reader.nextFrame(positions));
+				assertEquals(10000, reader.nextFrame(positions));
+				assertEquals(-1, reader.nextFrame(positions));
+			}
+		}
+	}
+
+	@Test
+	public void testEveryCollision() throws IOException {
+		final File file = ParticleFiles.randomParticles(100, 50, 1);
+		final File recording = recordingFile();
+		final ParticleSimulator simulator = new ParticleSimulator(file.getPath(), false);
+		final float[] last;
+		try (TrajectoryRecorder recorder = new TrajectoryRecorder(recording, 100, 100, 0, true)) {
+			simulator.setRecorder(recorder);
+			last = simulate(simulator);
+		}
+
+		// A frame at the start, one after every collision, and one at the end.
+		try (TrajectoryReader reader = new TrajectoryReader(recording)) {
+			assertEquals(simulator.getCollisions() + 2, reader.getNumFrames());
+			assertEquals(0, reader.getInterval());
+			final float[] positions = new float[200];
+			double time = 0;
+			long frames = 0;
+			for (long frame = reader.nextFrame(positions); frame != -1; frame = reader.nextFrame(positions)) {
+				assertTrue(reader.getTime(frame) >= time);
+				time = reader.getTime(frame);
+				frames++;
+			}
+			assertEquals(reader.getNumFrames(), frames);
+			assertEquals(50, time);
+			assertArrayEquals(last, positions, 1e-3f);
+		}
+	}
+
+	@Test
+	public void testResumed() throws IOException {
+		final File file = ParticleFiles.randomParticles(100, 20, 4);
+		final File whole = recordingFile();
+		final ParticleSimulator plain = new ParticleSimulator(file.getPath(), true);
+		try (TrajectoryRecorder recorder = new TrajectoryRecorder(whole, 100, 100, 0.5, false)) {
+			plain.setRecorder(recorder);
+			simulate(plain);
+		}
+
+		// Frames from a checkpoint part of the way through, with times from the interval.
+		final File checkpoint = File.createTempFile("simulation", ".checkpoint");
+		checkpoint.delete();
+		checkpoint.deleteOnExit();
+		final ParticleSimulator checkpointed = new ParticleSimulator(file.getPath(), true);
+		checkpointed.setCheckpoints(checkpoint, plain.getEventsProcessed() * 2 / 3, 0);
+		simulate(checkpointed);
+		final File rest = recordingFile();
+		final ParticleSimulator resumed = ParticleSimulator.resume(checkpoint);
+		try (TrajectoryRecorder recorder = new TrajectoryRecorder(rest, 100, 100, 0.5, false)) {
+			resumed.setRecorder(recorder);
+			simulate(resumed);
+		}
+
+		try (TrajectoryReader expected = new TrajectoryReader(whole);
+				TrajectoryReader actual = new TrajectoryReader(rest)) {
+			assertEquals(41, expected.getNumFrames());
+			final long skipped = expected.getNumFrames() - actual.getNumFrames();
+			assertTrue(skipped > 0 && skipped < 41);
+			final float[] positions = new float[200];
+			final float[] expectedPositions = new float[200];
+			for (long frame = 0; frame < actual.getNumFrames(); frame++) {
+				assertEquals(expected.getTime(frame + skipped), actual.getTime(frame));
+				actual.readFrame(frame, positions);
+				expected.readFrame(frame + skipped, expectedPositions);
+				assertArrayEquals(expectedPositions, positions);
+			}
+		}
+	}
+
+	@Test
+	public void testBadArguments() throws IOException {
+		assertThrows(IllegalArgumentException.class, () -> new TrajectoryRecorder(recordingFile(), 10, 100, 0, false));
+		assertThrows(IllegalArgumentException.class, () -> new TrajectoryRecorder(recordingFile(), 10, 100, -1, true));
+		final File file = ParticleFiles.randomParticles(10, 5, 2);
+		assertThrows(IOException.class, () -> new TrajectoryReader(file));
+	}
+}
@@ -0,0 +1,239 @@
+import java.util.Arrays;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A CollisionScan that computes collision times several pairs of particles at a
+ * time, one pair in each lane of a vector, with the Vector API of the
+ * jdk.incubator.vector module. Compile and run with
+ * --add-modules jdk.incubator.vector; CollisionScan.create falls back to the
+ * scalar scan when the module is missing.
+ *
+ * A particle only has a few neighbours in the cells around it, often fewer than a
+ * vector holds, so findAll gathers the pairs of a whole block of particles into
+ * one list and computes their times in one pass, and then takes the earliest for
+ * each particle in the order find would test them. earliestCollision, for one
+ * particle, uses the same pass over its own pairs when they fill a vector, and
+ * the scalar code when they do not.
+ *
+ * The lanes do the same operations in the same order as
+ * ParticleStore.getCollisionTime, including the choice between the two stable
+ * forms of the quadratic formula and the SMALL threshold, without fused
+ * multiply-adds, so every time is the same to the last bit and the simulation
+ * does not change. The pairs left over after the last full vector are computed
+ * by the scalar code.
+ *
+ * The fields of both particles of every pair are copied into contiguous arrays
+ * first and loaded from there, rather than gathered through the ids: gathers are
+ * slow where the hardware has none, and with 512-bit vectors the JDK 17 compiler
+ * can emit gathers that crash the JVM.
+ */
+final class VectorCollisionScan extends CollisionScan {
+	// The widest vector of doubles the processor has.
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	// The threshold below which a root is taken to be the current contact; see
+	// ParticleStore.getCollisionTime.
+	private static final double SMALL = 1e-6;
+
+	// The first particle of each pair, its position at the time of the scan, its
+	// velocity, and four times the square of its radius.
+	private int[] _owners = new int[0];
+	private double[] _x1 = new double[0];
+	private double[] _y1 = new double[0];
+	private double[] _vx1 = new double[0];
+	private double[] _vy1 = new double[0];
+	private double[] _fourRR = new double[0];
+
+	// The position, the velocity and the time of the position of the second
+	// particle of each pair.
+	private double[] _x2 = new double[0];
+	private double[] _y2 = new double[0];
+	private double[] _vx2 = new double[0];
+	private double[] _vy2 = new double[0];
+	private double[] _time2 = new double[0];
+
+	// Where the pairs of each particle of a block start in _others, and where the
+	// pairs of the last end.
+	private int[] _starts = new int[0];
+
+	@Override
+	boolean isVectorized() {
+		return true;
+	}
+
+	@Override
+	void findAll(ParticleStore store, CellList cells, int width, int from, int to, double now, double[] times,
+			int[] types, int[] others) {
+		if (_starts.length < to - from + 1) {
+			_starts = new int[to - from + 1];
+		}
+		int count = 0;
+		for (int p1 = from; p1 < to; p1++) {
+			findBoundary(store, cells, width, p1, now);
+			times[p1] = getTime();
+			types[p1] = getType();
+			others[p1] = getOther();
+			_starts[p1 - from] = count;
+			final int start = count;
+			count = gather(cells, p1, count);
+			copyFirst(store, p1, start, count, now);
+		}
+		_starts[to - from] = count;
+		computeTimes(store, count, now);
+
+		// The earliest collision of each particle, if it comes before its crossing and
+		// walls, and the first of the earliest on a tie.
+		final int[] candidates = _others;
+		final double[] collisionTimes = _times;
+		for (int p1 = from; p1 < to; p1++) {
+			double bestTime = times[p1];
+			int best = -1;
+			for (int k = _starts[p1 - from]; k < _starts[p1 - from + 1]; k++) {
+				if (collisionTimes[k] < bestTime) {
+					bestTime = collisionTimes[k];
+					best = k;
+				}
+			}
+			if (best != -1) {
+				times[p1] = bestTime;
+				types[p1] = EventPool.COLLISION;
+				others[p1] = candidates[best];
+			}
+		}
+	}
+
+	@Override
+	int earliestCollision(ParticleStore store, int p1, int count, double now, double limit) {
+		if (count < SPECIES.length()) {
+			return super.earliestCollision(store, p1, count, now, limit);
+		}
+		copyFirst(store, p1, 0, count, now);
+		computeTimes(store, count, now);
+
+		// The first of the earliest, as the scalar scan finds it.
+		final int[] others = _others;
+		final double[] times = _times;
+		double bestTime = limit;
+		int best = -1;
+		for (int k = 0; k < count; k++) {
+			if (times[k] < bestTime && others[k] != p1) {
+				bestTime = times[k];
+				best = k;
+			}
+		}
+		_collisionTime = bestTime;
+		return best;
+	}
+
+	/**
+	 * Makes a particle the first of a range of the pairs, whose second particles are
+	 * in _others, growing the arrays of the pairs as needed.
+	 *
+	 * @param store the particles.
+	 * @param p1    the particle.
+	 * @param start the first pair.
+	 * @param end   the pair after the last.
+	 * @param now   the time of the scan.
+	 */
+	private void copyFirst(ParticleStore store, int p1, int start, int end, double now) {
+		if (_owners.length < end) {
+			// Keeping the pairs of the particles before this one in the block.
+			final int capacity = _others.length;
+			_owners = Arrays.copyOf(_owners, capacity);
+			_x1 = Arrays.copyOf(_x1, capacity);
+			_y1 = Arrays.copyOf(_y1, capacity);
+			_vx1 = Arrays.copyOf(_vx1, capacity);
+			_vy1 = Arrays.copyOf(_vy1, capacity);
+			_fourRR = Arrays.copyOf(_fourRR, capacity);
+			_x2 = new double[capacity];
+			_y2 = new double[capacity];
+			_vx2 = new double[capacity];
+			_vy2 = new double[capacity];
+			_time2 = new double[capacity];
+		}
+		final double x1 = store.getX(p1, now);
+		final double y1 = store.getY(p1, now);
+		final double vx1 = store._vx[p1];
+		final double vy1 = store._vy[p1];
+		final double r = store._radius[p1];
+		final double fourRR = 4 * r * r;
+		for (int k = start; k < end; k++) {
+			_owners[k] = p1;
+			_x1[k] = x1;
+			_y1[k] = y1;
+			_vx1[k] = vx1;
+			_vy1[k] = vy1;
+			_fourRR[k] = fourRR;
+		}
+	}
+
+	/**
+	 * Computes the collision time of every pair into _times, as
+	 * ParticleStore.getCollisionTime does for the first particle against the second.
+	 *
+	 * @param store the particles.
+	 * @param count the number of pairs.
+	 * @param now   the time of the scan.
+	 */
+	private void computeTimes(ParticleStore store, int count, double now) {
+		final int[] others = _others;
+		final double[] times = _times;
+		for (int k = 0; k < count; k++) {
+			final int p2 = others[k];
+			_x2[k] = store._x[p2];
+			_y2[k] = store._y[p2];
+			_vx2[k] = store._vx[p2];
+			_vy2[k] = store._vy[p2];
+			_time2[k] = store._time[p2];
+		}
+
+		final DoubleVector nowVector = DoubleVector.broadcast(SPECIES, now);
+		final DoubleVector infinity = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+		final int lanes = SPECIES.length();
+		int k = 0;
+		for (; k <= count - lanes; k += lanes) {
+			final DoubleVector x1 = DoubleVector.fromArray(SPECIES, _x1, k);
+			final DoubleVector y1 = DoubleVector.fromArray(SPECIES, _y1, k);
+			final DoubleVector vx1 = DoubleVector.fromArray(SPECIES, _vx1, k);
+			final DoubleVector vy1 = DoubleVector.fromArray(SPECIES, _vy1, k);
+
+			// Load the others, moved to now as getX and getY do.
+			final DoubleVector elapsed = nowVector.sub(DoubleVector.fromArray(SPECIES, _time2, k));
+			final DoubleVector vx2 = DoubleVector.fromArray(SPECIES, _vx2, k);
+			final DoubleVector vy2 = DoubleVector.fromArray(SPECIES, _vy2, k);
+			final DoubleVector x2 = DoubleVector.fromArray(SPECIES, _x2, k).add(elapsed.mul(vx2));
+			final DoubleVector y2 = DoubleVector.fromArray(SPECIES, _y2, k).add(elapsed.mul(vy2));
+
+			final DoubleVector a = vx1.sub(vx2);
+			final DoubleVector b = x1.sub(x2);
+			final DoubleVector c = vy1.sub(vy2);
+			final DoubleVector d = y1.sub(y2);
+
+			final DoubleVector A = a.mul(a).add(c.mul(c));
+			final DoubleVector B = a.mul(b).add(c.mul(d)).mul(2);
+			final DoubleVector C = b.mul(b).add(d.mul(d)).sub(DoubleVector.fromArray(SPECIES, _fourRR, k));
+			final DoubleVector root = B.mul(B).sub(A.mul(4).mul(C)).lanewise(VectorOperators.SQRT);
+			final DoubleVector twoA = A.mul(2);
+			final DoubleVector twoC = C.mul(2);
+			final DoubleVector minusB = B.neg();
+
+			// Both forms, chosen lane by lane by the sign of B.
+			final VectorMask<Double> positive = B.compare(VectorOperators.GE, 0);
+			final DoubleVector minusBMinusRoot = minusB.sub(root);
+			final DoubleVector minusBPlusRoot = minusB.add(root);
+			final DoubleVector t1 = twoC.div(minusBPlusRoot).blend(minusBMinusRoot.div(twoA), positive);
+			final DoubleVector t2 = minusBPlusRoot.div(twoA).blend(twoC.div(minusBMinusRoot), positive);
+
+			// The earliest root after the current contact, or infinity.
+			final VectorMask<Double> after1 = t1.compare(VectorOperators.GT, SMALL);
+			final VectorMask<Double> after2 = t2.compare(VectorOperators.GT, SMALL);
+			infinity.blend(t2, after2).blend(t1, after1).blend(t1.min(t2), after1.and(after2)).intoArray(times, k);
+		}
+		for (; k < count; k++) {
+			times[k] = store.getCollisionTime(_owners[k], others[k], now);
+		}
+	}
+}
@@ -0,0 +1,166 @@
+import java.util.*;
+
+/**
+ * The actor-actor projection of an IMDB graph: two actors are joined by an edge if
+ * they share at least one movie. Each edge keeps one such movie as its witness, so
+ * a path through the projection can be expanded back into the (actor, movie,
+ * actor, ...) form. Searches on the projection take one hop per degree of
+ * separation and never touch movie nodes, at the cost of building the projection
+ * once; a movie with a cast of k actors contributes up to k(k - 1) directed edges.
+ *
+ * Actor indexes are the same as in the IndexedGraph the projection is built from,
+ * and movie witnesses are IndexedGraph indexes too.
+ */
+public class ActorProjection {
+	// The graph the projection was built from.
+	private final IndexedGraph _graph;
+
+	// The neighbors of actor a are _neighbors[_offsets[a]] .. _neighbors[_offsets[a + 1] - 1],
+	// and _witnesses holds a movie they share at the same positions.
+	private final int[] _offsets;
+	private final int[] _neighbors;
+	private final int[] _witnesses;
+
+	// How long building took and the largest cast seen.
+	private final long _buildNanos;
+	private final int _largestCast;
+
+	/**
+	 * Builds the projection of the given graph.
+	 * @param graph the bipartite actor/movie graph.
+	 */
+	public ActorProjection (IndexedGraph graph) {
+		final long start = System.nanoTime();
+		_graph = graph;
+		final int numActors = graph.getNumActors();
+		final int[] offsets = graph.getOffsets();
+		final int[] neighbors = graph.getNeighbors();
+
+		int largestCast = 0;
+		for (int movie = numActors; movie < graph.size(); movie++) {
+			largestCast = Math.max(largestCast, graph.getDegree(movie));
+		}
+		_largestCast = largestCast;
+
+		// The last actor each co-star was counted for, so that an actor reached
+		// through several shared movies only gets one edge.
+		final int[] lastSeen = new int[numActors];
+		Arrays.fill(lastSeen, -1);
+
+		// First count the distinct co-stars of every actor.
+		_offsets = new int[numActors + 1];
+		long numEdges = 0;
+		for (int actor = 0; actor < numActors; actor++) {
+			for (int i = offsets[actor]; i < offsets[actor + 1]; i++) {
+				final int movie = neighbors[i];
+				for (int j = offsets[movie]; j < offsets[movie + 1]; j++) {
+					final int coStar = neighbors[j];
+					if (coStar != actor && lastSeen[coStar] != actor) {
+						lastSeen[coStar] = actor;
+						numEdges++;
+					}
+				}
+			}
+			if (numEdges > Integer.MAX_VALUE - 8) {
+				throw new IllegalStateException("The projection has more than " + Integer.MAX_VALUE + " edges");
+			}
+			_offsets[actor + 1] = (int) numEdges;
+		}
+
+		// Then fill them in, with the first shared movie as the witness.
+		_neighbors = new int[(int) numEdges];
+		_witnesses = new int[(int) numEdges];
+		Arrays.fill(lastSeen, -1);
+		for (int actor = 0; actor < numActors; actor++) {
+			int position = _offsets[actor];
+			for (int i = offsets[actor]; i < offsets[actor + 1]; i++) {
+				final int movie = neighbors[i];
+				for (int j = offsets[movie]; j < offsets[movie + 1]; j++) {
+					final int coStar = neighbors[j];
+					if (coStar != actor && lastSeen[coStar] != actor) {
+						lastSeen[coStar] = actor;
+						_neighbors[position] = coStar;
+						_witnesses[position] = movie;
+						position++;
+					}
+				}
+			}
+		}
+		_buildNanos = System.nanoTime() - start;
+	}
+
+	/**
+	 * Returns the graph the projection was built from.
+	 * @return the bipartite graph.
+	 */
+	public IndexedGraph getGraph () {
+		return _graph;
+	}
+
+	/**
+	 * Returns the offsets array; the co-stars of actor a are at positions
+	 * getOffsets()[a] (inclusive) to getOffsets()[a + 1] (exclusive). The returned
+	 * array is shared and must not be modified.
+	 * @return the offsets array.
+	 */
+	public int[] getOffsets () {
+		return _offsets;
+	}
+
+	/**
+	 * Returns the co-stars of all the actors, back to back. The returned array is
+	 * shared and must not be modified.
+	 * @return the neighbors array.
+	 */
+	public int[] getNeighbors () {
+		return _neighbors;
+	}
+
+	/**
+	 * Returns the witness movie of every edge, at the same positions as getNeighbors().
+	 * The returned array is shared and must not be modified.
+	 * @return the witnesses array.
+	 */
+	public int[] getWitnesses () {
+		return _witnesses;
+	}
+
+	/**
+	 * Returns the number of directed actor-actor edges (twice the number of co-star pairs).
+	 * @return the number of edges.
+	 */
+	public long getNumEdges () {
+		return _neighbors.length;
+	}
+
+	/**
+	 * Returns how many directed actor-actor edges there are per directed actor-movie
+	 * edge of the bipartite graph.
+	 * @return the edge blow-up factor.
+	 */
+	public double getBlowUp () {
+		return _graph.getNumEdges() == 0 ? 0 : (double) getNumEdges() / (2 * _graph.getNumEdges());
+	}
+
+	/**
+	 * Returns the size of the largest cast in the bipartite graph.
+	 * @return the largest number of actors in one movie.
+	 */
+	public int getLargestCast () {
+		return _largestCast;
+	}
+
+	/**
+	 * Returns how long building the projection took.
+	 * @return the build time in nanoseconds.
+	 */
+	public long getBuildNanos () {
+		return _buildNanos;
+	}
+
+	public String toString () {
+		return String.format("actors: %d, bipartite edges: %d, projected edges: %d (%.2fx), largest cast: %d, "
+				+ "built in %d ms", _graph.getNumActors(), 2 * _graph.getNumEdges(), getNumEdges(), getBlowUp(),
+				_largestCast, _buildNanos / 1000000);
+	}
+}
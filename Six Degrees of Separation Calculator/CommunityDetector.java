@@ -0,0 +1,322 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Splits an IMDB graph into communities using label propagation. Every node starts
+ * in its own community and repeatedly adopts the label that is most common among
+ * its neighbors. Nodes are updated asynchronously and in parallel on a ForkJoinPool,
+ * reading whatever labels their neighbors currently have, until an iteration changes
+ * no labels or the maximum number of iterations is reached.
+ */
+public class CommunityDetector {
+	public static final int DEFAULT_MAX_ITERATIONS = 100;
+
+	// The number of nodes each leaf task updates before splitting stops.
+	private static final int NODES_PER_TASK = 1024;
+
+	// The seed for the visiting order. It fixes only the order in which the nodes are
+	// handed to the tasks: the updates run in parallel and read labels while other
+	// tasks change them, so the communities found can differ from run to run.
+	private static final long SEED = 2103;
+
+	// The graph to split into communities.
+	private final IndexedGraph _graph;
+
+	// The pool that runs the updates.
+	private final ForkJoinPool _pool;
+
+	// The maximum number of passes over the nodes.
+	private final int _maxIterations;
+
+	// The current community label of each node.
+	private final int[] _labels;
+
+	// The order in which the nodes are visited; reshuffled every iteration.
+	private final int[] _order;
+
+	// The largest degree in the graph, used to size the scratch arrays.
+	private final int _maxDegree;
+
+	// The number of iterations the last run took.
+	private int _iterations;
+
+	/**
+	 * A task that updates the labels of the nodes in a range of _order and returns
+	 * how many of them changed.
+	 */
+	private class UpdateTask extends RecursiveTask<Integer> {
+		private static final long serialVersionUID = 1L;
+
+		private final int _from, _to;
+
+		UpdateTask (int from, int to) {
+			_from = from;
+			_to = to;
+		}
+
+		@Override
+		protected Integer compute () {
+			// Split the range in half until it is small enough.
+			if (_to - _from > NODES_PER_TASK) {
+				final int middle = (_from + _to) >>> 1;
+				final UpdateTask left = new UpdateTask(_from, middle);
+				left.fork();
+				final int rightChanges = new UpdateTask(middle, _to).compute();
+				return left.join() + rightChanges;
+			}
+
+			// Update every node in the range.
+			final int[] scratch = new int[_maxDegree];
+			int changes = 0;
+			for (int i = _from; i < _to; i++) {
+				if (updateLabel(_order[i], scratch)) {
+					changes++;
+				}
+			}
+			return changes;
+		}
+	}
+
+	/**
+	 * Creates a new detector for the given graph.
+	 * @param graph the graph to split into communities.
+	 * @param pool the pool to run the updates on.
+	 * @param maxIterations the maximum number of passes over the nodes.
+	 */
+	public CommunityDetector (IndexedGraph graph, ForkJoinPool pool, int maxIterations) {
+		_graph = graph;
+		_pool = pool;
+		_maxIterations = maxIterations;
+		_labels = new int[graph.size()];
+		_order = new int[graph.size()];
+
+		int maxDegree = 0;
+		for (int i = 0; i < graph.size(); i++) {
+			maxDegree = Math.max(maxDegree, graph.getDegree(i));
+		}
+		_maxDegree = maxDegree;
+	}
+
+	/**
+	 * Runs label propagation from scratch.
+	 * @return the number of iterations it took.
+	 */
+	public int run () {
+		// Every node starts in its own community.
+		for (int i = 0; i < _labels.length; i++) {
+			_labels[i] = i;
+			_order[i] = i;
+		}
+
+		final Random random = new Random(SEED);
+		for (_iterations = 1; _iterations <= _maxIterations; _iterations++) {
+			shuffle(_order, random);
+
+			// Stop once a full pass leaves every label alone.
+			final int changes = _pool.invoke(new UpdateTask(0, _order.length));
+			if (changes == 0) {
+				break;
+			}
+		}
+		_iterations = Math.min(_iterations, _maxIterations);
+		return _iterations;
+	}
+
+	/**
+	 * Moves a node to the label that is most common among its neighbors. On a tie
+	 * the node keeps its current label if that is one of the most common ones, and
+	 * otherwise takes the smallest of them.
+	 * @param node the node to update.
+	 * @param scratch an array at least as long as the node's degree.
+	 * @return true if the label of the node changed.
+	 */
+	private boolean updateLabel (int node, int[] scratch) {
+		final int[] offsets = _graph.getOffsets();
+		final int[] neighbors = _graph.getNeighbors();
+		final int degree = offsets[node + 1] - offsets[node];
+		if (degree == 0) {
+			return false;
+		}
+
+		// Gather and sort the neighbor labels so equal labels sit next to each other.
+		for (int i = 0; i < degree; i++) {
+			scratch[i] = _labels[neighbors[offsets[node] + i]];
+		}
+		Arrays.sort(scratch, 0, degree);
+
+		// Find the longest run of equal labels.
+		final int current = _labels[node];
+		int bestLabel = current;
+		int bestCount = 0;
+		boolean currentIsBest = false;
+		int runStart = 0;
+		for (int i = 1; i <= degree; i++) {
+			if (i == degree || scratch[i] != scratch[runStart]) {
+				final int count = i - runStart;
+				if (count > bestCount) {
+					bestCount = count;
+					bestLabel = scratch[runStart];
+					currentIsBest = bestLabel == current;
+				} else if (count == bestCount && scratch[runStart] == current) {
+					currentIsBest = true;
+				}
+				runStart = i;
+			}
+		}
+
+		if (currentIsBest || bestLabel == current) {
+			return false;
+		}
+		_labels[node] = bestLabel;
+		return true;
+	}
+
+	/**
+	 * Shuffles the given array in place.
+	 * @param array the array to shuffle.
+	 * @param random the source of randomness.
+	 */
+	private static void shuffle (int[] array, Random random) {
+		for (int i = array.length - 1; i > 0; i--) {
+			final int j = random.nextInt(i + 1);
+			final int temp = array[i];
+			array[i] = array[j];
+			array[j] = temp;
+		}
+	}
+
+	/**
+	 * Returns the number of iterations the last run took.
+	 * @return the number of iterations.
+	 */
+	public int getIterations () {
+		return _iterations;
+	}
+
+	/**
+	 * Returns the community label of the node with the given index.
+	 * @param index the index of the node in the IndexedGraph.
+	 * @return the community label of the node.
+	 */
+	public int getCommunity (int index) {
+		return _labels[index];
+	}
+
+	/**
+	 * Returns the sizes of all the communities, largest first.
+	 * @return the community sizes.
+	 */
+	public int[] getCommunitySizes () {
+		final int[] counts = new int[_labels.length];
+		int numCommunities = 0;
+		for (int label : _labels) {
+			if (counts[label]++ == 0) {
+				numCommunities++;
+			}
+		}
+
+		final int[] sizes = new int[numCommunities];
+		int idx = 0;
+		for (int count : counts) {
+			if (count > 0) {
+				sizes[idx++] = count;
+			}
+		}
+		Arrays.sort(sizes);
+
+		// Reverse so the largest community comes first.
+		for (int i = 0; i < sizes.length / 2; i++) {
+			final int temp = sizes[i];
+			sizes[i] = sizes[sizes.length - 1 - i];
+			sizes[sizes.length - 1 - i] = temp;
+		}
+		return sizes;
+	}
+
+	/**
+	 * Computes the modularity of the current split: the fraction of edges that fall
+	 * inside communities minus the fraction expected if edges were placed at random.
+	 * @return the modularity, or 0 if the graph has no edges.
+	 */
+	public double getModularity () {
+		final long numEdges = _graph.getNumEdges();
+		if (numEdges == 0) {
+			return 0;
+		}
+
+		// Count the edge ends inside each community and the total degree of each community.
+		final int[] offsets = _graph.getOffsets();
+		final int[] neighbors = _graph.getNeighbors();
+		final long[] insideEnds = new long[_labels.length];
+		final long[] totalDegree = new long[_labels.length];
+		for (int node = 0; node < _labels.length; node++) {
+			totalDegree[_labels[node]] += offsets[node + 1] - offsets[node];
+			for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+				if (_labels[neighbors[i]] == _labels[node]) {
+					insideEnds[_labels[node]]++;
+				}
+			}
+		}
+
+		// Each inside edge was counted from both of its ends.
+		final double twiceEdges = 2.0 * numEdges;
+		double modularity = 0;
+		for (int label = 0; label < _labels.length; label++) {
+			if (totalDegree[label] > 0) {
+				final double share = totalDegree[label] / twiceEdges;
+				modularity += insideEnds[label] / twiceEdges - share * share;
+			}
+		}
+		return modularity;
+	}
+
+	/**
+	 * Writes the community of every node to a tab-separated file with the columns
+	 * type ("actor" or "movie"), name and community.
+	 * @param filename the file to write to.
+	 */
+	public void writeCommunities (String filename) throws IOException {
+		try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(filename)))) {
+			writer.println("type\tname\tcommunity");
+			for (int i = 0; i < _labels.length; i++) {
+				writer.println((_graph.isActor(i) ? "actor" : "movie") + "\t" + _graph.getNode(i).getName() + "\t"
+						+ _labels[i]);
+			}
+		}
+	}
+
+	/**
+	 * Loads the IMDB data, splits it into communities and writes the mapping out.
+	 * Usage: java CommunityDetector [actorsFile titlesFile [outputFile [maxIterations]]]
+	 */
+	public static void main (String[] args) {
+		final String actorsFilename = args.length >= 2 ? args[0] : IMDBGraphImpl.IMDB_DIRECTORY + "/name.basics.tsv.gz";
+		final String titlesFilename = args.length >= 2 ? args[1] : IMDBGraphImpl.IMDB_DIRECTORY + "/title.basics.tsv.gz";
+		final String outputFilename = args.length >= 3 ? args[2] : "communities.tsv";
+		final int maxIterations = args.length >= 4 ? Integer.parseInt(args[3]) : DEFAULT_MAX_ITERATIONS;
+
+		try {
+			final IndexedGraph graph = new IndexedGraph(new IMDBGraphImpl(actorsFilename, titlesFilename));
+			final CommunityDetector detector = new CommunityDetector(graph, ForkJoinPool.commonPool(), maxIterations);
+
+			final long start = System.nanoTime();
+			detector.run();
+			final long elapsed = System.nanoTime() - start;
+
+			final int[] sizes = detector.getCommunitySizes();
+			System.out.println("Iterations: " + detector.getIterations());
+			System.out.println("Time: " + elapsed / 1000000 + " ms");
+			System.out.println("Communities: " + sizes.length);
+			System.out.println("Modularity: " + detector.getModularity());
+			System.out.println("Largest communities:");
+			for (int i = 0; i < Math.min(10, sizes.length); i++) {
+				System.out.println(sizes[i]);
+			}
+
+			detector.writeCommunities(outputFilename);
+		} catch (IOException ioe) {
+			System.out.println("Couldn't load data");
+		}
+	}
+}
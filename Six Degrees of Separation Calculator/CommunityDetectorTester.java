@@ -0,0 +1,100 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.io.*;
+
+/**
+ * Code to test the CommunityDetector on the small test graph.
+ */
+public class CommunityDetectorTester {
+	// The indexed graph to split into communities.
+	private IndexedGraph _graph;
+
+	// The pool the detector runs on.
+	private ForkJoinPool _pool;
+
+	// The detector being tested.
+	private CommunityDetector _detector;
+
+	/**
+	 * Loads the test data and runs the detector before each test.
+	 */
+	@BeforeEach
+	void setup () {
+		try {
+			_graph = new IndexedGraph(new IMDBGraphImpl(IMDBGraphImpl.IMDB_DIRECTORY + "/testActors.tsv",
+					IMDBGraphImpl.IMDB_DIRECTORY + "/testMovies.tsv"));
+		}
+		catch (IOException ioe) {
+			ioe.printStackTrace();
+			assertTrue(false);
+			return;
+		}
+		_pool = new ForkJoinPool(4);
+		_detector = new CommunityDetector(_graph, _pool, CommunityDetector.DEFAULT_MAX_ITERATIONS);
+		_detector.run();
+	}
+
+	/**
+	 * Shuts down the pool after each test.
+	 */
+	@AfterEach
+	void teardown () {
+		if (_pool != null) {
+			_pool.shutdown();
+		}
+	}
+
+	/**
+	 * Returns the community of the actor with the given name.
+	 * @param name the name of the actor.
+	 * @return the community label of the actor.
+	 */
+	private int communityOf (String name) {
+		int index = -1;
+		for (int i = 0; i < _graph.getNumActors(); i++) {
+			if (_graph.getNode(i).getName().equals(name)) {
+				index = i;
+			}
+		}
+		return _detector.getCommunity(index);
+	}
+
+	/**
+	 * Test that the detector converges well before the iteration limit.
+	 */
+	@Test
+	@Timeout(5)
+	void testConverges () {
+		assertTrue(_detector.getIterations() < CommunityDetector.DEFAULT_MAX_ITERATIONS);
+	}
+
+	/**
+	 * Test that actors with no path between them never share a community.
+	 */
+	@Test
+	@Timeout(5)
+	void testDisconnectedActorsApart () {
+		assertFalse(communityOf("Kris") == communityOf("Actor1"));
+		assertFalse(communityOf("Actor3") == communityOf("Actor1"));
+		assertFalse(communityOf("Actor3") == communityOf("Kris"));
+	}
+
+	/**
+	 * Test that every node is counted in exactly one community and that the
+	 * modularity is in its valid range.
+	 */
+	@Test
+	@Timeout(5)
+	void testSizesAndModularity () {
+		int total = 0;
+		for (int size : _detector.getCommunitySizes()) {
+			total += size;
+		}
+		assertEquals(_graph.size(), total);
+
+		final double modularity = _detector.getModularity();
+		assertTrue(modularity > 0 && modularity <= 1);
+	}
+}
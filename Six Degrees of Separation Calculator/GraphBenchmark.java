@@ -0,0 +1,173 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks for loading an IMDBGraphImpl and for GraphSearchEngineImpl.findShortestPath
+ * on a short pair (two actors sharing a movie), a long pair (an actor and the actor
+ * farthest from it) and a disconnected pair. The input is either someActors.tsv/someMovies.tsv
+ * ("sample") or files from SyntheticIMDBGenerator with the given number of people and
+ * half as many titles.
+ *
+ * The GC profiler is attached, so the results include the allocation per query
+ * (gc.alloc.rate.norm), and they are written as JSON to the result file
+ * (graph-benchmark.json by default).
+ *
+ * The harness is generated by the JMH annotation processor when this file is
+ * compiled with jmh-generator-annprocess on the classpath. The processor refuses
+ * benchmarks in the default package, so the sources (without the testers) are
+ * compiled as a package of their own, for example from this directory:
+ *
+ *   mkdir -p build/src/benchmark build/classes
+ *   for f in *.java; do case $f in *Tester.java) ;; *) (echo "package benchmark;"; cat $f) > build/src/benchmark/$f;; esac; done
+ *   javac -cp jmh-core-1.37.jar:jmh-generator-annprocess-1.37.jar -d build/classes build/src/benchmark/*.java
+ *   java -cp build/classes:jmh-core-1.37.jar:jopt-simple-5.0.4.jar:commons-math3-3.6.1.jar benchmark.GraphBenchmark [resultFile]
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GraphBenchmark {
+	// "sample", or the number of people to generate. GraphSearchEngineImpl keeps its
+	// visited nodes in a list, so a search that reaches most of the graph is quadratic
+	// in its size: about 2 s at 100000 people, and far too slow to measure at 1000000.
+	@Param({ "sample", "10000", "100000" })
+	public String _input;
+
+	// The input files, and whether they were generated (and should be deleted afterwards).
+	private File _actorsFile;
+	private File _titlesFile;
+	private boolean _generated;
+
+	// The loaded graph and the engine under test.
+	private IMDBGraph _graph;
+	private GraphSearchEngine _searchEngine;
+
+	// The pairs of actors to search between.
+	private Node _shortStart, _shortTarget;
+	private Node _longStart, _longTarget;
+	private Node _disconnectedStart, _disconnectedTarget;
+
+	/**
+	 * Writes the input files, loads them and picks the actor pairs. The pairs only
+	 * depend on the input: the source is the actor with the most movies, and each
+	 * target is the first actor, in the order of the IndexedGraph, that fits.
+	 */
+	@Setup(Level.Trial)
+	public void setup () throws IOException {
+		_generated = !_input.equals("sample");
+		if (_generated) {
+			final int numActors = Integer.parseInt(_input);
+			final SyntheticIMDBGenerator generator = new SyntheticIMDBGenerator(0, numActors, numActors / 2);
+			_actorsFile = File.createTempFile("actors", ".tsv");
+			_titlesFile = File.createTempFile("titles", ".tsv");
+			generator.writeActors(_actorsFile.getPath());
+			generator.writeTitles(_titlesFile.getPath());
+		} else {
+			_actorsFile = new File(IMDBGraphImpl.IMDB_DIRECTORY + "/someActors.tsv");
+			_titlesFile = new File(IMDBGraphImpl.IMDB_DIRECTORY + "/someMovies.tsv");
+		}
+
+		_graph = new IMDBGraphImpl(_actorsFile.getPath(), _titlesFile.getPath());
+		_searchEngine = new GraphSearchEngineImpl();
+		final IndexedGraph indexed = new IndexedGraph(_graph);
+
+		// Start from the best connected actor.
+		int source = 0;
+		for (int i = 1; i < indexed.getNumActors(); i++) {
+			if (indexed.getDegree(i) > indexed.getDegree(source)) {
+				source = i;
+			}
+		}
+		final int[] distances = distancesFrom(indexed, source);
+
+		// The short target shares a movie with the source; the long one is as far away as possible.
+		_shortStart = _longStart = _disconnectedStart = indexed.getNode(source);
+		for (int i = 0; i < indexed.getNumActors(); i++) {
+			if (distances[i] == 2 && _shortTarget == null) {
+				_shortTarget = indexed.getNode(i);
+			}
+			if (distances[i] >= 0 && (_longTarget == null || distances[i] > distances[indexed.getIndex(_longTarget)])) {
+				_longTarget = indexed.getNode(i);
+			}
+			if (distances[i] == -1 && _disconnectedTarget == null) {
+				_disconnectedTarget = indexed.getNode(i);
+			}
+		}
+		if (_shortTarget == null || _longTarget == null || _disconnectedTarget == null) {
+			throw new IllegalStateException("The " + _input + " graph has no short, long or disconnected pair");
+		}
+	}
+
+	/**
+	 * Deletes the generated input files.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown () {
+		if (_generated) {
+			_actorsFile.delete();
+			_titlesFile.delete();
+		}
+	}
+
+	/**
+	 * Returns the BFS distance of every node from the source, or -1 for unreachable nodes.
+	 */
+	private static int[] distancesFrom (IndexedGraph graph, int source) {
+		final int[] distances = new int[graph.size()];
+		Arrays.fill(distances, -1);
+		final int[] queue = new int[graph.size()];
+		int head = 0, tail = 0;
+		distances[source] = 0;
+		queue[tail++] = source;
+		while (head < tail) {
+			final int current = queue[head++];
+			for (int i = graph.getOffsets()[current]; i < graph.getOffsets()[current + 1]; i++) {
+				final int neighbor = graph.getNeighbors()[i];
+				if (distances[neighbor] == -1) {
+					distances[neighbor] = distances[current] + 1;
+					queue[tail++] = neighbor;
+				}
+			}
+		}
+		return distances;
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public IMDBGraph load () throws IOException {
+		return new IMDBGraphImpl(_actorsFile.getPath(), _titlesFile.getPath());
+	}
+
+	@Benchmark
+	public List<Node> shortPath () {
+		return _searchEngine.findShortestPath(_shortStart, _shortTarget);
+	}
+
+	@Benchmark
+	public List<Node> longPath () {
+		return _searchEngine.findShortestPath(_longStart, _longTarget);
+	}
+
+	@Benchmark
+	public List<Node> disconnectedPath () {
+		return _searchEngine.findShortestPath(_disconnectedStart, _disconnectedTarget);
+	}
+
+	public static void main (String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(GraphBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result(args.length >= 1 ? args[0] : "graph-benchmark.json")
+				.build()).run();
+	}
+}
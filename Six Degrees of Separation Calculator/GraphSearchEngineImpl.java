@@ -14,6 +14,14 @@ public class GraphSearchEngineImpl implements GraphSearchEngine {
 	 * @return the shortest list of nodes from the start to the target in the graph.
 	 */
 	public ArrayList<Node> findShortestPath (Node start, Node target) {
+		// Start timing the query for the JFR event and, if enabled, SearchMetrics.
+		final SearchEvent event = new SearchEvent();
+		event.begin();
+		final boolean measure = SearchMetrics.enabled();
+		final long startTime = measure ? System.nanoTime() : 0;
+		long nodesExpanded = 0;
+		int maxFrontierSize = 1;
+		
 		// A map with nodes as keys and the parent nodes to the keys as values.
 		HashMap<Node, Node> parent = new HashMap<Node, Node>();
 		
@@ -50,13 +58,66 @@ public class GraphSearchEngineImpl implements GraphSearchEngine {
 					queue.add(node);
 				};
 				visited.add(current);
+				nodesExpanded++;
+				maxFrontierSize = Math.max(maxFrontierSize, queue.size());
 			}
 		}
 		
+		// Record the query.
+		final int pathLength = answer == null ? -1 : answer.size();
+		if (measure) {
+			SearchMetrics.get().recordSearch(System.nanoTime() - startTime, nodesExpanded, maxFrontierSize, pathLength);
+		}
+		if (event.shouldCommit()) {
+			event.nodesExpanded = nodesExpanded;
+			event.maxFrontierSize = maxFrontierSize;
+			event.pathLength = pathLength;
+			event.commit();
+		}
+		
 		// Return the final list of nodes.
 		return answer;
 	}
 	
+	/**
+	 * Lazily list every shortest path from the starting node to the target node.
+	 * Only the shortest-path DAG is kept in memory, however many paths there are.
+	 * @param start the node to start the search from.
+	 * @param target the node to search for.
+	 * @return an iterator over all the shortest paths (empty if there is no path).
+	 */
+	public Iterator<List<Node>> findAllShortestPaths (Node start, Node target) {
+		return new ShortestPathDag(start, target).iterator();
+	}
+
+	/**
+	 * Lazily list at most k of the shortest paths from the starting node to the target node.
+	 * The first path is the same one findShortestPath returns.
+	 * @param start the node to start the search from.
+	 * @param target the node to search for.
+	 * @param k the maximum number of paths to list.
+	 * @return an iterator over the first k shortest paths (empty if there is no path).
+	 */
+	public Iterator<List<Node>> findShortestPaths (Node start, Node target, int k) {
+		final Iterator<List<Node>> allPaths = findAllShortestPaths(start, target);
+		return new Iterator<List<Node>>() {
+			// The number of paths handed out so far.
+			private int _count = 0;
+
+			public boolean hasNext () {
+				return _count < k && allPaths.hasNext();
+			}
+
+			public List<Node> next () {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				_count++;
+				return allPaths.next();
+			}
+		};
+	}
+
 	/**
 	 * Create a list of the path traced from the starting node to the target node in a map.
 	 * @param parent a map with nodes as keys and parent nodes as values.  
@@ -71,7 +132,7 @@ public class GraphSearchEngineImpl implements GraphSearchEngine {
 		
 		// Back traces the from each value to the next and adds the values to the front of answer
 		// until the value is the starting value.
-		while (answer.get(0) != start) {
+		while (!answer.get(0).equals(start)) {
 			answer.add(0, parent.get(answer.get(0)));
 		}
 		
@@ -118,4 +118,100 @@ public class GraphTester {
 				"Movie3", "Actor6", "Movie5", "Actor9");
 		testBasicShortestPath("Actor7", "Actor9", correctNames);
 	}
+	
+	/**
+	 * Collects the names along every path the iterator returns.
+	 * @param paths the iterator over the paths.
+	 * @return a list of the names along each path.
+	 */
+	private List<List<String>> pathNames (Iterator<List<Node>> paths) {
+		final List<List<String>> answer = new ArrayList<List<String>>();
+		while (paths.hasNext()) {
+			final List<String> names = new ArrayList<String>();
+			for (Node node : paths.next()) {
+				names.add(node.getName());
+			}
+			answer.add(names);
+		}
+		return answer;
+	}
+	
+	/**
+	 * Test that all three shortest routes are listed, starting with the one findShortestPath returns.
+	 */
+	@Test
+	@Timeout(5)
+	void allShortestPathsLength7 () {
+		final GraphSearchEngineImpl searchEngine = new GraphSearchEngineImpl();
+		final List<List<String>> paths = pathNames(searchEngine.findAllShortestPaths(_graph.getActor("Actor7"),
+				_graph.getActor("Actor9")));
+		assertEquals(3, paths.size());
+		assertEquals(Arrays.asList("Actor7", "Movie1", "Actor4", "Movie3", "Actor6", "Movie5", "Actor9"), paths.get(0));
+		assertTrue(paths.contains(Arrays.asList("Actor7", "Movie1", "Actor5", "Movie3", "Actor6", "Movie5", "Actor9")));
+		assertTrue(paths.contains(Arrays.asList("Actor7", "Movie4", "Actor8", "Movie3", "Actor6", "Movie5", "Actor9")));
+		assertEquals(3, new ShortestPathDag(_graph.getActor("Actor7"), _graph.getActor("Actor9")).getNumPaths());
+	}
+	
+	/**
+	 * Test that only the first k shortest routes are listed, and none when there is no path.
+	 */
+	@Test
+	@Timeout(5)
+	void firstKShortestPaths () {
+		final GraphSearchEngineImpl searchEngine = new GraphSearchEngineImpl();
+		assertEquals(2, pathNames(searchEngine.findShortestPaths(_graph.getActor("Actor7"),
+				_graph.getActor("Actor9"), 2)).size());
+		assertEquals(0, pathNames(searchEngine.findShortestPaths(_graph.getActor("Actor1"),
+				_graph.getActor("Actor3"), 2)).size());
+		assertEquals(Arrays.asList(Arrays.asList("Actor1")), pathNames(searchEngine.findAllShortestPaths(
+				_graph.getActor("Actor1"), _graph.getActor("Actor1"))));
+	}
+	
+	/**
+	 * Test that each query is counted by SearchMetrics along with the nodes it expanded.
+	 */
+	@Test
+	@Timeout(5)
+	void searchMetricsRecorded () {
+		// The graph loaded for this test was recorded as two phases.
+		final SearchMetrics metrics = SearchMetrics.get();
+		final List<SearchMetrics.LoadPhase> phases = metrics.getLoadPhases();
+		assertEquals("titles", phases.get(phases.size() - 2).getPhase());
+		assertEquals("actors", phases.get(phases.size() - 1).getPhase());
+		assertEquals(13, phases.get(phases.size() - 1).getRows());
+		
+		metrics.reset();
+		testBasicShortestPath("Actor1", "Actor2", Arrays.asList("Actor1", "Movie1", "Actor2"));
+		testBasicShortestPath("Actor1", "Actor3", null);
+		assertEquals(2, metrics.getQueries());
+		assertEquals(1, metrics.getQueriesWithoutPath());
+		assertTrue(metrics.getNodesExpanded() >= 2);
+		assertTrue(metrics.getMaxFrontierSize() >= 1);
+	}
+	
+	/**
+	 * Test that searching the actor projection gives valid paths of the same length for every pair of actors.
+	 */
+	@Test
+	@Timeout(5)
+	void projectedSearchSameLengths () {
+		final IndexedGraph indexed = new IndexedGraph(_graph);
+		final GraphSearchEngine projected = new ProjectedSearchEngine(new ActorProjection(indexed));
+		for (Node actor1 : _graph.getActors()) {
+			for (Node actor2 : _graph.getActors()) {
+				final List<Node> expected = _searchEngine.findShortestPath(actor1, actor2);
+				final List<Node> actual = projected.findShortestPath(actor1, actor2);
+				if (expected == null) {
+					assertEquals(null, actual);
+					continue;
+				}
+				assertEquals(expected.size(), actual.size());
+				assertEquals(actor1, actual.get(0));
+				assertEquals(actor2, actual.get(actual.size() - 1));
+				for (int i = 1; i < actual.size(); i++) {
+					assertTrue(actual.get(i - 1).getNeighbors().contains(actual.get(i)));
+				}
+			}
+		}
+	}
 }
@@ -9,7 +9,6 @@ public class IMDBGraphImpl implements IMDBGraph {
 	// of the required syntax).
 	public static final String IMDB_DIRECTORY =
 			"C:/Users/henbe/Downloads/Worcester Polytechnic Institute/B23/CS 2103/Project2.zip_expanded";
-	private static final int PROGRESS_FREQUENCY = 10000;
 
 	private static class IMDBNode implements Node {
 		private final String _name;
@@ -37,15 +36,15 @@ public class IMDBGraphImpl implements IMDBGraph {
 
 	/**
 	 * Returns a name (based on the specified name) that is guaranteed to be unique
-	 * within the specified map.
+	 * within the specified set of names.
 	 * @param name the actor or movie name.
-	 * @param map the map within which to ensure uniqueness.
+	 * @param names the names within which to ensure uniqueness.
 	 * @return a guaranteed unique name.
 	 */
-	private static String ensureUniqueName (String name, Map<String, IMDBNode> map) {
+	static String ensureUniqueName (String name, Set<String> names) {
 		String finalName = name;
 		int counter = 2;
-		while (map.containsKey(finalName)) {
+		while (names.contains(finalName)) {
 			finalName = name + " " + counter;
 			counter++;
 		}
@@ -82,10 +81,16 @@ public class IMDBGraphImpl implements IMDBGraph {
 		}
 		final Scanner s = new Scanner(inputStream, "ISO-8859-1");
 
-		int idx = 0;
+		// Count the rows read and the rows that do not become actors, for SearchMetrics.
+		final LoadPhaseEvent event = new LoadPhaseEvent();
+		event.begin();
+		final long start = System.nanoTime();
+		long rows = 0, skipped = 0;
+
 		s.nextLine();  // skip first line
 		while (s.hasNextLine()) {
 			final String line = s.nextLine();
+			rows++;
 			final String[] fields = line.split("\t");
 			final int NUM_REQUIRED_FIELDS = 6;
 			if (fields.length >= NUM_REQUIRED_FIELDS) {
@@ -95,13 +100,8 @@ public class IMDBGraphImpl implements IMDBGraph {
 
 				// Only worry about actors (of any gender).
 				if (profession.contains("actor") || profession.contains("actress")) {
-					// Show progress
-					if (idx++ % PROGRESS_FREQUENCY == 0) {
-						System.out.println(name);
-					}
-
 					// Give each person with the same name a unique "finalName".
-					final String finalName = ensureUniqueName(name, _actorNamesToNodes);
+					final String finalName = ensureUniqueName(name, _actorNamesToNodes.keySet());
 
 					// Create a new node for the actor and add them to _actorNamesToNodes.
 					final IMDBNode actorNode = new IMDBNode(finalName);
@@ -115,9 +115,12 @@ public class IMDBGraphImpl implements IMDBGraph {
 							_movieNamesToNodes.get(idsToTitles.get(movie))._neighbors.add(actorNode);
 						}
 					}
+					continue;
 				}
 			}
+			skipped++;
 		}
+		SearchMetrics.get().recordLoadPhase("actors", rows, skipped, System.nanoTime() - start, event);
 	}
 
 	/**
@@ -134,10 +137,16 @@ public class IMDBGraphImpl implements IMDBGraph {
 		}
 		final Scanner s = new Scanner(inputStream, "ISO-8859-1");
 
-		int idx = 0;
+		// Count the rows read and the rows that do not become movies, for SearchMetrics.
+		final LoadPhaseEvent event = new LoadPhaseEvent();
+		event.begin();
+		final long start = System.nanoTime();
+		long rows = 0, skipped = 0;
+
 		s.nextLine();  // skip first line
 		while (s.hasNextLine()) {
 			final String line = s.nextLine();
+			rows++;
 			final String[] fields = line.split("\t");
 			final String movieId = fields[0];
 			final int NUM_REQUIRED_FIELDS = 3;
@@ -145,18 +154,17 @@ public class IMDBGraphImpl implements IMDBGraph {
 				final String type = fields[1];
 				if (type.contains("movie")) {
 					final String title = fields[2];
-					if (idx++ % PROGRESS_FREQUENCY == 0) {
-						System.out.println(title);
-					}
-
-					final String finalTitle = ensureUniqueName(title, _movieNamesToNodes);
+					final String finalTitle = ensureUniqueName(title, _movieNamesToNodes.keySet());
 					final IMDBNode movie = new IMDBNode(finalTitle);
 					_movieNamesToNodes.put(finalTitle, movie);
 					// Associate the movieId with the title
 					idsToTitles.put(movieId, finalTitle);
+					continue;
 				}
 			}
+			skipped++;
 		}
+		SearchMetrics.get().recordLoadPhase("titles", rows, skipped, System.nanoTime() - start, event);
 		
 		return idsToTitles;
 	}
@@ -193,15 +201,27 @@ public class IMDBGraphImpl implements IMDBGraph {
 
 	/**
 	 * Simple interactive program that asks user for two actors and then lists
-	 * a shortest path (if it exists).
+	 * a shortest path (if it exists). If a file name is given as the first
+	 * argument, every query is recorded to it as a QueryLog.
 	 */
 	public static void main (String[] args) {
 		try {
 			final IMDBGraph graph = new IMDBGraphImpl(IMDB_DIRECTORY + "/name.basics.tsv.gz",
 			                                          IMDB_DIRECTORY + "/title.basics.tsv.gz");
 			System.out.println(graph.getActors().size());
+			for (SearchMetrics.LoadPhase phase : SearchMetrics.get().getLoadPhases()) {
+				System.out.println(phase);
+			}
 			
-			final GraphSearchEngine graphSearcher = new GraphSearchEngineImpl();
+			final GraphSearchEngine graphSearcher;
+			final RecordingSearchEngine recorder;
+			if (args.length >= 1) {
+				recorder = new RecordingSearchEngine(new GraphSearchEngineImpl(), args[0]);
+				graphSearcher = recorder;
+			} else {
+				recorder = null;
+				graphSearcher = new GraphSearchEngineImpl();
+			}
 			while (true) {
 				final Scanner s = new Scanner(System.in);
 				System.out.println("Actor 1:");
@@ -212,6 +232,9 @@ public class IMDBGraphImpl implements IMDBGraph {
 				final Node node2 = graph.getActor(actorName2);
 				if (node1 != null && node2 != null) {
 					List<Node> shortestPath = graphSearcher.findShortestPath(node1, node2);
+					if (recorder != null) {
+						recorder.flush();
+					}
 					System.out.println(node1 + " " + node2);
 					if (shortestPath != null) {
 						for (Node node : shortestPath) {
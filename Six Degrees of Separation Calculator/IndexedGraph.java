@@ -0,0 +1,142 @@
+import java.util.*;
+
+/**
+ * A compact, integer-indexed copy of the adjacency of an IMDBGraph. Actors are
+ * numbered 0 .. numActors - 1 and the movies follow them. The neighbors of every
+ * node are stored back to back in a single int array (compressed sparse row form),
+ * so that whole-graph jobs can run over primitive arrays instead of Node objects.
+ */
+public class IndexedGraph {
+	// The node behind each index.
+	private final Node[] _nodes;
+
+	// The number of actor nodes; every index at or above this is a movie.
+	private final int _numActors;
+
+	// The neighbors of node i are _neighbors[_offsets[i]] .. _neighbors[_offsets[i + 1] - 1].
+	private final int[] _offsets;
+
+	// The neighbor indexes of all the nodes, back to back.
+	private final int[] _neighbors;
+
+	// A map from each node to its index.
+	private final Map<Node, Integer> _nodesToIndexes;
+
+	/**
+	 * Builds the indexed copy of the given graph.
+	 * @param graph the graph to index.
+	 */
+	public IndexedGraph (IMDBGraph graph) {
+		final Collection<? extends Node> actors = graph.getActors();
+		final Collection<? extends Node> movies = graph.getMovies();
+		_numActors = actors.size();
+		_nodes = new Node[actors.size() + movies.size()];
+		_nodesToIndexes = new HashMap<Node, Integer>(_nodes.length * 2);
+
+		// Number the actors first and then the movies.
+		int idx = 0;
+		for (Node actor : actors) {
+			_nodes[idx] = actor;
+			_nodesToIndexes.put(actor, idx++);
+		}
+		for (Node movie : movies) {
+			_nodes[idx] = movie;
+			_nodesToIndexes.put(movie, idx++);
+		}
+
+		// Count the neighbors of every node to find where each one's list starts.
+		_offsets = new int[_nodes.length + 1];
+		for (int i = 0; i < _nodes.length; i++) {
+			_offsets[i + 1] = _offsets[i] + _nodes[i].getNeighbors().size();
+		}
+
+		// Copy the neighbor indexes in.
+		_neighbors = new int[_offsets[_nodes.length]];
+		for (int i = 0; i < _nodes.length; i++) {
+			int position = _offsets[i];
+			for (Node neighbor : _nodes[i].getNeighbors()) {
+				_neighbors[position++] = _nodesToIndexes.get(neighbor);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of nodes (actors and movies) in the graph.
+	 * @return the number of nodes.
+	 */
+	public int size () {
+		return _nodes.length;
+	}
+
+	/**
+	 * Returns the number of actor nodes in the graph.
+	 * @return the number of actors.
+	 */
+	public int getNumActors () {
+		return _numActors;
+	}
+
+	/**
+	 * Returns the number of undirected edges in the graph.
+	 * @return the number of edges.
+	 */
+	public long getNumEdges () {
+		return _neighbors.length / 2;
+	}
+
+	/**
+	 * Returns whether the node with the given index is an actor.
+	 * @param index the index of the node.
+	 * @return true if the node is an actor, false if it is a movie.
+	 */
+	public boolean isActor (int index) {
+		return index < _numActors;
+	}
+
+	/**
+	 * Returns the node with the given index.
+	 * @param index the index of the node.
+	 * @return the node.
+	 */
+	public Node getNode (int index) {
+		return _nodes[index];
+	}
+
+	/**
+	 * Returns the index of the given node.
+	 * @param node the node to look up.
+	 * @return the index of the node, or -1 if it is not part of this graph.
+	 */
+	public int getIndex (Node node) {
+		final Integer index = _nodesToIndexes.get(node);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Returns the number of neighbors of the node with the given index.
+	 * @param index the index of the node.
+	 * @return the degree of the node.
+	 */
+	public int getDegree (int index) {
+		return _offsets[index + 1] - _offsets[index];
+	}
+
+	/**
+	 * Returns the offsets array; the neighbors of node i are found at positions
+	 * getOffsets()[i] (inclusive) to getOffsets()[i + 1] (exclusive) of getNeighbors().
+	 * The returned array is shared and must not be modified.
+	 * @return the offsets array.
+	 */
+	public int[] getOffsets () {
+		return _offsets;
+	}
+
+	/**
+	 * Returns the neighbor indexes of all the nodes, back to back.
+	 * The returned array is shared and must not be modified.
+	 * @return the neighbors array.
+	 */
+	public int[] getNeighbors () {
+		return _neighbors;
+	}
+}
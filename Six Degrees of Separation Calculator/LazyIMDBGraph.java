@@ -0,0 +1,451 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * An IMDBGraph that keeps only a compact index in memory and reads the rows of
+ * the data files when a search actually reaches them. Startup makes one pass over
+ * each file to record, for every movie and actor, where its row is, a 64-bit hash
+ * of its name, and (for movies) which actors list it. Expanding an actor parses its
+ * row for its movies, and the decoded neighbor lists are kept in a bounded LRU
+ * cache, so memory beyond the index grows with the part of the graph queries touch.
+ *
+ * Nodes are lightweight handles that are created on demand and compare equal by
+ * id; names are read from the file the first time they are asked for, and a name
+ * looked up by its hash is checked against the file before its node is returned.
+ * The neighbors come out in the same order as in IMDBGraphImpl, and duplicate
+ * names get their suffixes from IMDBGraphImpl.ensureUniqueName in file order, so
+ * searches return the same paths. For that the names used so far are kept while
+ * each file is indexed, and dropped once it is. The graph is not safe for use by
+ * several threads at once.
+ */
+public class LazyIMDBGraph implements IMDBGraph, Closeable {
+	public static final int DEFAULT_CACHE_SIZE = 100000;
+
+	// Initial length of the growable index arrays.
+	private static final int INITIAL_CAPACITY = 1024;
+
+	// The row stores of the two data files.
+	private final TsvRowStore _actorRows;
+	private final TsvRowStore _titleRows;
+
+	// The row position and name index of every movie and actor.
+	private final NameIndex _movies = new NameIndex();
+	private final NameIndex _actors = new NameIndex();
+
+	// A map from the number in each movie's tconst to the movie id.
+	private final LongIntMap _movieIds = new LongIntMap();
+
+	// The actors of movie m are _movieActors[_movieActorOffsets[m]] .. _movieActors[_movieActorOffsets[m + 1] - 1].
+	private int[] _movieActorOffsets;
+	private int[] _movieActors;
+
+	// Recently decoded movie lists of actors, by actor id.
+	private final LinkedHashMap<Integer, int[]> _neighborCache;
+
+	/**
+	 * A lightweight handle to a node of the graph.
+	 */
+	private class LazyNode implements Node {
+		private final int _id;
+		private final boolean _isActor;
+		private String _name;
+
+		LazyNode (int id, boolean isActor) {
+			_id = id;
+			_isActor = isActor;
+		}
+
+		public String getName () {
+			if (_name == null) {
+				_name = readName(_isActor ? _actors : _movies, _isActor ? _actorRows : _titleRows, _id,
+						_isActor ? 1 : 2);
+			}
+			return _name;
+		}
+
+		public Collection<LazyNode> getNeighbors () {
+			final int[] ids = _isActor ? getActorMovies(_id) : getMovieActors(_id);
+			return new AbstractList<LazyNode>() {
+				public LazyNode get (int index) {
+					return new LazyNode(ids[index], !_isActor);
+				}
+
+				public int size () {
+					return ids.length;
+				}
+			};
+		}
+
+		@Override
+		public boolean equals (Object o) {
+			return o instanceof LazyNode && ((LazyNode) o)._id == _id && ((LazyNode) o)._isActor == _isActor;
+		}
+
+		@Override
+		public int hashCode () {
+			return _isActor ? _id : ~_id;
+		}
+
+		@Override
+		public String toString () {
+			return getName();
+		}
+	}
+
+	/**
+	 * The row positions of a set of nodes, plus a hash index of their unique names.
+	 * Ids are handed out in file order, and names are found by chaining ids with the
+	 * same bucket.
+	 */
+	private static class NameIndex {
+		private long[] _positions = new long[INITIAL_CAPACITY];
+		private long[] _hashes = new long[INITIAL_CAPACITY];
+		private int[] _next = new int[INITIAL_CAPACITY];
+		private int[] _buckets = newBuckets(INITIAL_CAPACITY);
+		private int _size;
+
+		// The suffix (2, 3, ...) of every node whose name was taken before it.
+		private final HashMap<Integer, Integer> _duplicateNumbers = new HashMap<>();
+
+		private static int[] newBuckets (int length) {
+			final int[] buckets = new int[length];
+			Arrays.fill(buckets, -1);
+			return buckets;
+		}
+
+		/**
+		 * Adds a node with the next id.
+		 * @param position the row position of the node.
+		 * @param name the name of the node as it appears in the file.
+		 * @param names the unique names of the nodes added so far, which gets this one's.
+		 * @return the id of the node.
+		 */
+		int add (long position, String name, Set<String> names) {
+			if (_size == _positions.length) {
+				_positions = Arrays.copyOf(_positions, _size * 2);
+				_hashes = Arrays.copyOf(_hashes, _size * 2);
+				_next = Arrays.copyOf(_next, _size * 2);
+				rehash(_size * 2);
+			}
+			final int id = _size++;
+			final String uniqueName = IMDBGraphImpl.ensureUniqueName(name, names);
+			names.add(uniqueName);
+			if (uniqueName.length() > name.length()) {
+				_duplicateNumbers.put(id, Integer.parseInt(uniqueName.substring(name.length() + 1)));
+			}
+
+			final long hash = hash(uniqueName);
+			final int bucket = (int) hash & (_buckets.length - 1);
+			_positions[id] = position;
+			_hashes[id] = hash;
+			_next[id] = _buckets[bucket];
+			_buckets[bucket] = id;
+			return id;
+		}
+
+		/**
+		 * Rebuilds the bucket chains with a new number of buckets.
+		 * @param length the new number of buckets (a power of two).
+		 */
+		private void rehash (int length) {
+			_buckets = newBuckets(length);
+			for (int id = 0; id < _size; id++) {
+				final int bucket = (int) _hashes[id] & (length - 1);
+				_next[id] = _buckets[bucket];
+				_buckets[bucket] = id;
+			}
+		}
+
+		/**
+		 * Finds a node by its unique name, which may carry a duplicate suffix like " 2".
+		 * Every node whose name has the same hash is read from the file and compared.
+		 * @param uniqueName the unique name.
+		 * @param rows the store holding the rows of the nodes.
+		 * @param field the column that holds the name.
+		 * @return the id of the node, or -1 if there is none.
+		 */
+		int find (String uniqueName, TsvRowStore rows, int field) {
+			final long hash = hash(uniqueName);
+			for (int id = _buckets[(int) hash & (_buckets.length - 1)]; id != -1; id = _next[id]) {
+				if (_hashes[id] == hash && readName(this, rows, id, field).equals(uniqueName)) {
+					return id;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * A 64-bit FNV-1a hash of a name.
+		 */
+		private static long hash (String name) {
+			long hash = 0xcbf29ce484222325L;
+			for (int i = 0; i < name.length(); i++) {
+				hash ^= name.charAt(i);
+				hash *= 0x100000001b3L;
+			}
+			return hash;
+		}
+	}
+
+	/**
+	 * An open-addressing map from long keys to int values.
+	 */
+	private static class LongIntMap {
+		private long[] _keys = new long[INITIAL_CAPACITY];
+		private int[] _values = new int[INITIAL_CAPACITY];
+		private boolean[] _used = new boolean[INITIAL_CAPACITY];
+		private int _size;
+
+		void put (long key, int value) {
+			if (_size * 2 >= _keys.length) {
+				final long[] keys = _keys;
+				final int[] values = _values;
+				final boolean[] used = _used;
+				_keys = new long[keys.length * 2];
+				_values = new int[keys.length * 2];
+				_used = new boolean[keys.length * 2];
+				_size = 0;
+				for (int i = 0; i < keys.length; i++) {
+					if (used[i]) {
+						put(keys[i], values[i]);
+					}
+				}
+			}
+			int slot = slot(key);
+			while (_used[slot] && _keys[slot] != key) {
+				slot = (slot + 1) & (_keys.length - 1);
+			}
+			if (!_used[slot]) {
+				_used[slot] = true;
+				_keys[slot] = key;
+				_size++;
+			}
+			_values[slot] = value;
+		}
+
+		int get (long key, int missing) {
+			for (int slot = slot(key); _used[slot]; slot = (slot + 1) & (_keys.length - 1)) {
+				if (_keys[slot] == key) {
+					return _values[slot];
+				}
+			}
+			return missing;
+		}
+
+		private int slot (long key) {
+			final long mixed = key * 0x9e3779b97f4a7c15L;
+			return (int) (mixed >>> 32) & (_keys.length - 1);
+		}
+	}
+
+	/**
+	 * Indexes the specified data files.
+	 * @param actorsFilename full path to the actor data file.
+	 * @param titlesFilename full path to the movie titles file.
+	 */
+	public LazyIMDBGraph (String actorsFilename, String titlesFilename) throws IOException {
+		this(actorsFilename, titlesFilename, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Indexes the specified data files.
+	 * @param actorsFilename full path to the actor data file.
+	 * @param titlesFilename full path to the movie titles file.
+	 * @param cacheSize the maximum number of decoded actor neighbor lists to keep.
+	 */
+	public LazyIMDBGraph (String actorsFilename, String titlesFilename, int cacheSize) throws IOException {
+		_neighborCache = new LinkedHashMap<Integer, int[]>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry (Map.Entry<Integer, int[]> eldest) {
+				return size() > cacheSize;
+			}
+		};
+
+		// First index the movie titles.
+		final Set<String> titles = new HashSet<>();
+		_titleRows = TsvRowStore.index(titlesFilename, (row, position) -> {
+			final String[] fields = row.split("\t");
+			final int NUM_REQUIRED_FIELDS = 3;
+			if (fields.length >= NUM_REQUIRED_FIELDS && fields[1].contains("movie")) {
+				_movieIds.put(idNumber(fields[0]), _movies.add(position, fields[2], titles));
+			}
+		});
+		titles.clear();  // the names are only needed while indexing
+
+		// Now index the actors, recording each (movie, actor) pair they are known for.
+		final int[][] edges = { new int[INITIAL_CAPACITY], new int[INITIAL_CAPACITY] };
+		final int[] numEdges = { 0 };
+		final Set<String> names = new HashSet<>();
+		_actorRows = TsvRowStore.index(actorsFilename, (row, position) -> {
+			final String[] fields = row.split("\t");
+			final int NUM_REQUIRED_FIELDS = 6;
+			if (fields.length >= NUM_REQUIRED_FIELDS
+					&& (fields[4].contains("actor") || fields[4].contains("actress"))) {
+				final int actor = _actors.add(position, fields[1], names);
+				for (String movie : fields[5].split(",")) {
+					final int movieId = _movieIds.get(idNumber(movie), -1);
+					if (movieId != -1) {
+						if (numEdges[0] == edges[0].length) {
+							edges[0] = Arrays.copyOf(edges[0], numEdges[0] * 2);
+							edges[1] = Arrays.copyOf(edges[1], numEdges[0] * 2);
+						}
+						edges[0][numEdges[0]] = movieId;
+						edges[1][numEdges[0]] = actor;
+						numEdges[0]++;
+					}
+				}
+			}
+		});
+		names.clear();
+
+		// Group the pairs by movie, keeping the file order of the actors.
+		_movieActorOffsets = new int[_movies._size + 1];
+		for (int i = 0; i < numEdges[0]; i++) {
+			_movieActorOffsets[edges[0][i] + 1]++;
+		}
+		for (int movie = 0; movie < _movies._size; movie++) {
+			_movieActorOffsets[movie + 1] += _movieActorOffsets[movie];
+		}
+		_movieActors = new int[numEdges[0]];
+		final int[] filled = Arrays.copyOf(_movieActorOffsets, _movies._size);
+		for (int i = 0; i < numEdges[0]; i++) {
+			_movieActors[filled[edges[0][i]]++] = edges[1][i];
+		}
+	}
+
+	/**
+	 * Returns the number in an IMDB id such as "tt0080684", or a hash of the id if it has no digits.
+	 * @param id the IMDB id.
+	 * @return the number in the id.
+	 */
+	private static long idNumber (String id) {
+		long number = 0;
+		boolean digits = false;
+		for (int i = 0; i < id.length(); i++) {
+			final char c = id.charAt(i);
+			if (c >= '0' && c <= '9') {
+				number = number * 10 + (c - '0');
+				digits = true;
+			}
+		}
+		return digits ? number : id.hashCode() | Long.MIN_VALUE;
+	}
+
+	/**
+	 * Reads the unique name of a node from its row.
+	 * @param index the index the node belongs to.
+	 * @param rows the store holding the node's row.
+	 * @param id the id of the node.
+	 * @param field the column that holds the name.
+	 * @return the name, with a duplicate suffix if needed.
+	 */
+	private static String readName (NameIndex index, TsvRowStore rows, int id, int field) {
+		final String name;
+		try {
+			name = rows.readRow(index._positions[id]).split("\t")[field];
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+		final Integer duplicate = index._duplicateNumbers.get(id);
+		return duplicate == null ? name : name + " " + duplicate;
+	}
+
+	/**
+	 * Returns the ids of the movies an actor is known for, parsing the actor's row if
+	 * it is not in the cache.
+	 * @param actor the actor id.
+	 * @return the movie ids.
+	 */
+	private int[] getActorMovies (int actor) {
+		int[] movies = _neighborCache.get(actor);
+		if (movies != null) {
+			return movies;
+		}
+
+		final String[] knownFor;
+		try {
+			knownFor = _actorRows.readRow(_actors._positions[actor]).split("\t")[5].split(",");
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+		movies = new int[knownFor.length];
+		int count = 0;
+		for (String movie : knownFor) {
+			final int movieId = _movieIds.get(idNumber(movie), -1);
+			if (movieId != -1) {
+				movies[count++] = movieId;
+			}
+		}
+		movies = Arrays.copyOf(movies, count);
+		_neighborCache.put(actor, movies);
+		return movies;
+	}
+
+	/**
+	 * Returns the ids of the actors known for a movie.
+	 * @param movie the movie id.
+	 * @return the actor ids.
+	 */
+	private int[] getMovieActors (int movie) {
+		return Arrays.copyOfRange(_movieActors, _movieActorOffsets[movie], _movieActorOffsets[movie + 1]);
+	}
+
+	/**
+	 * Returns the movie node having the specified name.
+	 * @param name the movie name.
+	 * @return the movie node, or null if there is no such movie.
+	 */
+	public Node getMovie (String name) {
+		final int id = _movies.find(name, _titleRows, 2);
+		return id == -1 ? null : new LazyNode(id, false);
+	}
+
+	/**
+	 * Returns the actor node having the specified name.
+	 * @param name the actor name.
+	 * @return the actor node, or null if there is no such actor.
+	 */
+	public Node getActor (String name) {
+		final int id = _actors.find(name, _actorRows, 1);
+		return id == -1 ? null : new LazyNode(id, true);
+	}
+
+	/**
+	 * Returns a view of all the movies; the nodes are created as they are visited.
+	 * @return the movies.
+	 */
+	public Collection<? extends Node> getMovies () {
+		return nodes(_movies._size, false);
+	}
+
+	/**
+	 * Returns a view of all the actors; the nodes are created as they are visited.
+	 * @return the actors.
+	 */
+	public Collection<? extends Node> getActors () {
+		return nodes(_actors._size, true);
+	}
+
+	/**
+	 * Returns a list view of the nodes with ids 0 .. size - 1.
+	 */
+	private List<LazyNode> nodes (int size, boolean isActor) {
+		return new AbstractList<LazyNode>() {
+			public LazyNode get (int index) {
+				return new LazyNode(index, isActor);
+			}
+
+			public int size () {
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * Closes the data files.
+	 */
+	public void close () throws IOException {
+		_actorRows.close();
+		_titleRows.close();
+	}
+}
@@ -0,0 +1,148 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.util.*;
+import java.util.zip.*;
+import java.io.*;
+import java.nio.file.*;
+
+/**
+ * Code to test that a LazyIMDBGraph gives the same search results as IMDBGraphImpl,
+ * both when reading plain files in place and through a block-compressed copy.
+ */
+public class LazyIMDBGraphTester {
+	// The seed for choosing actor pairs.
+	private static final long SEED = 2103;
+
+	/**
+	 * Returns the names along a path, or null if there is no path.
+	 */
+	private static List<String> names (List<Node> path) {
+		if (path == null) {
+			return null;
+		}
+		final List<String> answer = new ArrayList<String>();
+		for (Node node : path) {
+			answer.add(node.getName());
+		}
+		return answer;
+	}
+
+	/**
+	 * Checks random actor pairs of the two graphs against each other.
+	 * @param expected the fully loaded graph.
+	 * @param actual the lazily loaded graph.
+	 * @param numPairs the number of pairs to check.
+	 */
+	private void assertSamePaths (IMDBGraph expected, LazyIMDBGraph actual, int numPairs) {
+		final GraphSearchEngine searchEngine = new GraphSearchEngineImpl();
+		final List<Node> actors = new ArrayList<Node>(expected.getActors());
+		assertEquals(expected.getActors().size(), actual.getActors().size());
+		assertEquals(expected.getMovies().size(), actual.getMovies().size());
+
+		final Random random = new Random(SEED);
+		for (int i = 0; i < numPairs; i++) {
+			final String name1 = actors.get(random.nextInt(actors.size())).getName();
+			final String name2 = actors.get(random.nextInt(actors.size())).getName();
+			assertEquals(name1, actual.getActor(name1).getName());
+			assertEquals(names(searchEngine.findShortestPath(expected.getActor(name1), expected.getActor(name2))),
+					names(searchEngine.findShortestPath(actual.getActor(name1), actual.getActor(name2))));
+		}
+	}
+
+	/**
+	 * Test the small test files read in place.
+	 */
+	@Test
+	@Timeout(10)
+	void testPlainFiles () throws IOException {
+		final String actors = IMDBGraphImpl.IMDB_DIRECTORY + "/testActors.tsv";
+		final String titles = IMDBGraphImpl.IMDB_DIRECTORY + "/testMovies.tsv";
+		try (LazyIMDBGraph graph = new LazyIMDBGraph(actors, titles, 4)) {
+			assertSamePaths(new IMDBGraphImpl(actors, titles), graph, 50);
+			assertNull(graph.getActor("Nobody"));
+			assertEquals("Movie3", graph.getMovie("Movie3").getName());
+		}
+	}
+
+	/**
+	 * Test the larger sample files after gzipping them, which forces a block-compressed copy.
+	 */
+	@Test
+	@Timeout(30)
+	void testGzippedFiles () throws IOException {
+		final String actors = IMDBGraphImpl.IMDB_DIRECTORY + "/someActors.tsv";
+		final String titles = IMDBGraphImpl.IMDB_DIRECTORY + "/someMovies.tsv";
+		final File gzippedActors = gzip(actors);
+		final File gzippedTitles = gzip(titles);
+		try (LazyIMDBGraph graph = new LazyIMDBGraph(gzippedActors.getPath(), gzippedTitles.getPath(), 16)) {
+			assertSamePaths(new IMDBGraphImpl(actors, titles), graph, 200);
+		} finally {
+			gzippedActors.delete();
+			gzippedTitles.delete();
+		}
+	}
+
+	/**
+	 * Test names that repeat, including ones that look like the suffixed names of
+	 * others, against the names IMDBGraphImpl gives them.
+	 */
+	@Test
+	@Timeout(10)
+	void testDuplicateNames () throws IOException {
+		final File actors = File.createTempFile("actors", ".tsv");
+		final File titles = File.createTempFile("titles", ".tsv");
+		actors.deleteOnExit();
+		titles.deleteOnExit();
+		Files.write(titles.toPath(), Arrays.asList(
+				"tconst\ttitleType\tprimaryTitle",
+				"t1\tmovie\tSame 2",
+				"t2\tmovie\tSame",
+				"t3\tmovie\tSame",
+				"t4\tmovie\tSame"));
+		Files.write(actors.toPath(), Arrays.asList(
+				"nconst\tprimaryName\tbirthYear\tdeathYear\tprimaryProfession\tknownForTitles",
+				"a1\tKris\t1900\t1905\tactor\tt1",
+				"a2\tKris\t1900\t1905\tactor\tt2",
+				"a3\tKris 2\t1900\t1905\tactress\tt3",
+				"a4\tKris\t1900\t1905\tactor\tt4,t1",
+				"a5\tKris 2\t1900\t1905\tactor\tt2,t3"));
+
+		final IMDBGraph expected = new IMDBGraphImpl(actors.getPath(), titles.getPath());
+		try (LazyIMDBGraph graph = new LazyIMDBGraph(actors.getPath(), titles.getPath())) {
+			final List<String> actorNames = new ArrayList<>();
+			for (Node actor : graph.getActors()) {
+				actorNames.add(actor.getName());
+			}
+			assertEquals(Arrays.asList("Kris", "Kris 2", "Kris 2 2", "Kris 3", "Kris 2 3"), actorNames);
+			final List<String> movieNames = new ArrayList<>();
+			for (Node movie : graph.getMovies()) {
+				movieNames.add(movie.getName());
+			}
+			assertEquals(Arrays.asList("Same 2", "Same", "Same 3", "Same 4"), movieNames);
+
+			for (String name : actorNames) {
+				assertNotNull(expected.getActor(name), name);
+				assertEquals(name, graph.getActor(name).getName());
+				assertEquals(names(new ArrayList<Node>(expected.getActor(name).getNeighbors())),
+						names(new ArrayList<Node>(graph.getActor(name).getNeighbors())));
+			}
+			for (String name : movieNames) {
+				assertNotNull(expected.getMovie(name), name);
+				assertEquals(name, graph.getMovie(name).getName());
+			}
+			assertNull(graph.getActor("Kris 4"));
+			assertNull(graph.getMovie("Same 5"));
+		}
+	}
+
+	/**
+	 * Writes a gzipped copy of a file to a temporary file.
+	 */
+	private static File gzip (String filename) throws IOException {
+		final File copy = File.createTempFile("imdb", ".tsv.gz");
+		try (OutputStream out = new GZIPOutputStream(new FileOutputStream(copy))) {
+			Files.copy(Paths.get(filename), out);
+		}
+		return copy;
+	}
+}
@@ -0,0 +1,25 @@
+import jdk.jfr.*;
+
+/**
+ * A JFR event emitted when IMDBGraphImpl finishes reading one of its data files.
+ * The event's own duration is the time the phase took.
+ */
+@Name("sixdegrees.LoadPhase")
+@Label("IMDB Load Phase")
+@Category("Six Degrees")
+@Description("One pass of IMDBGraphImpl over a data file")
+class LoadPhaseEvent extends Event {
+	@Label("Phase")
+	String phase;
+
+	@Label("Rows")
+	@Description("Data rows read, including skipped ones")
+	long rows;
+
+	@Label("Skipped Rows")
+	@Description("Rows that did not become a node, because they were malformed or not a movie/actor")
+	long skippedRows;
+
+	@Label("Rows Per Second")
+	double rowsPerSecond;
+}
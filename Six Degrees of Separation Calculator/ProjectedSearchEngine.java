@@ -0,0 +1,150 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * A GraphSearchEngine that runs BFS over an ActorProjection, one hop per shared
+ * movie, and expands the result back into the usual (actor, movie, actor, ...)
+ * path using each edge's witness movie. Searches that start or end at a movie
+ * fall back to GraphSearchEngineImpl on the bipartite graph.
+ *
+ * The engine reuses its search arrays between queries, so one engine must not be
+ * used by several threads at once.
+ */
+public class ProjectedSearchEngine implements GraphSearchEngine {
+	// The projection to search.
+	private final ActorProjection _projection;
+
+	// The engine used for searches involving movies.
+	private final GraphSearchEngine _fallback = new GraphSearchEngineImpl();
+
+	// The search a node was last reached in; a node is visited if this is the current search.
+	private final int[] _visitedIn;
+
+	// The actor each actor was reached from, and the position of that edge.
+	private final int[] _parents;
+	private final int[] _parentEdges;
+
+	// The BFS queue.
+	private final int[] _queue;
+
+	// The number of the current search.
+	private int _search;
+
+	/**
+	 * @param projection the projection to search.
+	 */
+	public ProjectedSearchEngine (ActorProjection projection) {
+		_projection = projection;
+		final int numActors = projection.getGraph().getNumActors();
+		_visitedIn = new int[numActors];
+		_parents = new int[numActors];
+		_parentEdges = new int[numActors];
+		_queue = new int[numActors];
+	}
+
+	/**
+	 * Finds a shortest path between two nodes.
+	 * @param s the start node.
+	 * @param t the target node.
+	 * @return a shortest path in the form (s, movie, actor, ..., t), or null if there is none.
+	 */
+	public List<Node> findShortestPath (Node s, Node t) {
+		final IndexedGraph graph = _projection.getGraph();
+		final int start = graph.getIndex(s);
+		final int target = graph.getIndex(t);
+		if (start == -1 || target == -1) {
+			return null;
+		}
+		if (!graph.isActor(start) || !graph.isActor(target)) {
+			return _fallback.findShortestPath(s, t);
+		}
+
+		// Start a new search; wrapping around the counter would make old marks look current.
+		if (++_search == Integer.MAX_VALUE) {
+			Arrays.fill(_visitedIn, 0);
+			_search = 1;
+		}
+
+		final int[] offsets = _projection.getOffsets();
+		final int[] neighbors = _projection.getNeighbors();
+		int head = 0, tail = 0;
+		_queue[tail++] = start;
+		_visitedIn[start] = _search;
+		while (head < tail) {
+			final int current = _queue[head++];
+			if (current == target) {
+				return tracePath(start, target);
+			}
+			for (int i = offsets[current]; i < offsets[current + 1]; i++) {
+				final int coStar = neighbors[i];
+				if (_visitedIn[coStar] != _search) {
+					_visitedIn[coStar] = _search;
+					_parents[coStar] = current;
+					_parentEdges[coStar] = i;
+					_queue[tail++] = coStar;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Walks the parents back from the target, putting the witness movie between every two actors.
+	 * @param start the index of the start actor.
+	 * @param target the index of the target actor.
+	 * @return the path from the start to the target.
+	 */
+	private List<Node> tracePath (int start, int target) {
+		final IndexedGraph graph = _projection.getGraph();
+		final LinkedList<Node> answer = new LinkedList<>();
+		int actor = target;
+		answer.addFirst(graph.getNode(actor));
+		while (actor != start) {
+			answer.addFirst(graph.getNode(_projection.getWitnesses()[_parentEdges[actor]]));
+			actor = _parents[actor];
+			answer.addFirst(graph.getNode(actor));
+		}
+		return new ArrayList<>(answer);
+	}
+
+	/**
+	 * Builds the projection of the given files, reports its cost, and compares query
+	 * times and path lengths with GraphSearchEngineImpl on random actor pairs.
+	 * Usage: java ProjectedSearchEngine actorsFile titlesFile [numQueries]
+	 */
+	public static void main (String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: java ProjectedSearchEngine actorsFile titlesFile [numQueries]");
+			System.exit(1);
+		}
+		final int numQueries = args.length >= 3 ? Integer.parseInt(args[2]) : 100;
+
+		final IndexedGraph graph = new IndexedGraph(new IMDBGraphImpl(args[0], args[1]));
+		final ActorProjection projection = new ActorProjection(graph);
+		System.out.println(projection);
+
+		final GraphSearchEngine bipartite = new GraphSearchEngineImpl();
+		final GraphSearchEngine projected = new ProjectedSearchEngine(projection);
+		final Random random = new Random(0);
+		long bipartiteNanos = 0, projectedNanos = 0;
+		int mismatches = 0;
+		for (int i = 0; i < numQueries; i++) {
+			final Node actor1 = graph.getNode(random.nextInt(graph.getNumActors()));
+			final Node actor2 = graph.getNode(random.nextInt(graph.getNumActors()));
+
+			long start = System.nanoTime();
+			final List<Node> expected = bipartite.findShortestPath(actor1, actor2);
+			bipartiteNanos += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			final List<Node> actual = projected.findShortestPath(actor1, actor2);
+			projectedNanos += System.nanoTime() - start;
+
+			if ((expected == null) != (actual == null) || (expected != null && expected.size() != actual.size())) {
+				mismatches++;
+			}
+		}
+		System.out.println(String.format("bipartite: %.3f ms/query, projected: %.3f ms/query, length mismatches: %d",
+				bipartiteNanos / 1e6 / numQueries, projectedNanos / 1e6 / numQueries, mismatches));
+	}
+}
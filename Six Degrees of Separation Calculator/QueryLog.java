@@ -0,0 +1,161 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * A compact binary log of findShortestPath queries. The file starts with a magic
+ * number and a version, followed by one record per query: the time the query
+ * started (relative to the start of the log), the two actor names, the length of
+ * the path found and the latency. Each distinct name is written out once, the
+ * first time it is used; after that it is referred to by its number.
+ */
+public class QueryLog {
+	// The result length of a query that found no path.
+	public static final int NO_PATH = -1;
+
+	// The result length of a query whose answer was never recorded (e.g. a synthetic one).
+	public static final int UNKNOWN = -2;
+
+	// "SIXQ" and the format version.
+	private static final int MAGIC = 0x53495851;
+	private static final int VERSION = 1;
+
+	/**
+	 * One logged query.
+	 */
+	public static class Query {
+		private final long _timeNanos;
+		private final String _startName;
+		private final String _targetName;
+		private final int _resultLength;
+		private final long _latencyNanos;
+
+		/**
+		 * @param timeNanos when the query started, relative to the start of the log.
+		 * @param startName the name of the start actor.
+		 * @param targetName the name of the target actor.
+		 * @param resultLength the number of nodes in the path found, NO_PATH or UNKNOWN.
+		 * @param latencyNanos how long the query took.
+		 */
+		public Query (long timeNanos, String startName, String targetName, int resultLength, long latencyNanos) {
+			_timeNanos = timeNanos;
+			_startName = startName;
+			_targetName = targetName;
+			_resultLength = resultLength;
+			_latencyNanos = latencyNanos;
+		}
+
+		public long getTimeNanos () {
+			return _timeNanos;
+		}
+
+		public String getStartName () {
+			return _startName;
+		}
+
+		public String getTargetName () {
+			return _targetName;
+		}
+
+		public int getResultLength () {
+			return _resultLength;
+		}
+
+		public long getLatencyNanos () {
+			return _latencyNanos;
+		}
+	}
+
+	/**
+	 * Appends queries to a new log file. Writes from several threads are serialized.
+	 */
+	public static class Writer implements Closeable {
+		private final DataOutputStream _out;
+
+		// The number given to each name already written.
+		private final HashMap<String, Integer> _nameNumbers = new HashMap<>();
+
+		/**
+		 * Creates (or overwrites) a log file.
+		 * @param filename the log file.
+		 */
+		public Writer (String filename) throws IOException {
+			_out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+			_out.writeInt(MAGIC);
+			_out.writeInt(VERSION);
+		}
+
+		/**
+		 * Appends one query to the log.
+		 * @param query the query.
+		 */
+		public synchronized void write (Query query) throws IOException {
+			_out.writeLong(query._timeNanos);
+			writeName(query._startName);
+			writeName(query._targetName);
+			_out.writeInt(query._resultLength);
+			_out.writeLong(query._latencyNanos);
+		}
+
+		/**
+		 * Writes the number of a name, followed by the name itself if it is new.
+		 */
+		private void writeName (String name) throws IOException {
+			final Integer number = _nameNumbers.get(name);
+			if (number != null) {
+				_out.writeInt(number);
+				return;
+			}
+			_out.writeInt(_nameNumbers.size());
+			_out.writeUTF(name);
+			_nameNumbers.put(name, _nameNumbers.size());
+		}
+
+		public synchronized void flush () throws IOException {
+			_out.flush();
+		}
+
+		public synchronized void close () throws IOException {
+			_out.close();
+		}
+	}
+
+	/**
+	 * Reads every query in a log file.
+	 * @param filename the log file.
+	 * @return the queries, in the order they were logged.
+	 */
+	public static List<Query> read (String filename) throws IOException {
+		final List<Query> queries = new ArrayList<>();
+		final List<String> names = new ArrayList<>();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException(filename + " is not a query log");
+			}
+			while (true) {
+				final long timeNanos;
+				try {
+					timeNanos = in.readLong();
+				} catch (EOFException eofe) {
+					break;
+				}
+				final String startName = readName(in, names);
+				final String targetName = readName(in, names);
+				queries.add(new Query(timeNanos, startName, targetName, in.readInt(), in.readLong()));
+			}
+		}
+		return queries;
+	}
+
+	/**
+	 * Reads the number of a name, and the name itself if it is new.
+	 */
+	private static String readName (DataInputStream in, List<String> names) throws IOException {
+		final int number = in.readInt();
+		if (number == names.size()) {
+			names.add(in.readUTF());
+		} else if (number > names.size() || number < 0) {
+			throw new IOException("Bad name number " + number);
+		}
+		return names.get(number);
+	}
+}
@@ -0,0 +1,84 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.util.*;
+import java.io.*;
+
+/**
+ * Code to test recording queries to a QueryLog and replaying them.
+ */
+public class QueryLogTester {
+	// The IMDBGraph the queries run on.
+	private IMDBGraph _graph;
+
+	// The log file used by each test.
+	private File _logFile;
+
+	/**
+	 * Loads the test data and picks a log file before each test.
+	 */
+	@BeforeEach
+	void setup () throws IOException {
+		_graph = new IMDBGraphImpl(IMDBGraphImpl.IMDB_DIRECTORY + "/testActors.tsv",
+				IMDBGraphImpl.IMDB_DIRECTORY + "/testMovies.tsv");
+		_logFile = File.createTempFile("queries", ".log");
+	}
+
+	/**
+	 * Removes the log file after each test.
+	 */
+	@AfterEach
+	void cleanup () {
+		_logFile.delete();
+	}
+
+	/**
+	 * Test that recorded queries read back with the right names and path lengths and
+	 * replay without mismatches from several threads.
+	 */
+	@Test
+	@Timeout(10)
+	void testRecordAndReplay () throws Exception {
+		try (RecordingSearchEngine recorder = new RecordingSearchEngine(new GraphSearchEngineImpl(), _logFile.getPath())) {
+			recorder.findShortestPath(_graph.getActor("Actor7"), _graph.getActor("Actor9"));
+			recorder.findShortestPath(_graph.getActor("Actor1"), _graph.getActor("Actor3"));
+			recorder.findShortestPath(_graph.getActor("Actor7"), _graph.getActor("Actor1"));
+		}
+
+		final List<QueryLog.Query> queries = QueryLog.read(_logFile.getPath());
+		assertEquals(3, queries.size());
+		assertEquals("Actor7", queries.get(0).getStartName());
+		assertEquals("Actor9", queries.get(0).getTargetName());
+		assertEquals(7, queries.get(0).getResultLength());
+		assertEquals(QueryLog.NO_PATH, queries.get(1).getResultLength());
+		assertEquals("Actor1", queries.get(2).getTargetName());
+
+		final WorkloadReplayer.Report report = new WorkloadReplayer(_graph, new GraphSearchEngineImpl(), 2, 0)
+				.replay(queries);
+		assertEquals(3, report.getNumQueries());
+		assertEquals(0, report.getMismatches());
+		assertEquals(0, report.getMissing());
+	}
+
+	/**
+	 * Test that a synthetic workload only names actors in the graph and favors the best connected ones.
+	 */
+	@Test
+	@Timeout(10)
+	void testZipfWorkload () throws Exception {
+		final List<QueryLog.Query> queries = new ZipfWorkloadGenerator(_graph, 2).generate(1000, 0);
+		int connected = 0;
+		for (QueryLog.Query query : queries) {
+			assertNotNull(_graph.getActor(query.getStartName()));
+			assertNotNull(_graph.getActor(query.getTargetName()));
+			if (_graph.getActor(query.getStartName()).getNeighbors().size() == 2) {
+				connected++;
+			}
+		}
+		assertTrue(connected > queries.size() / 2);
+
+		final WorkloadReplayer.Report report = new WorkloadReplayer(_graph, new GraphSearchEngineImpl(), 4, 20000)
+				.replay(queries);
+		assertEquals(1000, report.getNumQueries());
+		assertEquals(0, report.getMismatches());
+	}
+}
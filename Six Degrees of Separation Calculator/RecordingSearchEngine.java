@@ -0,0 +1,57 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * A GraphSearchEngine that passes every query on to another engine and records
+ * the actor names, the length of the path found and the latency in a QueryLog.
+ */
+public class RecordingSearchEngine implements GraphSearchEngine, Closeable {
+	// The engine that answers the queries.
+	private final GraphSearchEngine _engine;
+
+	// The log the queries are recorded to.
+	private final QueryLog.Writer _log;
+
+	// The time the log was started.
+	private final long _startNanos;
+
+	/**
+	 * @param engine the engine that answers the queries.
+	 * @param logFilename the log file to create.
+	 */
+	public RecordingSearchEngine (GraphSearchEngine engine, String logFilename) throws IOException {
+		_engine = engine;
+		_log = new QueryLog.Writer(logFilename);
+		_startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Finds a shortest path with the wrapped engine and records the query.
+	 * @param s the start node.
+	 * @param t the target node.
+	 * @return the path the wrapped engine found, or null if there is none.
+	 */
+	public List<Node> findShortestPath (Node s, Node t) {
+		final long start = System.nanoTime();
+		final List<Node> path = _engine.findShortestPath(s, t);
+		final long latency = System.nanoTime() - start;
+		try {
+			_log.write(new QueryLog.Query(start - _startNanos, s.getName(), t.getName(),
+					path == null ? QueryLog.NO_PATH : path.size(), latency));
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+		return path;
+	}
+
+	/**
+	 * Writes out any buffered records.
+	 */
+	public void flush () throws IOException {
+		_log.flush();
+	}
+
+	public void close () throws IOException {
+		_log.close();
+	}
+}
@@ -0,0 +1,22 @@
+import jdk.jfr.*;
+
+/**
+ * A JFR event emitted for every findShortestPath query. The event's own duration
+ * is the query latency. When the event is not enabled in the running recording,
+ * it costs a check of shouldCommit and nothing is recorded.
+ */
+@Name("sixdegrees.Search")
+@Label("Shortest Path Search")
+@Category("Six Degrees")
+@Description("One findShortestPath query")
+class SearchEvent extends Event {
+	@Label("Nodes Expanded")
+	long nodesExpanded;
+
+	@Label("Max Frontier Size")
+	int maxFrontierSize;
+
+	@Label("Path Length")
+	@Description("Number of nodes in the path found, or -1 if there is none")
+	int pathLength;
+}
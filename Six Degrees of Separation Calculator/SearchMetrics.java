@@ -0,0 +1,231 @@
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import javax.management.*;
+
+/**
+ * Collects search and loading statistics for the whole JVM and publishes them as
+ * the MXBean "sixdegrees:type=SearchMetrics". Collection starts enabled unless the
+ * system property sixdegrees.metrics is "false", and can be switched at runtime
+ * through the MXBean. When it is off, the instrumented code only reads a volatile
+ * flag and skips the timing and the shared counters.
+ */
+public class SearchMetrics implements SearchMetricsMXBean {
+	// The name the MXBean is registered under.
+	public static final String OBJECT_NAME = "sixdegrees:type=SearchMetrics";
+
+	// Bucket i of the latency histogram counts latencies of at most 2^i microseconds.
+	private static final int NUM_BUCKETS = 32;
+
+	// The number of most recent loading phases kept.
+	private static final int MAX_LOAD_PHASES = 64;
+
+	// The one instance, registered with the platform MBean server when first used.
+	private static final SearchMetrics INSTANCE = new SearchMetrics();
+
+	// Whether statistics are being collected.
+	private static volatile boolean _enabled = !"false".equals(System.getProperty("sixdegrees.metrics"));
+
+	private final LongAdder _queries = new LongAdder();
+	private final LongAdder _queriesWithoutPath = new LongAdder();
+	private final LongAdder _nodesExpanded = new LongAdder();
+	private final AtomicLong _maxFrontierSize = new AtomicLong();
+	private final AtomicLongArray _latencyHistogram = new AtomicLongArray(NUM_BUCKETS);
+	private final List<LoadPhase> _loadPhases = new CopyOnWriteArrayList<>();
+
+	/**
+	 * The statistics of one pass of the loader over a data file.
+	 */
+	public static class LoadPhase {
+		private final String _phase;
+		private final long _rows;
+		private final long _skippedRows;
+		private final double _rowsPerSecond;
+
+		LoadPhase (String phase, long rows, long skippedRows, double rowsPerSecond) {
+			_phase = phase;
+			_rows = rows;
+			_skippedRows = skippedRows;
+			_rowsPerSecond = rowsPerSecond;
+		}
+
+		public String getPhase () {
+			return _phase;
+		}
+
+		public long getRows () {
+			return _rows;
+		}
+
+		public long getSkippedRows () {
+			return _skippedRows;
+		}
+
+		public double getRowsPerSecond () {
+			return _rowsPerSecond;
+		}
+
+		public String toString () {
+			return String.format("%s: %d rows (%d skipped), %.0f rows/s", _phase, _rows, _skippedRows, _rowsPerSecond);
+		}
+	}
+
+	static {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+		} catch (JMException | SecurityException e) {
+			// The statistics are still collected; they are just not visible over JMX.
+		}
+	}
+
+	private SearchMetrics () {
+	}
+
+	/**
+	 * Returns the metrics of this JVM.
+	 * @return the one SearchMetrics instance.
+	 */
+	public static SearchMetrics get () {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns whether statistics are being collected. Instrumented code checks this
+	 * before doing any timing.
+	 * @return true if enabled.
+	 */
+	public static boolean enabled () {
+		return _enabled;
+	}
+
+	/**
+	 * Records one query.
+	 * @param latencyNanos how long the query took.
+	 * @param nodesExpanded the number of nodes the query expanded.
+	 * @param maxFrontierSize the largest size the frontier reached.
+	 * @param pathLength the number of nodes in the path found, or -1 if there is none.
+	 */
+	public void recordSearch (long latencyNanos, long nodesExpanded, int maxFrontierSize, int pathLength) {
+		_queries.increment();
+		if (pathLength < 0) {
+			_queriesWithoutPath.increment();
+		}
+		_nodesExpanded.add(nodesExpanded);
+		_maxFrontierSize.accumulateAndGet(maxFrontierSize, Math::max);
+
+		// The bucket is the number of bits needed for the latency in microseconds.
+		final long micros = Math.max(latencyNanos / 1000, 1);
+		final int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros - 1), NUM_BUCKETS - 1);
+		_latencyHistogram.incrementAndGet(bucket);
+	}
+
+	/**
+	 * Records one pass of the loader over a data file, and emits a LoadPhaseEvent.
+	 * @param phase the name of the phase.
+	 * @param rows the number of data rows read.
+	 * @param skippedRows the number of rows that did not become a node.
+	 * @param elapsedNanos how long the phase took.
+	 * @param event the event begun when the phase started.
+	 */
+	public void recordLoadPhase (String phase, long rows, long skippedRows, long elapsedNanos, LoadPhaseEvent event) {
+		final double rowsPerSecond = elapsedNanos > 0 ? rows / (elapsedNanos / 1e9) : 0;
+		if (event.shouldCommit()) {
+			event.phase = phase;
+			event.rows = rows;
+			event.skippedRows = skippedRows;
+			event.rowsPerSecond = rowsPerSecond;
+			event.commit();
+		}
+		if (_enabled) {
+			_loadPhases.add(new LoadPhase(phase, rows, skippedRows, rowsPerSecond));
+			while (_loadPhases.size() > MAX_LOAD_PHASES) {
+				_loadPhases.remove(0);
+			}
+		}
+	}
+
+	public boolean isEnabled () {
+		return _enabled;
+	}
+
+	public void setEnabled (boolean enabled) {
+		_enabled = enabled;
+	}
+
+	public long getQueries () {
+		return _queries.sum();
+	}
+
+	public long getQueriesWithoutPath () {
+		return _queriesWithoutPath.sum();
+	}
+
+	public long getNodesExpanded () {
+		return _nodesExpanded.sum();
+	}
+
+	public long getMaxFrontierSize () {
+		return _maxFrontierSize.get();
+	}
+
+	public long[] getLatencyBucketBoundsMicros () {
+		final long[] bounds = new long[NUM_BUCKETS];
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			bounds[i] = 1L << i;
+		}
+		return bounds;
+	}
+
+	public long[] getLatencyHistogram () {
+		final long[] counts = new long[NUM_BUCKETS];
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			counts[i] = _latencyHistogram.get(i);
+		}
+		return counts;
+	}
+
+	public long getLatencyP50Micros () {
+		return latencyPercentile(0.5);
+	}
+
+	public long getLatencyP99Micros () {
+		return latencyPercentile(0.99);
+	}
+
+	/**
+	 * Returns the upper bound of the bucket holding the given fraction of queries.
+	 * @param fraction a fraction between 0 and 1.
+	 * @return the bucket bound in microseconds, or 0 if nothing has been recorded.
+	 */
+	private long latencyPercentile (double fraction) {
+		final long[] counts = getLatencyHistogram();
+		long total = 0;
+		for (long count : counts) {
+			total += count;
+		}
+		long seen = 0;
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			seen += counts[i];
+			if (seen > 0 && seen >= fraction * total) {
+				return 1L << i;
+			}
+		}
+		return 0;
+	}
+
+	public List<LoadPhase> getLoadPhases () {
+		return new ArrayList<>(_loadPhases);
+	}
+
+	public void reset () {
+		_queries.reset();
+		_queriesWithoutPath.reset();
+		_nodesExpanded.reset();
+		_maxFrontierSize.set(0);
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			_latencyHistogram.set(i, 0);
+		}
+		_loadPhases.clear();
+	}
+}
@@ -0,0 +1,77 @@
+import java.util.*;
+
+/**
+ * Management interface for the search and loading statistics kept by SearchMetrics.
+ */
+public interface SearchMetricsMXBean {
+	/**
+	 * Returns whether statistics are currently being collected.
+	 * @return true if enabled.
+	 */
+	boolean isEnabled ();
+
+	/**
+	 * Turns the collection of statistics on or off.
+	 * @param enabled true to collect statistics.
+	 */
+	void setEnabled (boolean enabled);
+
+	/**
+	 * Returns the number of queries recorded.
+	 * @return the number of queries.
+	 */
+	long getQueries ();
+
+	/**
+	 * Returns the number of queries that found no path.
+	 * @return the number of queries without a path.
+	 */
+	long getQueriesWithoutPath ();
+
+	/**
+	 * Returns the total number of nodes expanded by all queries.
+	 * @return the number of nodes expanded.
+	 */
+	long getNodesExpanded ();
+
+	/**
+	 * Returns the largest frontier any query has had.
+	 * @return the largest frontier size.
+	 */
+	long getMaxFrontierSize ();
+
+	/**
+	 * Returns the upper bound, in microseconds, of every latency histogram bucket.
+	 * @return the bucket bounds.
+	 */
+	long[] getLatencyBucketBoundsMicros ();
+
+	/**
+	 * Returns the number of queries in every latency histogram bucket.
+	 * @return the bucket counts.
+	 */
+	long[] getLatencyHistogram ();
+
+	/**
+	 * Returns the upper bound of the histogram bucket holding the median latency.
+	 * @return the median latency in microseconds, rounded up to a bucket bound.
+	 */
+	long getLatencyP50Micros ();
+
+	/**
+	 * Returns the upper bound of the histogram bucket holding the 99th percentile latency.
+	 * @return the 99th percentile latency in microseconds, rounded up to a bucket bound.
+	 */
+	long getLatencyP99Micros ();
+
+	/**
+	 * Returns the statistics of the most recent loading phases, oldest first.
+	 * @return the loading phases.
+	 */
+	List<SearchMetrics.LoadPhase> getLoadPhases ();
+
+	/**
+	 * Clears the search statistics and loading phases.
+	 */
+	void reset ();
+}
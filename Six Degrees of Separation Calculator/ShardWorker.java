@@ -0,0 +1,248 @@
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * A worker process that holds one shard of the IMDB graph. Nodes are assigned to
+ * shards by hashing their IMDB ids (nconst for actors, tconst for movies), and the
+ * worker answers batched requests from a ShardedSearchEngine for the neighbors and
+ * names of the nodes it owns.
+ *
+ * The data files are streamed row by row and only the owned nodes, their names
+ * and their neighbor lists are kept. While loading, the worker also keeps the ids
+ * of all the movies, so that actors only get movie neighbors, and the names used
+ * so far, so that duplicate names get the same suffixes as in IMDBGraphImpl; both
+ * are dropped once the shard is loaded.
+ *
+ * Usage: java ShardWorker port shardId numShards actorsFile titlesFile
+ * A port of 0 picks a free port; once the shard is loaded the worker prints
+ * "READY port" on its standard output.
+ */
+public class ShardWorker {
+	// Request: int count, then count node keys. Reply: for each key, its degree
+	// (or -1 if the node is unknown) followed by that many neighbor keys.
+	public static final int EXPAND = 1;
+
+	// Request: nothing. Reply: the number of nodes and then the number of neighbor entries held.
+	public static final int STATS = 2;
+
+	// Request: nothing. No reply; the worker exits.
+	public static final int SHUTDOWN = 3;
+
+	// Request: int count, then count actor names. Reply: for each name, whether this
+	// shard owns the actor, and if so the actor's key.
+	public static final int FIND = 4;
+
+	// Request: int count, then count node keys. Reply: for each key, whether this
+	// shard owns the node, and if so the node's name.
+	public static final int NAMES = 5;
+
+	// The neighbors, in graph order, of every node this shard owns.
+	private final Map<String, String[]> _neighbors = new HashMap<>();
+
+	// The name of every node this shard owns.
+	private final Map<String, String> _names = new HashMap<>();
+
+	// The key of every actor this shard owns, by name.
+	private final Map<String, String> _actorKeys = new HashMap<>();
+
+	// The total number of neighbor entries held.
+	private long _numEntries;
+
+	/**
+	 * Returns the key of an actor. Keys keep actors and movies with the same id apart.
+	 * @param id the nconst of the actor.
+	 * @return the key of the actor.
+	 */
+	public static String actorKey (String id) {
+		return "a" + id;
+	}
+
+	/**
+	 * Returns the key of a movie.
+	 * @param id the tconst of the movie.
+	 * @return the key of the movie.
+	 */
+	public static String movieKey (String id) {
+		return "m" + id;
+	}
+
+	/**
+	 * Returns the shard that owns the node with the given key.
+	 * @param key the node key.
+	 * @param numShards the number of shards.
+	 * @return the shard id, from 0 to numShards - 1.
+	 */
+	public static int shardOf (String key, int numShards) {
+		return Math.floorMod(key.hashCode(), numShards);
+	}
+
+	/**
+	 * Loads the shard with the given id, reading each data file once.
+	 * @param shardId the id of this shard.
+	 * @param numShards the number of shards.
+	 * @param actorsFilename full path to the actor data file.
+	 * @param titlesFilename full path to the movie titles file.
+	 */
+	public ShardWorker (int shardId, int numShards, String actorsFilename, String titlesFilename) throws IOException {
+		// First the movie titles.
+		final Set<String> movieIds = new HashSet<>();
+		final Map<String, List<String>> movieActors = new HashMap<>();
+		Set<String> names = new HashSet<>();
+		try (BufferedReader reader = openRows(titlesFilename)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				final String[] fields = line.split("\t");
+				final int NUM_REQUIRED_FIELDS = 3;
+				if (fields.length >= NUM_REQUIRED_FIELDS && fields[1].contains("movie")) {
+					final String title = IMDBGraphImpl.ensureUniqueName(fields[2], names);
+					names.add(title);
+					movieIds.add(fields[0]);
+					final String key = movieKey(fields[0]);
+					if (shardOf(key, numShards) == shardId) {
+						_names.put(key, title);
+						movieActors.put(key, new ArrayList<>());
+					}
+				}
+			}
+		}
+
+		// Now the actors, adding each owned actor and the owned movies it is known for.
+		names = new HashSet<>();
+		try (BufferedReader reader = openRows(actorsFilename)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				final String[] fields = line.split("\t");
+				final int NUM_REQUIRED_FIELDS = 6;
+				if (fields.length < NUM_REQUIRED_FIELDS
+						|| !(fields[4].contains("actor") || fields[4].contains("actress"))) {
+					continue;
+				}
+				final String name = IMDBGraphImpl.ensureUniqueName(fields[1], names);
+				names.add(name);
+				final String key = actorKey(fields[0]);
+				final boolean owned = shardOf(key, numShards) == shardId;
+
+				final List<String> movies = new ArrayList<>();
+				for (String movie : fields[5].split(",")) {
+					if (movieIds.contains(movie)) {
+						movies.add(movieKey(movie));
+						final List<String> actors = movieActors.get(movieKey(movie));
+						if (actors != null) {
+							actors.add(key);
+						}
+					}
+				}
+				if (owned) {
+					_names.put(key, name);
+					_actorKeys.put(name, key);
+					add(key, movies);
+				}
+			}
+		}
+		for (Map.Entry<String, List<String>> entry : movieActors.entrySet()) {
+			add(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Opens a data file, which may be gzipped, and skips its header row.
+	 * @param filename full path to the data file.
+	 * @return a reader positioned at the first data row.
+	 */
+	private static BufferedReader openRows (String filename) throws IOException {
+		InputStream inputStream = new FileInputStream(filename);
+		if (filename.endsWith(".gz")) {
+			inputStream = new GZIPInputStream(inputStream);
+		}
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "ISO-8859-1"));
+		reader.readLine();  // skip first line
+		return reader;
+	}
+
+	/**
+	 * Stores the neighbors of an owned node.
+	 * @param key the key of the node.
+	 * @param neighbors the keys of its neighbors, in graph order.
+	 */
+	private void add (String key, List<String> neighbors) {
+		_neighbors.put(key, neighbors.toArray(new String[0]));
+		_numEntries += neighbors.size();
+	}
+
+	/**
+	 * Answers requests from one coordinator until it shuts the worker down or disconnects.
+	 * @param socket the connection to the coordinator.
+	 * @return true if the coordinator asked the worker to shut down.
+	 */
+	private boolean serve (Socket socket) throws IOException {
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		while (true) {
+			final int request;
+			try {
+				request = in.readInt();
+			} catch (EOFException eofe) {
+				return false;
+			}
+
+			if (request == EXPAND) {
+				final int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					final String[] neighbors = _neighbors.get(in.readUTF());
+					if (neighbors == null) {
+						out.writeInt(-1);
+						continue;
+					}
+					out.writeInt(neighbors.length);
+					for (String neighbor : neighbors) {
+						out.writeUTF(neighbor);
+					}
+				}
+				out.flush();
+			} else if (request == FIND || request == NAMES) {
+				final Map<String, String> map = request == FIND ? _actorKeys : _names;
+				final int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					final String value = map.get(in.readUTF());
+					out.writeBoolean(value != null);
+					if (value != null) {
+						out.writeUTF(value);
+					}
+				}
+				out.flush();
+			} else if (request == STATS) {
+				out.writeLong(_neighbors.size());
+				out.writeLong(_numEntries);
+				out.flush();
+			} else if (request == SHUTDOWN) {
+				return true;
+			} else {
+				throw new IOException("Unknown request " + request);
+			}
+		}
+	}
+
+	public static void main (String[] args) throws IOException {
+		if (args.length < 5) {
+			System.out.println("Usage: java ShardWorker port shardId numShards actorsFile titlesFile");
+			System.exit(1);
+		}
+
+		final ShardWorker worker = new ShardWorker(Integer.parseInt(args[1]), Integer.parseInt(args[2]), args[3],
+				args[4]);
+		try (ServerSocket serverSocket = new ServerSocket(Integer.parseInt(args[0]), 1,
+				InetAddress.getLoopbackAddress())) {
+			System.out.println("READY " + serverSocket.getLocalPort());
+			System.out.flush();
+			boolean shutdown = false;
+			while (!shutdown) {
+				try (Socket socket = serverSocket.accept()) {
+					socket.setTcpNoDelay(true);
+					shutdown = worker.serve(socket);
+				}
+			}
+		}
+	}
+}
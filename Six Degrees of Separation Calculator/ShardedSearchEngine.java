@@ -0,0 +1,396 @@
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * A GraphSearchEngine whose graph is split across ShardWorker processes. The
+ * engine acts as the coordinator of a level-synchronous BFS: each level, the
+ * frontier is grouped by owning shard, sent to every worker as one batch, and
+ * the neighbor lists that come back are merged in frontier order. Because the
+ * merge visits neighbors in exactly the order the single-process BFS would, the
+ * engine returns the same paths as GraphSearchEngineImpl.
+ *
+ * The search takes the names of the start and target nodes as actor names, which
+ * the workers resolve to node keys. The nodes in the returned paths carry their
+ * names and ask the owning worker for their neighbors.
+ */
+public class ShardedSearchEngine implements GraphSearchEngine, Closeable {
+	// The connections to the workers, indexed by shard id.
+	private final Socket[] _sockets;
+	private final DataInputStream[] _inputs;
+	private final DataOutputStream[] _outputs;
+
+	// The worker processes this engine launched itself (empty if it only connected).
+	private final List<Process> _processes = new ArrayList<>();
+
+	/**
+	 * A node of a path returned by the sharded engine. Its name is known locally,
+	 * and its neighbors are fetched from the owning worker when asked for.
+	 */
+	private class ShardNode implements Node {
+		private final String _key;
+		private final String _name;
+
+		ShardNode (String key, String name) {
+			_key = key;
+			_name = name;
+		}
+
+		public String getName () {
+			return _name;
+		}
+
+		public Collection<? extends Node> getNeighbors () {
+			try {
+				return nodes(expand(Collections.singletonList(_key)).get(0));
+			} catch (IOException ioe) {
+				throw new UncheckedIOException(ioe);
+			}
+		}
+
+		public boolean equals (Object other) {
+			return other instanceof ShardNode && ((ShardNode) other)._key.equals(_key);
+		}
+
+		public int hashCode () {
+			return _key.hashCode();
+		}
+
+		public String toString () {
+			return _name;
+		}
+	}
+
+	/**
+	 * Connects to workers that are already running on this machine.
+	 * @param ports the port of each worker, indexed by shard id.
+	 */
+	public ShardedSearchEngine (int[] ports) throws IOException {
+		_sockets = new Socket[ports.length];
+		_inputs = new DataInputStream[ports.length];
+		_outputs = new DataOutputStream[ports.length];
+		for (int i = 0; i < ports.length; i++) {
+			_sockets[i] = new Socket(InetAddress.getLoopbackAddress(), ports[i]);
+			_sockets[i].setTcpNoDelay(true);
+			_inputs[i] = new DataInputStream(new BufferedInputStream(_sockets[i].getInputStream()));
+			_outputs[i] = new DataOutputStream(new BufferedOutputStream(_sockets[i].getOutputStream()));
+		}
+	}
+
+	/**
+	 * Launches numShards worker processes, waits for each to load its shard and
+	 * connects to them. The workers get the classpath entry this class was loaded
+	 * from, which holds ShardWorker too, rather than java.class.path, which names
+	 * only the launcher when this JVM was started with -jar.
+	 * @param numShards the number of worker processes.
+	 * @param actorsFilename full path to the actor data file.
+	 * @param titlesFilename full path to the movie titles file.
+	 * @return an engine that shuts the workers down when closed.
+	 */
+	public static ShardedSearchEngine launch (int numShards, String actorsFilename, String titlesFilename)
+			throws IOException {
+		final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		final String classPath;
+		try {
+			classPath = Paths.get(ShardWorker.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+					.toString();
+		} catch (URISyntaxException use) {
+			throw new IOException(use);
+		}
+		final List<Process> processes = new ArrayList<>();
+		final int[] ports = new int[numShards];
+		try {
+			// Start all the workers first so they load their shards in parallel.
+			for (int i = 0; i < numShards; i++) {
+				final ProcessBuilder builder = new ProcessBuilder(java, "-cp", classPath,
+						"ShardWorker", "0", Integer.toString(i), Integer.toString(numShards), actorsFilename,
+						titlesFilename);
+				builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+				processes.add(builder.start());
+			}
+
+			// Skip the loading progress output until each worker reports its port.
+			for (int i = 0; i < numShards; i++) {
+				final BufferedReader reader = new BufferedReader(
+						new InputStreamReader(processes.get(i).getInputStream(), "ISO-8859-1"));
+				String line;
+				while ((line = reader.readLine()) != null && !line.startsWith("READY ")) {
+				}
+				if (line == null) {
+					throw new IOException("Worker " + i + " exited before it was ready");
+				}
+				ports[i] = Integer.parseInt(line.substring("READY ".length()).trim());
+
+				// Keep draining the output so the worker never blocks on a full pipe.
+				final Thread drain = new Thread(() -> {
+					try {
+						while (reader.readLine() != null) {
+						}
+					} catch (IOException ioe) {
+					}
+				});
+				drain.setDaemon(true);
+				drain.start();
+			}
+
+			final ShardedSearchEngine engine = new ShardedSearchEngine(ports);
+			engine._processes.addAll(processes);
+			return engine;
+		} catch (IOException ioe) {
+			for (Process process : processes) {
+				process.destroy();
+			}
+			throw ioe;
+		}
+	}
+
+	/**
+	 * Returns the number of shards.
+	 * @return the number of workers this engine talks to.
+	 */
+	public int getNumShards () {
+		return _sockets.length;
+	}
+
+	/**
+	 * Finds a shortest path between the actors with the names of s and t.
+	 * @param s the start node; only its name is used.
+	 * @param t the target node; only its name is used.
+	 * @return a shortest path, or null if no path exists.
+	 */
+	public List<Node> findShortestPath (Node s, Node t) {
+		try {
+			return findShortestPath(s.getName(), t.getName());
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+	}
+
+	/**
+	 * Finds a shortest path between two actors.
+	 * @param startName the name of the start actor.
+	 * @param targetName the name of the target actor.
+	 * @return a shortest path, or null if no path exists (or either actor is unknown).
+	 */
+	public List<Node> findShortestPath (String startName, String targetName) throws IOException {
+		// There is no path if no shard knows one of the actors.
+		final String[] keys = find(startName, targetName);
+		final String start = keys[0];
+		final String target = keys[1];
+		if (start == null || target == null) {
+			return null;
+		}
+
+		// A map with node keys as keys and the parent keys as values; it is also the visited set.
+		final HashMap<String, String> parent = new HashMap<>();
+		parent.put(start, null);
+		if (start.equals(target)) {
+			return tracePath(parent, target);
+		}
+
+		List<String> frontier = Collections.singletonList(start);
+		while (!frontier.isEmpty()) {
+			final List<String[]> neighborLists = expand(frontier);
+
+			// Merge the neighbor lists in frontier order, exactly as a single BFS queue would.
+			final List<String> next = new ArrayList<>();
+			for (int i = 0; i < frontier.size(); i++) {
+				final String[] neighbors = neighborLists.get(i);
+				if (neighbors == null) {
+					continue;
+				}
+				for (String neighbor : neighbors) {
+					if (!parent.containsKey(neighbor)) {
+						parent.put(neighbor, frontier.get(i));
+						next.add(neighbor);
+
+						// The parent of a node is fixed when it is first found, so the
+						// path is already known once the target shows up.
+						if (neighbor.equals(target)) {
+							return tracePath(parent, target);
+						}
+					}
+				}
+			}
+			frontier = next;
+		}
+		return null;
+	}
+
+	/**
+	 * Asks every worker for the keys of the actors with the given names; at most one
+	 * worker owns each of them.
+	 * @param names the actor names.
+	 * @return the key of each actor, or null for actors no worker knows.
+	 */
+	private String[] find (String... names) throws IOException {
+		for (int shard = 0; shard < _sockets.length; shard++) {
+			_outputs[shard].writeInt(ShardWorker.FIND);
+			_outputs[shard].writeInt(names.length);
+			for (String name : names) {
+				_outputs[shard].writeUTF(name);
+			}
+			_outputs[shard].flush();
+		}
+		final String[] keys = new String[names.length];
+		for (int shard = 0; shard < _sockets.length; shard++) {
+			for (int i = 0; i < names.length; i++) {
+				if (_inputs[shard].readBoolean()) {
+					keys[i] = _inputs[shard].readUTF();
+				}
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Groups the positions of a list of node keys by the shard that owns them.
+	 * @param keys the node keys.
+	 * @return for every shard, the positions in keys of the nodes it owns, in order.
+	 */
+	private int[][] groupByShard (List<String> keys) {
+		final int numShards = _sockets.length;
+		final int[][] positions = new int[numShards][];
+		final int[] counts = new int[numShards];
+		final int[] shards = new int[keys.size()];
+		for (int i = 0; i < keys.size(); i++) {
+			shards[i] = ShardWorker.shardOf(keys.get(i), numShards);
+			counts[shards[i]]++;
+		}
+		for (int shard = 0; shard < numShards; shard++) {
+			positions[shard] = new int[counts[shard]];
+			counts[shard] = 0;
+		}
+		for (int i = 0; i < keys.size(); i++) {
+			positions[shards[i]][counts[shards[i]]++] = i;
+		}
+		return positions;
+	}
+
+	/**
+	 * Sends one request with a batch of node keys to every shard that owns some of them.
+	 * @param request the request type.
+	 * @param keys the node keys.
+	 * @param positions the positions of the keys owned by each shard, from groupByShard.
+	 */
+	private void sendBatches (int request, List<String> keys, int[][] positions) throws IOException {
+		for (int shard = 0; shard < positions.length; shard++) {
+			if (positions[shard].length > 0) {
+				_outputs[shard].writeInt(request);
+				_outputs[shard].writeInt(positions[shard].length);
+				for (int position : positions[shard]) {
+					_outputs[shard].writeUTF(keys.get(position));
+				}
+				_outputs[shard].flush();
+			}
+		}
+	}
+
+	/**
+	 * Asks the owning workers for the neighbors of every node in the frontier. All
+	 * the batches are sent before any reply is read, so the workers run in parallel.
+	 * @param frontier the node keys to expand.
+	 * @return the neighbor keys of each frontier node, in frontier order (null for unknown nodes).
+	 */
+	private List<String[]> expand (List<String> frontier) throws IOException {
+		final int[][] positions = groupByShard(frontier);
+		sendBatches(ShardWorker.EXPAND, frontier, positions);
+
+		// Read the replies back into frontier order.
+		final String[][] answer = new String[frontier.size()][];
+		for (int shard = 0; shard < positions.length; shard++) {
+			for (int position : positions[shard]) {
+				final int degree = _inputs[shard].readInt();
+				if (degree >= 0) {
+					answer[position] = new String[degree];
+					for (int i = 0; i < degree; i++) {
+						answer[position][i] = _inputs[shard].readUTF();
+					}
+				}
+			}
+		}
+		return Arrays.asList(answer);
+	}
+
+	/**
+	 * Asks the owning workers for the names of some nodes and returns the nodes.
+	 * @param keys the node keys; null is taken as no nodes.
+	 * @return the nodes, in the order of the keys, leaving out any that no worker knows.
+	 */
+	private List<Node> nodes (String[] keys) throws IOException {
+		final List<Node> answer = new ArrayList<>();
+		if (keys == null) {
+			return answer;
+		}
+		final List<String> keyList = Arrays.asList(keys);
+		final int[][] positions = groupByShard(keyList);
+		sendBatches(ShardWorker.NAMES, keyList, positions);
+
+		final String[] names = new String[keys.length];
+		for (int shard = 0; shard < positions.length; shard++) {
+			for (int position : positions[shard]) {
+				if (_inputs[shard].readBoolean()) {
+					names[position] = _inputs[shard].readUTF();
+				}
+			}
+		}
+		for (int i = 0; i < keys.length; i++) {
+			if (names[i] != null) {
+				answer.add(new ShardNode(keys[i], names[i]));
+			}
+		}
+		return answer;
+	}
+
+	/**
+	 * Create a list of the path traced back from the target node to the start in the parent map.
+	 * @param parent a map with node keys as keys and parent keys as values (null for the start).
+	 * @param target the key of the target node.
+	 * @return the list of nodes from the start to the target.
+	 */
+	private List<Node> tracePath (HashMap<String, String> parent, String target) throws IOException {
+		final LinkedList<String> keys = new LinkedList<>();
+		for (String key = target; key != null; key = parent.get(key)) {
+			keys.addFirst(key);
+		}
+		return nodes(keys.toArray(new String[0]));
+	}
+
+	/**
+	 * Returns the number of nodes and neighbor entries each worker holds.
+	 * @return for every shard, an array of {nodes, neighbor entries}.
+	 */
+	public long[][] getShardSizes () throws IOException {
+		final long[][] sizes = new long[_sockets.length][2];
+		for (int shard = 0; shard < _sockets.length; shard++) {
+			_outputs[shard].writeInt(ShardWorker.STATS);
+			_outputs[shard].flush();
+		}
+		for (int shard = 0; shard < _sockets.length; shard++) {
+			sizes[shard][0] = _inputs[shard].readLong();
+			sizes[shard][1] = _inputs[shard].readLong();
+		}
+		return sizes;
+	}
+
+	/**
+	 * Disconnects from the workers, shutting down the ones this engine launched.
+	 */
+	public void close () throws IOException {
+		for (int shard = 0; shard < _sockets.length; shard++) {
+			if (!_processes.isEmpty()) {
+				_outputs[shard].writeInt(ShardWorker.SHUTDOWN);
+				_outputs[shard].flush();
+			}
+			_sockets[shard].close();
+		}
+		for (Process process : _processes) {
+			try {
+				process.waitFor();
+			} catch (InterruptedException ie) {
+				process.destroy();
+			}
+		}
+	}
+}
@@ -0,0 +1,56 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.util.*;
+import java.io.*;
+
+/**
+ * Code to test that a ShardedSearchEngine running separate worker processes finds
+ * the same paths as the single-process GraphSearchEngineImpl.
+ */
+public class ShardedSearchEngineTester {
+	/**
+	 * Returns the names of some nodes, in order.
+	 * @param nodes the nodes.
+	 * @return their names.
+	 */
+	private static List<String> names (Collection<? extends Node> nodes) {
+		final List<String> answer = new ArrayList<>();
+		for (Node node : nodes) {
+			answer.add(node.getName());
+		}
+		return answer;
+	}
+
+	/**
+	 * Test every pair of test actors against the single-process engine with three shards.
+	 */
+	@Test
+	@Timeout(60)
+	void testSamePathsAsSingleProcess () throws IOException {
+		final String actorsFilename = IMDBGraphImpl.IMDB_DIRECTORY + "/testActors.tsv";
+		final String titlesFilename = IMDBGraphImpl.IMDB_DIRECTORY + "/testMovies.tsv";
+		final IMDBGraph graph = new IMDBGraphImpl(actorsFilename, titlesFilename);
+		final GraphSearchEngine reference = new GraphSearchEngineImpl();
+
+		try (ShardedSearchEngine sharded = ShardedSearchEngine.launch(3, actorsFilename, titlesFilename)) {
+			for (Node actor1 : graph.getActors()) {
+				for (Node actor2 : graph.getActors()) {
+					final List<Node> expected = reference.findShortestPath(actor1, actor2);
+					final List<Node> actual = sharded.findShortestPath(actor1, actor2);
+					if (expected == null) {
+						assertNull(actual);
+						continue;
+					}
+					assertEquals(expected.size(), actual.size());
+					for (int i = 0; i < expected.size(); i++) {
+						assertEquals(expected.get(i).getName(), actual.get(i).getName());
+						assertEquals(names(expected.get(i).getNeighbors()), names(actual.get(i).getNeighbors()));
+					}
+				}
+			}
+
+			// An actor that is not in the graph has no path.
+			assertNull(sharded.findShortestPath("Nobody", "Kris"));
+		}
+	}
+}
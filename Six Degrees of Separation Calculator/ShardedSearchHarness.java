@@ -0,0 +1,75 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Launches increasing numbers of ShardWorker processes on this machine, runs the
+ * same random actor pairs through each ShardedSearchEngine, and reports the query
+ * time and any paths that differ from the single-process GraphSearchEngineImpl.
+ *
+ * Usage: java ShardedSearchHarness actorsFile titlesFile [maxShards [numQueries]]
+ */
+public class ShardedSearchHarness {
+	// The seed for choosing the actor pairs, so that runs can be repeated.
+	private static final long SEED = 2103;
+
+	/**
+	 * Returns the names along a path, or null if there is no path.
+	 * @param path the path.
+	 * @return the names of the nodes on the path.
+	 */
+	private static List<String> names (List<Node> path) {
+		if (path == null) {
+			return null;
+		}
+		final List<String> answer = new ArrayList<>();
+		for (Node node : path) {
+			answer.add(node.getName());
+		}
+		return answer;
+	}
+
+	public static void main (String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: java ShardedSearchHarness actorsFile titlesFile [maxShards [numQueries]]");
+			System.exit(1);
+		}
+		final int maxShards = args.length >= 3 ? Integer.parseInt(args[2]) : 4;
+		final int numQueries = args.length >= 4 ? Integer.parseInt(args[3]) : 100;
+
+		// Compute the reference answers with the single-process engine.
+		final IMDBGraph graph = new IMDBGraphImpl(args[0], args[1]);
+		final List<Node> actors = new ArrayList<>(graph.getActors());
+		final Random random = new Random(SEED);
+		final String[][] pairs = new String[numQueries][2];
+		final List<List<String>> expected = new ArrayList<>();
+		final GraphSearchEngine reference = new GraphSearchEngineImpl();
+		for (int i = 0; i < numQueries; i++) {
+			final Node actor1 = actors.get(random.nextInt(actors.size()));
+			final Node actor2 = actors.get(random.nextInt(actors.size()));
+			pairs[i][0] = actor1.getName();
+			pairs[i][1] = actor2.getName();
+			expected.add(names(reference.findShortestPath(actor1, actor2)));
+		}
+
+		System.out.println("shards\tqueries\ttotal ms\tmean ms\tmismatches\tlargest shard nodes");
+		for (int numShards = 1; numShards <= maxShards; numShards *= 2) {
+			try (ShardedSearchEngine engine = ShardedSearchEngine.launch(numShards, args[0], args[1])) {
+				int mismatches = 0;
+				final long start = System.nanoTime();
+				for (int i = 0; i < numQueries; i++) {
+					if (!Objects.equals(expected.get(i), names(engine.findShortestPath(pairs[i][0], pairs[i][1])))) {
+						mismatches++;
+					}
+				}
+				final double totalMs = (System.nanoTime() - start) / 1e6;
+
+				long largestShard = 0;
+				for (long[] size : engine.getShardSizes()) {
+					largestShard = Math.max(largestShard, size[0]);
+				}
+				System.out.println(numShards + "\t" + numQueries + "\t" + String.format("%.1f", totalMs) + "\t"
+						+ String.format("%.3f", totalMs / numQueries) + "\t" + mismatches + "\t" + largestShard);
+			}
+		}
+	}
+}
@@ -0,0 +1,237 @@
+import java.util.*;
+
+/**
+ * The directed acyclic graph of all shortest paths from a start node to a target
+ * node. A breadth-first search records the distance of every node it reaches and,
+ * for every node, the neighbors one step closer to the start (its predecessors).
+ * Every shortest path is then a walk back from the target along predecessors, so
+ * the paths can be counted and handed out one at a time without ever storing more
+ * than the DAG itself and the path currently being built.
+ */
+public class ShortestPathDag implements Iterable<List<Node>> {
+	// Initial length of the primitive arrays; they double when full.
+	private static final int INITIAL_CAPACITY = 64;
+
+	// The node behind each local index; the start node has index 0.
+	private final ArrayList<Node> _nodes = new ArrayList<Node>();
+
+	// A map from each reached node to its local index.
+	private final HashMap<Node, Integer> _nodesToIndexes = new HashMap<Node, Integer>();
+
+	// The distance of each node from the start.
+	private int[] _distances = new int[INITIAL_CAPACITY];
+
+	// The number of predecessors of each node.
+	private int[] _numPredecessors = new int[INITIAL_CAPACITY];
+
+	// The first and last predecessor link of each node, or -1 if it has none.
+	private int[] _firstLink = new int[INITIAL_CAPACITY];
+	private int[] _lastLink = new int[INITIAL_CAPACITY];
+
+	// Predecessor links: the predecessor node and the next link of the same node.
+	private int[] _linkNode = new int[INITIAL_CAPACITY];
+	private int[] _linkNext = new int[INITIAL_CAPACITY];
+	private int _numLinks;
+
+	// The local index of the target, or -1 if it cannot be reached.
+	private int _target = -1;
+
+	/**
+	 * Builds the shortest-path DAG between two nodes.
+	 * @param start the node to start the search from.
+	 * @param target the node to search for.
+	 */
+	public ShortestPathDag (Node start, Node target) {
+		addNode(start, 0);
+
+		// A queue of local indexes; the nodes are added to _nodes in BFS order, so
+		// the queue is simply the position of the next node to expand.
+		int next = 0;
+		int targetDistance = Integer.MAX_VALUE;
+		while (next < _nodes.size()) {
+			final int current = next++;
+			final Node currentNode = _nodes.get(current);
+
+			// Test if the current node is the target; nodes at its distance or beyond
+			// can no longer be on a shortest path, so stop there.
+			if (currentNode.equals(target)) {
+				_target = current;
+				targetDistance = _distances[current];
+			}
+			if (_distances[current] >= targetDistance) {
+				break;
+			}
+
+			// Link each neighbor that is one step further away back to the current node.
+			for (Node neighbor : currentNode.getNeighbors()) {
+				Integer index = _nodesToIndexes.get(neighbor);
+				if (index == null) {
+					index = addNode(neighbor, _distances[current] + 1);
+				}
+				if (_distances[index] == _distances[current] + 1) {
+					addLink(index, current);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gives a node the next local index.
+	 * @param node the node to add.
+	 * @param distance the distance of the node from the start.
+	 * @return the local index of the node.
+	 */
+	private int addNode (Node node, int distance) {
+		final int index = _nodes.size();
+		if (index == _distances.length) {
+			_distances = Arrays.copyOf(_distances, index * 2);
+			_numPredecessors = Arrays.copyOf(_numPredecessors, index * 2);
+			_firstLink = Arrays.copyOf(_firstLink, index * 2);
+			_lastLink = Arrays.copyOf(_lastLink, index * 2);
+		}
+		_nodes.add(node);
+		_nodesToIndexes.put(node, index);
+		_distances[index] = distance;
+		_firstLink[index] = -1;
+		_lastLink[index] = -1;
+		return index;
+	}
+
+	/**
+	 * Records that one node is a predecessor of another. Links are appended so that
+	 * predecessors are kept in the order they were found.
+	 * @param node the node one step further from the start.
+	 * @param predecessor the node one step closer to the start.
+	 */
+	private void addLink (int node, int predecessor) {
+		if (_numLinks == _linkNode.length) {
+			_linkNode = Arrays.copyOf(_linkNode, _numLinks * 2);
+			_linkNext = Arrays.copyOf(_linkNext, _numLinks * 2);
+		}
+		_linkNode[_numLinks] = predecessor;
+		_linkNext[_numLinks] = -1;
+		if (_lastLink[node] == -1) {
+			_firstLink[node] = _numLinks;
+		} else {
+			_linkNext[_lastLink[node]] = _numLinks;
+		}
+		_lastLink[node] = _numLinks;
+		_numPredecessors[node]++;
+		_numLinks++;
+	}
+
+	/**
+	 * Returns the number of edges on a shortest path.
+	 * @return the distance from the start to the target, or -1 if there is no path.
+	 */
+	public int getDistance () {
+		return _target == -1 ? -1 : _distances[_target];
+	}
+
+	/**
+	 * Returns the number of distinct shortest paths, computed from the predecessor
+	 * links without enumerating them.
+	 * @return the number of shortest paths, capped at Long.MAX_VALUE.
+	 */
+	public long getNumPaths () {
+		if (_target == -1) {
+			return 0;
+		}
+
+		// Nodes are in BFS order, so every predecessor comes before the nodes it leads to.
+		final long[] counts = new long[_target + 1];
+		counts[0] = 1;
+		for (int node = 1; node <= _target; node++) {
+			for (int link = _firstLink[node]; link != -1; link = _linkNext[link]) {
+				final long sum = counts[node] + counts[_linkNode[link]];
+				counts[node] = sum < 0 ? Long.MAX_VALUE : sum;
+			}
+		}
+		return counts[_target];
+	}
+
+	/**
+	 * Returns the number of predecessors the given node has in the DAG.
+	 * @param node the node to look up.
+	 * @return the number of predecessors, or 0 if the search never reached the node.
+	 */
+	public int getNumPredecessors (Node node) {
+		final Integer index = _nodesToIndexes.get(node);
+		return index == null ? 0 : _numPredecessors[index];
+	}
+
+	/**
+	 * Returns a lazy iterator over all the shortest paths, each in the form (start, ..., target).
+	 * The first path is the one that following the first-found parent of each node gives.
+	 * @return an iterator over the shortest paths.
+	 */
+	public Iterator<List<Node>> iterator () {
+		return new PathIterator();
+	}
+
+	/**
+	 * Walks back from the target along predecessor links depth first, keeping only
+	 * the link currently followed at each distance.
+	 */
+	private class PathIterator implements Iterator<List<Node>> {
+		// The link followed out of the node at each distance from the target.
+		private final int[] _links;
+
+		// The node at each distance from the target.
+		private final int[] _path;
+
+		// Whether _path holds a path that has not been returned yet.
+		private boolean _ready;
+
+		PathIterator () {
+			final int length = getDistance() + 1;
+			_links = new int[Math.max(length, 0)];
+			_path = new int[Math.max(length, 0)];
+			if (_target != -1) {
+				_path[0] = _target;
+				descend(0);
+				_ready = true;
+			}
+		}
+
+		/**
+		 * Completes the path below the given depth by always taking the first link.
+		 * @param depth the depth whose node is already set.
+		 */
+		private void descend (int depth) {
+			for (int i = depth; i < _path.length - 1; i++) {
+				_links[i] = _firstLink[_path[i]];
+				_path[i + 1] = _linkNode[_links[i]];
+			}
+		}
+
+		public boolean hasNext () {
+			return _ready;
+		}
+
+		public List<Node> next () {
+			if (!_ready) {
+				throw new NoSuchElementException();
+			}
+
+			// Copy the current path out, start first.
+			final ArrayList<Node> answer = new ArrayList<Node>(_path.length);
+			for (int i = _path.length - 1; i >= 0; i--) {
+				answer.add(_nodes.get(_path[i]));
+			}
+
+			// Move to the next path: find the deepest node with another link to follow.
+			_ready = false;
+			for (int i = _path.length - 2; i >= 0; i--) {
+				if (_linkNext[_links[i]] != -1) {
+					_links[i] = _linkNext[_links[i]];
+					_path[i + 1] = _linkNode[_links[i]];
+					descend(i + 1);
+					_ready = true;
+					break;
+				}
+			}
+			return answer;
+		}
+	}
+}
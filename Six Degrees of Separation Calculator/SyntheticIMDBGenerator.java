@@ -0,0 +1,231 @@
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Writes synthetic name.basics and title.basics files in the IMDB TSV format, so
+ * that the loader and the search engines can be tried at IMDB scale without the
+ * real dumps. The same seed and sizes always give the same files. Rows are written
+ * one at a time and every id is derived from a row number, so files with tens of
+ * millions of rows can be generated without keeping any of them in memory.
+ *
+ * Titles are chosen for knownForTitles with a power-law popularity, so a few
+ * movies have very large casts while most have one or two actors. A fraction of
+ * the people are not actors and a fraction of the titles are not movies, and a
+ * fraction of the names are drawn from a small pool of common names, so that
+ * duplicate names reach ensureUniqueName.
+ */
+public class SyntheticIMDBGenerator {
+	public static final double DEFAULT_NON_ACTOR_FRACTION = 0.3;
+	public static final double DEFAULT_NON_MOVIE_FRACTION = 0.4;
+	public static final double DEFAULT_DUPLICATE_FRACTION = 0.05;
+
+	// The larger this is, the more the knownForTitles concentrate on the most popular titles.
+	private static final double POPULARITY_SKEW = 3;
+
+	// The chance that a person is known for 0, 1, 2, 3 and 4 titles.
+	private static final double[] KNOWN_FOR_COUNTS = { 0.1, 0.3, 0.25, 0.2, 0.15 };
+
+	private static final String[] SYLLABLES = { "ka", "lo", "mi", "ra", "ten", "vos", "del", "an", "bri", "co",
+			"du", "el", "fa", "gor", "hal", "is", "jun", "ke", "lin", "mar", "nor", "os", "pe", "qui", "ros", "sa",
+			"tor", "ul", "ven", "wil", "xa", "yor" };
+	private static final String[] FIRST_NAMES = { "James", "Mary", "John", "Patricia", "Robert", "Jennifer",
+			"Michael", "Linda", "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica" };
+	private static final String[] COMMON_TITLES = { "Hamlet", "Untitled", "Home", "The Return", "Love", "Alone" };
+	private static final String[] ACTOR_PROFESSIONS = { "actor", "actress", "actor,producer", "actress,soundtrack",
+			"actor,director,writer" };
+	private static final String[] OTHER_PROFESSIONS = { "director", "writer,producer", "composer",
+			"cinematographer", "editor" };
+	private static final String[] OTHER_TITLE_TYPES = { "tvEpisode", "short", "tvSeries", "video" };
+	private static final String[] GENRES = { "Drama", "Comedy", "Documentary", "Action", "Horror", "Romance" };
+
+	private final long _seed;
+	private final int _numActors;
+	private final int _numTitles;
+	private final double _nonActorFraction;
+	private final double _nonMovieFraction;
+	private final double _duplicateFraction;
+
+	// A multiplier coprime to _numTitles that scatters popularity ranks over the title ids.
+	private final long _scatter;
+
+	/**
+	 * Creates a generator with the default fractions.
+	 * @param seed the seed for all random choices.
+	 * @param numActors the number of rows in name.basics.
+	 * @param numTitles the number of rows in title.basics.
+	 */
+	public SyntheticIMDBGenerator (long seed, int numActors, int numTitles) {
+		this(seed, numActors, numTitles, DEFAULT_NON_ACTOR_FRACTION, DEFAULT_NON_MOVIE_FRACTION,
+				DEFAULT_DUPLICATE_FRACTION);
+	}
+
+	/**
+	 * @param seed the seed for all random choices.
+	 * @param numActors the number of rows in name.basics.
+	 * @param numTitles the number of rows in title.basics.
+	 * @param nonActorFraction the fraction of people who are not actors or actresses.
+	 * @param nonMovieFraction the fraction of titles that are not movies.
+	 * @param duplicateFraction the fraction of names and titles drawn from a small pool of common ones.
+	 */
+	public SyntheticIMDBGenerator (long seed, int numActors, int numTitles, double nonActorFraction,
+			double nonMovieFraction, double duplicateFraction) {
+		_seed = seed;
+		_numActors = numActors;
+		_numTitles = numTitles;
+		_nonActorFraction = nonActorFraction;
+		_nonMovieFraction = nonMovieFraction;
+		_duplicateFraction = duplicateFraction;
+
+		long scatter = 2654435761L % Math.max(numTitles, 1);
+		while (gcd(scatter, numTitles) != 1) {
+			scatter++;
+		}
+		_scatter = scatter;
+	}
+
+	private static long gcd (long a, long b) {
+		return b == 0 ? a : gcd(b, a % b);
+	}
+
+	/**
+	 * Returns the tconst of the title with the given row number.
+	 */
+	private static String titleId (int row) {
+		return id("tt", row + 1);
+	}
+
+	/**
+	 * Returns the nconst of the person with the given row number.
+	 */
+	private static String personId (int row) {
+		return id("nm", row + 1);
+	}
+
+	/**
+	 * Returns the prefix followed by the number padded to eight digits, like IMDB ids.
+	 */
+	private static String id (String prefix, int number) {
+		final String digits = Integer.toString(number);
+		return digits.length() >= 8 ? prefix + digits : prefix + "00000000".substring(digits.length()) + digits;
+	}
+
+	/**
+	 * Returns a made-up word that is different for every number.
+	 */
+	private static String word (long number) {
+		final StringBuilder answer = new StringBuilder();
+		do {
+			answer.append(SYLLABLES[(int) (number % SYLLABLES.length)]);
+			number /= SYLLABLES.length;
+		} while (number > 0);
+		answer.setCharAt(0, Character.toUpperCase(answer.charAt(0)));
+		return answer.toString();
+	}
+
+	/**
+	 * Opens a file for writing, gzipped if its name ends in .gz.
+	 */
+	private static PrintWriter open (String filename) throws IOException {
+		OutputStream out = new FileOutputStream(filename);
+		if (filename.endsWith(".gz")) {
+			out = new GZIPOutputStream(out, 1 << 16);
+		}
+		return new PrintWriter(new BufferedWriter(new OutputStreamWriter(out, "ISO-8859-1"), 1 << 16));
+	}
+
+	/**
+	 * Writes the title.basics file.
+	 * @param filename the file to write; gzipped if it ends in .gz.
+	 */
+	public void writeTitles (String filename) throws IOException {
+		final Random random = new Random(_seed);
+		try (PrintWriter writer = open(filename)) {
+			writer.print("tconst\ttitleType\tprimaryTitle\toriginalTitle\tisAdult\tstartYear\tendYear\truntimeMinutes\tgenres\n");
+			for (int row = 0; row < _numTitles; row++) {
+				final String type = random.nextDouble() < _nonMovieFraction
+						? OTHER_TITLE_TYPES[random.nextInt(OTHER_TITLE_TYPES.length)] : "movie";
+				final String title = random.nextDouble() < _duplicateFraction
+						? COMMON_TITLES[random.nextInt(COMMON_TITLES.length)] : word(row) + " " + word(random.nextInt(1000));
+				final int year = 1900 + random.nextInt(125);
+				writer.print(titleId(row) + "\t" + type + "\t" + title + "\t" + title + "\t0\t" + year + "\t\\N\t"
+						+ (60 + random.nextInt(120)) + "\t" + GENRES[random.nextInt(GENRES.length)] + "\n");
+			}
+		}
+	}
+
+	/**
+	 * Writes the name.basics file.
+	 * @param filename the file to write; gzipped if it ends in .gz.
+	 */
+	public void writeActors (String filename) throws IOException {
+		// Use a different stream of random numbers from the titles.
+		final Random random = new Random(~_seed);
+		try (PrintWriter writer = open(filename)) {
+			writer.print("nconst\tprimaryName\tbirthYear\tdeathYear\tprimaryProfession\tknownForTitles\n");
+			final StringBuilder knownFor = new StringBuilder();
+			for (int row = 0; row < _numActors; row++) {
+				final String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+				final String name = random.nextDouble() < _duplicateFraction
+						? first + " " + word(random.nextInt(SYLLABLES.length)) : first + " " + word(row);
+				final String profession = random.nextDouble() < _nonActorFraction
+						? OTHER_PROFESSIONS[random.nextInt(OTHER_PROFESSIONS.length)]
+						: ACTOR_PROFESSIONS[random.nextInt(ACTOR_PROFESSIONS.length)];
+
+				// Pick how many titles the person is known for and then pick them by popularity.
+				int count = 0;
+				double roll = random.nextDouble();
+				while (count < KNOWN_FOR_COUNTS.length - 1 && roll >= KNOWN_FOR_COUNTS[count]) {
+					roll -= KNOWN_FOR_COUNTS[count];
+					count++;
+				}
+				knownFor.setLength(0);
+				for (int i = 0; i < count && _numTitles > 0; i++) {
+					if (i > 0) {
+						knownFor.append(',');
+					}
+					knownFor.append(titleId(popularTitle(random)));
+				}
+				if (knownFor.length() == 0) {
+					knownFor.append("\\N");
+				}
+
+				final int birthYear = 1880 + random.nextInt(130);
+				writer.print(personId(row) + "\t" + name + "\t" + birthYear + "\t\\N\t" + profession + "\t" + knownFor
+						+ "\n");
+			}
+		}
+	}
+
+	/**
+	 * Picks a title row with a power-law popularity: the title of popularity rank r
+	 * is picked with probability roughly proportional to r^(1/POPULARITY_SKEW - 1).
+	 * Ranks are scattered over the rows so popular titles are not all at the start.
+	 * @param random the source of randomness.
+	 * @return the row number of the title.
+	 */
+	private int popularTitle (Random random) {
+		final long rank = Math.min((long) (_numTitles * Math.pow(random.nextDouble(), POPULARITY_SKEW)), _numTitles - 1);
+		return (int) (rank * _scatter % _numTitles);
+	}
+
+	/**
+	 * Usage: java SyntheticIMDBGenerator outputDirectory numActors numTitles [seed [gzip]]
+	 * Writes name.basics.tsv and title.basics.tsv (with a .gz suffix if gzip is "true").
+	 */
+	public static void main (String[] args) throws IOException {
+		if (args.length < 3) {
+			System.out.println("Usage: java SyntheticIMDBGenerator outputDirectory numActors numTitles [seed [gzip]]");
+			System.exit(1);
+		}
+		final long seed = args.length >= 4 ? Long.parseLong(args[3]) : 0;
+		final String suffix = args.length >= 5 && Boolean.parseBoolean(args[4]) ? ".tsv.gz" : ".tsv";
+
+		final SyntheticIMDBGenerator generator = new SyntheticIMDBGenerator(seed, Integer.parseInt(args[1]),
+				Integer.parseInt(args[2]));
+		final long start = System.nanoTime();
+		generator.writeTitles(args[0] + "/title.basics" + suffix);
+		generator.writeActors(args[0] + "/name.basics" + suffix);
+		System.out.println("Generated in " + (System.nanoTime() - start) / 1000000 + " ms");
+	}
+}
@@ -0,0 +1,283 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Random access to the rows of an IMDB TSV file by position. The file is read once
+ * from start to end, and every data row is handed to a visitor together with a
+ * position that readRow later accepts. Uncompressed files are read in place and a
+ * row's position is its byte offset. Gzipped files cannot be read at random, so
+ * while they are being scanned a block-compressed copy is written next to a
+ * temporary file: rows are grouped into blocks of about BLOCK_SIZE bytes that are
+ * deflated one by one, and a position is the block number and the offset in it.
+ */
+public class TsvRowStore implements Closeable {
+	// The uncompressed size at which a block of the compressed copy is closed.
+	private static final int BLOCK_SIZE = 1 << 16;
+
+	// The number of decompressed blocks kept in memory.
+	private static final int BLOCK_CACHE_SIZE = 32;
+
+	/**
+	 * Receives every data row of the file while it is being indexed.
+	 */
+	public interface RowVisitor {
+		/**
+		 * @param row the row, without its line terminator.
+		 * @param position the position to pass to readRow to read the row again.
+		 */
+		void visit (String row, long position) throws IOException;
+	}
+
+	// The file the rows are read from.
+	private final FileChannel _channel;
+
+	// For a block-compressed copy, where each block starts in the copy and its
+	// uncompressed length; null when rows are read in place.
+	private final long[] _blockOffsets;
+	private final int[] _blockLengths;
+
+	// Recently used decompressed blocks, most recent last.
+	private final LinkedHashMap<Integer, byte[]> _blockCache;
+
+	/**
+	 * Reads an ISO-8859-1 line at a time from a stream while counting bytes. The
+	 * stream is read a buffer at a time, and each line is found by scanning the
+	 * buffer for its end.
+	 */
+	private static class LineReader {
+		private final InputStream _in;
+		private final byte[] _buffer = new byte[BLOCK_SIZE];
+		private int _start;
+		private int _end;
+		private byte[] _line = new byte[256];
+		private int _length;
+		private long _position;
+
+		LineReader (InputStream in) {
+			_in = in;
+		}
+
+		/**
+		 * Reads the next line into the line buffer.
+		 * @return false at the end of the stream.
+		 */
+		boolean next () throws IOException {
+			_length = 0;
+			while (true) {
+				if (_start == _end) {
+					_end = _in.read(_buffer);
+					_start = 0;
+					if (_end <= 0) {
+						_end = 0;
+						return _length > 0;
+					}
+				}
+
+				// Copy up to the end of the line, or all that is buffered.
+				int stop = _start;
+				while (stop < _end && _buffer[stop] != '\n') {
+					stop++;
+				}
+				final int count = stop - _start;
+				if (_length + count > _line.length) {
+					_line = Arrays.copyOf(_line, Math.max(_line.length * 2, _length + count));
+				}
+				System.arraycopy(_buffer, _start, _line, _length, count);
+				_length += count;
+				_position += count;
+				if (stop < _end) {
+					_start = stop + 1;
+					_position++;
+					return true;
+				}
+				_start = _end;
+			}
+		}
+
+		/**
+		 * Returns the line just read, without a trailing carriage return.
+		 */
+		String line () {
+			final int length = _length > 0 && _line[_length - 1] == '\r' ? _length - 1 : _length;
+			return new String(_line, 0, length, StandardCharsets.ISO_8859_1);
+		}
+	}
+
+	/**
+	 * Scans the given file once, skipping the header row, and returns a store for
+	 * reading its rows again.
+	 * @param filename full path to the TSV file (optionally ending in .gz).
+	 * @param visitor receives every data row and its position.
+	 * @return the store.
+	 */
+	public static TsvRowStore index (String filename, RowVisitor visitor) throws IOException {
+		if (!filename.endsWith(".gz")) {
+			try (InputStream in = new FileInputStream(filename)) {
+				final LineReader reader = new LineReader(in);
+				reader.next();  // skip first line
+				long position = reader._position;
+				while (reader.next()) {
+					visitor.visit(reader.line(), position);
+					position = reader._position;
+				}
+			}
+			return new TsvRowStore(FileChannel.open(Paths.get(filename), StandardOpenOption.READ), null, null);
+		}
+
+		// Write the block-compressed copy while scanning.
+		final File copy = File.createTempFile("imdb", ".blocks");
+		copy.deleteOnExit();
+		long[] blockOffsets = new long[64];
+		int[] blockLengths = new int[64];
+		int numBlocks = 0;
+		try (InputStream in = new GZIPInputStream(new FileInputStream(filename), BLOCK_SIZE);
+				OutputStream out = new BufferedOutputStream(new FileOutputStream(copy))) {
+			final LineReader reader = new LineReader(in);
+			final ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_SIZE * 2);
+			final Deflater deflater = new Deflater();
+			final byte[] compressed = new byte[BLOCK_SIZE];
+			long copyOffset = 0;
+			reader.next();  // skip first line
+			boolean more = reader.next();
+			while (more) {
+				visitor.visit(reader.line(), ((long) numBlocks << 32) | block.size());
+				block.write(reader._line, 0, reader._length);
+				block.write('\n');
+				more = reader.next();
+
+				// Close the block once it is full or the file has ended.
+				if (block.size() >= BLOCK_SIZE || (!more && block.size() > 0)) {
+					if (numBlocks + 1 >= blockOffsets.length) {
+						blockOffsets = Arrays.copyOf(blockOffsets, blockOffsets.length * 2);
+						blockLengths = Arrays.copyOf(blockLengths, blockLengths.length * 2);
+					}
+					deflater.reset();
+					deflater.setInput(block.toByteArray());
+					deflater.finish();
+					while (!deflater.finished()) {
+						final int length = deflater.deflate(compressed);
+						out.write(compressed, 0, length);
+						copyOffset += length;
+					}
+					blockLengths[numBlocks] = block.size();
+					blockOffsets[++numBlocks] = copyOffset;
+					block.reset();
+				}
+			}
+			deflater.end();
+		}
+		return new TsvRowStore(FileChannel.open(copy.toPath(), StandardOpenOption.READ),
+				Arrays.copyOf(blockOffsets, numBlocks + 1), Arrays.copyOf(blockLengths, numBlocks));
+	}
+
+	/**
+	 * @param channel the file to read rows from.
+	 * @param blockOffsets the start of every block and the end of the last, or null for an uncompressed file.
+	 * @param blockLengths the uncompressed length of every block, or null for an uncompressed file.
+	 */
+	private TsvRowStore (FileChannel channel, long[] blockOffsets, int[] blockLengths) {
+		_channel = channel;
+		_blockOffsets = blockOffsets;
+		_blockLengths = blockLengths;
+		_blockCache = new LinkedHashMap<Integer, byte[]>(BLOCK_CACHE_SIZE * 2, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry (Map.Entry<Integer, byte[]> eldest) {
+				return size() > BLOCK_CACHE_SIZE;
+			}
+		};
+	}
+
+	/**
+	 * Reads the row at the given position.
+	 * @param position a position handed to the visitor while indexing.
+	 * @return the row, without its line terminator.
+	 */
+	public String readRow (long position) throws IOException {
+		if (_blockOffsets == null) {
+			return readPlainRow(position);
+		}
+
+		final byte[] block = readBlock((int) (position >>> 32));
+		final int start = (int) position;
+		int end = start;
+		while (end < block.length && block[end] != '\n') {
+			end++;
+		}
+		return new String(block, start, end - start, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Reads the row starting at the given byte offset of an uncompressed file.
+	 * @param offset the byte offset of the row.
+	 * @return the row.
+	 */
+	private String readPlainRow (long offset) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(512);
+		while (true) {
+			final int read = _channel.read(buffer, offset + buffer.position());
+			final byte[] bytes = buffer.array();
+
+			// Look for the end of the row in what has been read so far.
+			for (int i = 0; i < buffer.position(); i++) {
+				if (bytes[i] == '\n') {
+					final int length = i > 0 && bytes[i - 1] == '\r' ? i - 1 : i;
+					return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+				}
+			}
+			if (read == -1) {
+				return new String(bytes, 0, buffer.position(), StandardCharsets.ISO_8859_1);
+			}
+			if (!buffer.hasRemaining()) {
+				buffer = ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length * 2)).position(buffer.position());
+			}
+		}
+	}
+
+	/**
+	 * Returns the decompressed contents of a block, from the cache if possible.
+	 * @param blockNumber the block to read.
+	 * @return the uncompressed bytes of the block.
+	 */
+	private byte[] readBlock (int blockNumber) throws IOException {
+		byte[] block = _blockCache.get(blockNumber);
+		if (block != null) {
+			return block;
+		}
+
+		// Read the compressed bytes and inflate them.
+		final ByteBuffer compressed = ByteBuffer.allocate((int) (_blockOffsets[blockNumber + 1] - _blockOffsets[blockNumber]));
+		while (compressed.hasRemaining()) {
+			if (_channel.read(compressed, _blockOffsets[blockNumber] + compressed.position()) == -1) {
+				throw new EOFException("Block " + blockNumber + " is truncated");
+			}
+		}
+		block = new byte[_blockLengths[blockNumber]];
+		final Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed.array());
+			int length = 0;
+			while (length < block.length) {
+				final int inflated = inflater.inflate(block, length, block.length - length);
+				if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+					throw new EOFException("Block " + blockNumber + " is shorter than recorded");
+				}
+				length += inflated;
+			}
+		} catch (DataFormatException dfe) {
+			throw new IOException("Block " + blockNumber + " is corrupt", dfe);
+		} finally {
+			inflater.end();
+		}
+		_blockCache.put(blockNumber, block);
+		return block;
+	}
+
+	public void close () throws IOException {
+		_channel.close();
+	}
+}
@@ -0,0 +1,178 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a QueryLog against any GraphSearchEngine, from several threads, either
+ * as fast as possible or at a fixed rate. At a fixed rate every query has an
+ * intended start time, and its latency is measured from that time, so a slow
+ * engine that falls behind is charged for the queueing delay it causes.
+ */
+public class WorkloadReplayer {
+	// The graph the actor names are looked up in.
+	private final IMDBGraph _graph;
+
+	// The engine being measured.
+	private final GraphSearchEngine _engine;
+
+	// The number of threads issuing queries.
+	private final int _numThreads;
+
+	// Queries per second, or 0 to run at full speed.
+	private final double _rate;
+
+	/**
+	 * The results of a replay.
+	 */
+	public static class Report {
+		private final long _elapsedNanos;
+		private final long[] _sortedLatencies;
+		private final int _mismatches;
+		private final int _missing;
+
+		Report (long elapsedNanos, long[] latencies, int mismatches, int missing) {
+			_elapsedNanos = elapsedNanos;
+			_sortedLatencies = latencies.clone();
+			Arrays.sort(_sortedLatencies);
+			_mismatches = mismatches;
+			_missing = missing;
+		}
+
+		/**
+		 * Returns the number of queries replayed.
+		 */
+		public int getNumQueries () {
+			return _sortedLatencies.length;
+		}
+
+		/**
+		 * Returns the number of queries completed per second.
+		 */
+		public double getThroughput () {
+			return _sortedLatencies.length / (_elapsedNanos / 1e9);
+		}
+
+		/**
+		 * Returns the latency below which the given fraction of queries completed.
+		 * @param fraction a fraction between 0 and 1, e.g. 0.99.
+		 * @return the latency in nanoseconds.
+		 */
+		public long getPercentile (double fraction) {
+			if (_sortedLatencies.length == 0) {
+				return 0;
+			}
+			final int index = (int) Math.ceil(fraction * _sortedLatencies.length) - 1;
+			return _sortedLatencies[Math.max(0, Math.min(index, _sortedLatencies.length - 1))];
+		}
+
+		/**
+		 * Returns the number of queries whose path length differs from the recorded one.
+		 */
+		public int getMismatches () {
+			return _mismatches;
+		}
+
+		/**
+		 * Returns the number of queries naming an actor that is not in the graph.
+		 */
+		public int getMissing () {
+			return _missing;
+		}
+
+		public String toString () {
+			return String.format("queries: %d%nthroughput: %.1f queries/s%n"
+					+ "latency ms p50: %.3f p90: %.3f p99: %.3f p99.9: %.3f max: %.3f%n"
+					+ "mismatches: %d%nmissing actors: %d", getNumQueries(), getThroughput(), getPercentile(0.5) / 1e6,
+					getPercentile(0.9) / 1e6, getPercentile(0.99) / 1e6, getPercentile(0.999) / 1e6,
+					getPercentile(1) / 1e6, _mismatches, _missing);
+		}
+	}
+
+	/**
+	 * @param graph the graph the actor names are looked up in.
+	 * @param engine the engine to measure; it must allow concurrent queries if numThreads > 1.
+	 * @param numThreads the number of threads issuing queries.
+	 * @param rate queries per second, or 0 to run at full speed.
+	 */
+	public WorkloadReplayer (IMDBGraph graph, GraphSearchEngine engine, int numThreads, double rate) {
+		_graph = graph;
+		_engine = engine;
+		_numThreads = numThreads;
+		_rate = rate;
+	}
+
+	/**
+	 * Replays the given queries.
+	 * @param queries the queries, in the order they should start.
+	 * @return the results.
+	 */
+	public Report replay (List<QueryLog.Query> queries) throws InterruptedException {
+		final long[] latencies = new long[queries.size()];
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger mismatches = new AtomicInteger();
+		final AtomicInteger missing = new AtomicInteger();
+		final ExecutorService pool = Executors.newFixedThreadPool(_numThreads);
+		final long intervalNanos = _rate > 0 ? (long) (1e9 / _rate) : 0;
+
+		final long start = System.nanoTime();
+		for (int thread = 0; thread < _numThreads; thread++) {
+			pool.execute(() -> {
+				int i;
+				while ((i = next.getAndIncrement()) < queries.size()) {
+					final QueryLog.Query query = queries.get(i);
+
+					// Wait for the query's slot when running at a fixed rate.
+					long queryStart = start + i * intervalNanos;
+					long now;
+					while ((now = System.nanoTime()) < queryStart) {
+						LockSupport.parkNanos(queryStart - now);
+					}
+					if (intervalNanos == 0) {
+						queryStart = now;
+					}
+
+					final Node actor1 = _graph.getActor(query.getStartName());
+					final Node actor2 = _graph.getActor(query.getTargetName());
+					int length = QueryLog.NO_PATH;
+					if (actor1 == null || actor2 == null) {
+						missing.incrementAndGet();
+					} else {
+						final List<Node> path = _engine.findShortestPath(actor1, actor2);
+						length = path == null ? QueryLog.NO_PATH : path.size();
+					}
+					latencies[i] = System.nanoTime() - queryStart;
+
+					if (query.getResultLength() != QueryLog.UNKNOWN && query.getResultLength() != length) {
+						mismatches.incrementAndGet();
+					}
+				}
+			});
+		}
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		return new Report(System.nanoTime() - start, latencies, mismatches.get(), missing.get());
+	}
+
+	/**
+	 * Replays a log against an engine class with a no-argument constructor.
+	 * Usage: java WorkloadReplayer logFile actorsFile titlesFile [engineClass [threads [queriesPerSecond]]]
+	 */
+	public static void main (String[] args) throws Exception {
+		if (args.length < 3) {
+			System.out.println("Usage: java WorkloadReplayer logFile actorsFile titlesFile "
+					+ "[engineClass [threads [queriesPerSecond]]]");
+			System.exit(1);
+		}
+		final String engineClass = args.length >= 4 ? args[3] : GraphSearchEngineImpl.class.getName();
+		final int numThreads = args.length >= 5 ? Integer.parseInt(args[4]) : 1;
+		final double rate = args.length >= 6 ? Double.parseDouble(args[5]) : 0;
+
+		final List<QueryLog.Query> queries = QueryLog.read(args[0]);
+		final IMDBGraph graph = new IMDBGraphImpl(args[1], args[2]);
+		final GraphSearchEngine engine = (GraphSearchEngine) Class.forName(engineClass).getDeclaredConstructor()
+				.newInstance();
+		System.out.println(new WorkloadReplayer(graph, engine, numThreads, rate).replay(queries));
+	}
+}
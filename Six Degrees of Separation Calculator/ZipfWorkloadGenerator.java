@@ -0,0 +1,93 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Generates a synthetic QueryLog for when no captured traffic is available. Actors
+ * are ranked by degree (the number of movies they are known for), and both ends
+ * of every query are drawn from a Zipf distribution over that ranking, so well
+ * connected actors are asked about far more often than obscure ones. The result
+ * lengths are left UNKNOWN, so a replay reports no mismatches for them.
+ */
+public class ZipfWorkloadGenerator {
+	public static final double DEFAULT_EXPONENT = 1.0;
+
+	// The actors, most connected first.
+	private final String[] _names;
+
+	// The cumulative probability of drawing each rank.
+	private final double[] _cumulative;
+
+	/**
+	 * @param graph the graph to draw actors from.
+	 * @param exponent the Zipf exponent; larger values concentrate queries on fewer actors.
+	 */
+	public ZipfWorkloadGenerator (IMDBGraph graph, double exponent) {
+		final List<Node> actors = new ArrayList<>(graph.getActors());
+		actors.sort((a, b) -> {
+			final int byDegree = Integer.compare(b.getNeighbors().size(), a.getNeighbors().size());
+			return byDegree != 0 ? byDegree : a.getName().compareTo(b.getName());
+		});
+
+		_names = new String[actors.size()];
+		_cumulative = new double[actors.size()];
+		double total = 0;
+		for (int rank = 0; rank < actors.size(); rank++) {
+			_names[rank] = actors.get(rank).getName();
+			total += 1 / Math.pow(rank + 1, exponent);
+			_cumulative[rank] = total;
+		}
+		for (int rank = 0; rank < actors.size(); rank++) {
+			_cumulative[rank] /= total;
+		}
+	}
+
+	/**
+	 * Draws one actor name.
+	 * @param random the source of randomness.
+	 * @return the name of the actor.
+	 */
+	private String draw (Random random) {
+		int rank = Arrays.binarySearch(_cumulative, random.nextDouble());
+		if (rank < 0) {
+			rank = -rank - 1;
+		}
+		return _names[Math.min(rank, _names.length - 1)];
+	}
+
+	/**
+	 * Generates a list of queries.
+	 * @param numQueries the number of queries.
+	 * @param seed the seed, so that the same workload can be generated again.
+	 * @return the queries.
+	 */
+	public List<QueryLog.Query> generate (int numQueries, long seed) {
+		final Random random = new Random(seed);
+		final List<QueryLog.Query> queries = new ArrayList<>(numQueries);
+		for (int i = 0; i < numQueries; i++) {
+			queries.add(new QueryLog.Query(0, draw(random), draw(random), QueryLog.UNKNOWN, 0));
+		}
+		return queries;
+	}
+
+	/**
+	 * Writes a synthetic log.
+	 * Usage: java ZipfWorkloadGenerator actorsFile titlesFile logFile numQueries [exponent [seed]]
+	 */
+	public static void main (String[] args) throws IOException {
+		if (args.length < 4) {
+			System.out.println("Usage: java ZipfWorkloadGenerator actorsFile titlesFile logFile numQueries "
+					+ "[exponent [seed]]");
+			System.exit(1);
+		}
+		final double exponent = args.length >= 5 ? Double.parseDouble(args[4]) : DEFAULT_EXPONENT;
+		final long seed = args.length >= 6 ? Long.parseLong(args[5]) : 0;
+
+		final ZipfWorkloadGenerator generator = new ZipfWorkloadGenerator(new IMDBGraphImpl(args[0], args[1]),
+				exponent);
+		try (QueryLog.Writer writer = new QueryLog.Writer(args[2])) {
+			for (QueryLog.Query query : generator.generate(Integer.parseInt(args[3]), seed)) {
+				writer.write(query);
+			}
+		}
+	}
+}